@@ -2,60 +2,71 @@ package com.ice.tar;
 
 /**
  * THF = Tar Header Field
+ * <p/>
+ * A (shared, stateless) description of where a field is in a header, which decodes the field straight from the header bytes when (and
+ * only when) asked.
  */
 public class THF {
     public static final String UTF_8 = "UTF-8";
 
     private final String mName;
-    private final byte[] mBytes;
-    private String mAsString;
-    private Integer mIntFromOctal;
-    private Long mLongFromOctal;
+    private final int mOffset;
+    private final int mLength;
 
-    public THF( String pName, int pLength ) {
+    public THF( String pName, int pOffset, int pLength ) {
         mName = pName;
-        mBytes = new byte[pLength];
+        mOffset = pOffset;
+        mLength = pLength;
     }
 
-    public int populate( int pFrom, byte[] pHeader ) {
-        for ( int i = 0; i < mBytes.length; i++ ) {
-            if ( pFrom < pHeader.length ) {
-                mBytes[i] = pHeader[pFrom++];
-            }
-        }
-        return pFrom;
+    public String getName() {
+        return mName;
     }
 
-    public byte asByte() {
-        return mBytes[0];
+    public int getOffset() {
+        return mOffset;
     }
 
-    public int asIntOctal() {
-        if ( mIntFromOctal != null ) {
-            return mIntFromOctal;
-        }
-        return mIntFromOctal = (int) octal();
+    public int getLength() {
+        return mLength;
     }
 
-    public long asLongOctal() {
-        if ( mLongFromOctal != null ) {
-            return mLongFromOctal;
-        }
-        return mLongFromOctal = octal();
+    public int end() {
+        return mOffset + mLength;
+    }
+
+    public byte asByte( byte[] pHeader ) {
+        return pHeader[mOffset];
+    }
+
+    public boolean isEmpty( byte[] pHeader ) {
+        return pHeader[mOffset] == 0;
+    }
+
+    public int asIntOctal( byte[] pHeader ) {
+        return (int) asLongOctal( pHeader );
     }
 
-    private long octal() {
+    /**
+     * Numeric fields are normally (space or zero padded) octal, but GNU tar uses base-256 (big-endian two's complement, flagged by the
+     * high bit of the first byte) for values that do not fit (e.g. sizes of 8GB or more).
+     */
+    public long asLongOctal( byte[] pHeader ) {
+        if ( (pHeader[mOffset] & 0x80) != 0 ) {
+            return base256( pHeader );
+        }
         long result = 0;
         boolean stillPadding = true;
-        for ( byte zByte : mBytes ) {
+        for ( int i = mOffset, end = end(); i < end; i++ ) {
+            byte zByte = pHeader[i];
             if ( stillPadding && ((zByte == ' ') || (zByte == '0')) ) {
                 continue;
             }
-            if ( zByte == 0 ) {
+            if ( (zByte == 0) || (zByte == ' ') ) {
                 break;
             }
             if ( (zByte < '0') || ('7' < zByte) ) {
-                throw new RuntimeException( "Octal? " + this );
+                throw new RuntimeException( "Octal? " + toString( pHeader ) );
             }
             stillPadding = false;
             result = (result << 3) + (zByte - '0');
@@ -63,58 +74,54 @@ public class THF {
         return result;
     }
 
-    public String asString() {
-        if ( mAsString != null ) {
-            return mAsString;
+    private long base256( byte[] pHeader ) {
+        long result = ((pHeader[mOffset] & 0x40) != 0) ? -1 : 0; // Sign
+        result = (result << 7) | (pHeader[mOffset] & 0x7F);
+        for ( int i = mOffset + 1, end = end(); i < end; i++ ) {
+            result = (result << 8) | (pHeader[i] & 0xFF);
         }
-        if ( mBytes[0] == 0 ) {
-            return mAsString = "";
+        return result;
+    }
+
+    public String asString( byte[] pHeader ) {
+        if ( pHeader[mOffset] == 0 ) {
+            return "";
         }
-        StringBuilder sb = new StringBuilder();
-        for ( byte zByte : mBytes ) {
-            if ( zByte == 0 ) {
-                break;
-            }
-            sb.append( (char) zByte );
+        int end = mOffset;
+        for ( int max = end(); (end < max) && (pHeader[end] != 0); ) {
+            end++;
+        }
+        char[] zChars = new char[end - mOffset];
+        for ( int i = 0; i < zChars.length; i++ ) {
+            zChars[i] = (char) (pHeader[mOffset + i] & 0xFF);
         }
-        return mAsString = sb.toString();
-//        int zLength = 0;
-//        for ( byte zByte : mBytes ) {
-//            if ( zByte == 0 ) {
-//                break;
-//            }
-//            zLength++;
-//        }
-//        try {
-//            return mAsString = new String( mBytes, 0, zLength, UTF_8 );
-//        }
-//        catch ( UnsupportedEncodingException e ) {
-//            return null;
-//        }
+        return new String( zChars );
     }
 
-    public String details() {
-        return appendDetails( new StringBuilder(), -1 );
+    public String details( byte[] pHeader ) {
+        return appendDetails( new StringBuilder(), pHeader, -1 );
     }
 
-    private String appendDetails( StringBuilder pSB, int pMaxStringLength ) {
-        String zAsString = asString();
-        if ( zAsString == null ) {
-            pSB.append( "null" );
-        } else if ( (pMaxStringLength == -1) || (zAsString.length() <= pMaxStringLength) ) {
+    private String appendDetails( StringBuilder pSB, byte[] pHeader, int pMaxStringLength ) {
+        String zAsString = asString( pHeader );
+        if ( (pMaxStringLength == -1) || (zAsString.length() <= pMaxStringLength) ) {
             pSB.append( "'" ).append( zAsString ).append( "'" );
         } else {
             pSB.append( "'" ).append( zAsString.substring( 0, pMaxStringLength ) ).append( "'..." );
         }
         pSB.append( ", or (dec)" );
-        for ( byte zByte : mBytes ) {
-            pSB.append( ' ' ).append( 255 & (int) zByte ).append( ',' );
+        for ( int i = mOffset, end = end(); i < end; i++ ) {
+            pSB.append( ' ' ).append( 255 & (int) pHeader[i] ).append( ',' );
         }
         return pSB.toString().substring( 0, pSB.length() - 1 );
     }
 
+    public String toString( byte[] pHeader ) {
+        return appendDetails( new StringBuilder( mName ).append( ": " ), pHeader, 60 );
+    }
+
     @Override
     public String toString() {
-        return appendDetails( new StringBuilder( mName ).append( ": " ), 60 );
+        return mName + "[" + mOffset + ".." + end() + ")";
     }
 }
@@ -16,6 +16,7 @@
 package com.ice.tar;
 
 import java.io.*;
+import java.util.*;
 
 /**
  * The TarBuffer class implements the tar archive concept
@@ -27,6 +28,10 @@ import java.io.*;
  * <p/>
  * You should never have a need to access this class directly.
  * TarBuffers are created by Tar IO Streams.
+ * <p/>
+ * A single block buffer is reused for the life of the TarBuffer, and
+ * records can be accessed "in place" (see nextRecord()), so reading
+ * an archive allocates (almost) nothing per block or record.
  *
  * @author Timothy Gerard Endres,
  *         <a href="mailto:time@gjt.org">time@trustice.com</a>.
@@ -42,7 +47,8 @@ public class TarBuffer {
     private final int blockSize = DEFAULT_BLKSIZE;
     private final int recsPerBlock = DEFAULT_RECS_PER_BLOCK;
 
-    private byte[] blockBuffer;
+    private final byte[] blockBuffer = new byte[blockSize];
+    private boolean blockRead;
     private int currBlkIdx = -1;
     private int currRecIdx = recsPerBlock;
 
@@ -85,8 +91,19 @@ public class TarBuffer {
      * @param record The record data to check.
      */
     public boolean isEOFRecord( byte[] record ) {
-        for ( int i = 0, sz = getRecordSize(); i < sz; ++i ) {
-            if ( record[i] != 0 ) {
+        return isEOFRecord( record, 0 );
+    }
+
+    /**
+     * Determine if an archive record (in place, e.g. see nextRecord())
+     * indicate End of Archive.
+     *
+     * @param buffer The buffer containing the record.
+     * @param offset The offset of the record in the buffer.
+     */
+    public boolean isEOFRecord( byte[] buffer, int offset ) {
+        for ( int i = offset, end = offset + getRecordSize(); i < end; ++i ) {
+            if ( buffer[i] != 0 ) {
                 return false;
             }
         }
@@ -95,11 +112,21 @@ public class TarBuffer {
     }
 
     /**
-     * Read a record from the input stream and return the data.
+     * Get the (reused) block buffer that the records returned by
+     * nextRecord() are in.
+     */
+    public byte[] getBlockBuffer() {
+        return blockBuffer;
+    }
+
+    /**
+     * Advance to the next record WITHOUT copying it.  The record is
+     * the getRecordSize() bytes of getBlockBuffer() starting at the
+     * returned offset, and is only valid until the next read.
      *
-     * @return The record data.
+     * @return The record's offset in getBlockBuffer(), or -1 at EOF.
      */
-    public byte[] readRecord()
+    public int nextRecord()
             throws IOException {
         if ( debug ) {
             System.err.println(
@@ -107,21 +134,121 @@ public class TarBuffer {
                     + " blkIdx = " + currBlkIdx );
         }
 
-        if ( (blockBuffer == null) || (recsPerBlock <= currRecIdx) ) {
+        if ( !blockRead || (recsPerBlock <= currRecIdx) ) {
             if ( !readBlock() ) {
-                return null;
+                return -1;
             }
         }
 
-        byte[] result = new byte[recordSize];
+        return (currRecIdx++ * recordSize);
+    }
+
+    /**
+     * Advance over up to maxRecords records that are contiguous in the
+     * (current or, if it is used up, the next) block, WITHOUT copying
+     * them.  The number of records advanced over is the smaller of
+     * maxRecords and the records from the returned offset to the end of
+     * getBlockBuffer(), and they are only valid until the next read.
+     *
+     * @param maxRecords The maximum number of records (at least 1).
+     *
+     * @return The first record's offset in getBlockBuffer(), or -1 at EOF.
+     */
+    public int nextRecords( int maxRecords )
+            throws IOException {
+        int offset = nextRecord();
+        if ( offset != -1 ) {
+            currRecIdx = Math.min( recsPerBlock, currRecIdx - 1 + maxRecords );
+        }
+
+        return offset;
+    }
+
+    /**
+     * Skip over records WITHOUT reading them (where possible): first
+     * the rest of the current block's, then whole blocks using the
+     * InputStream's skip (which seeks on a file), then into the next
+     * block.
+     *
+     * @param numRecords The number of records to skip.
+     *
+     * @return The number of records skipped (less than numRecords only at EOF).
+     */
+    public long skipRecords( long numRecords )
+            throws IOException {
+        int inBlock = (int) Math.min( numRecords, recsPerBlock - currRecIdx );
+        currRecIdx += inBlock;
+        long skipped = inBlock;
 
-        System.arraycopy(
-                blockBuffer, (currRecIdx * recordSize),
-                result, 0, recordSize );
+        for (; (numRecords - skipped) >= recsPerBlock; skipped += recsPerBlock ) {
+            if ( !skipBlock() ) {
+                return skipped;
+            }
+        }
 
-        currRecIdx++;
+        if ( skipped < numRecords ) {
+            if ( -1 == nextRecords( (int) (numRecords - skipped) ) ) {
+                return skipped;
+            }
+            skipped = numRecords;
+        }
 
-        return result;
+        return skipped;
+    }
+
+    /**
+     * @return false if End-Of-File (before the whole block was skipped), else true
+     */
+    private boolean skipBlock()
+            throws IOException {
+        if ( debug ) {
+            System.err.println( "SkipBlock: blkIdx = " + currBlkIdx );
+        }
+
+        for ( long numSkipped, bytesNeeded = blockSize; bytesNeeded > 0; bytesNeeded -= numSkipped ) {
+            if ( 0 == (numSkipped = inStream.skip( bytesNeeded )) ) {
+                // Some streams only skip what they have buffered (or nothing at all), so read (into the block buffer) instead
+                if ( -1 == (numSkipped = inStream.read( blockBuffer, 0, (int) bytesNeeded )) ) {
+                    return false;
+                }
+            }
+        }
+
+        currBlkIdx++;
+        currRecIdx = recsPerBlock; // Block used up
+
+        return true;
+    }
+
+    /**
+     * Read a record from the input stream into the caller's buffer.
+     *
+     * @param target The buffer (at least getRecordSize() long) to copy the record into.
+     *
+     * @return false if End-Of-File, else true
+     */
+    public boolean readRecord( byte[] target )
+            throws IOException {
+        int offset = nextRecord();
+        if ( offset == -1 ) {
+            return false;
+        }
+
+        System.arraycopy( blockBuffer, offset, target, 0, recordSize );
+
+        return true;
+    }
+
+    /**
+     * Read a record from the input stream and return the data.
+     *
+     * @return The record data (a new array).
+     */
+    public byte[] readRecord()
+            throws IOException {
+        byte[] result = new byte[recordSize];
+
+        return readRecord( result ) ? result : null;
     }
 
     /**
@@ -133,7 +260,6 @@ public class TarBuffer {
             System.err.println( "ReadBlock: blkIdx = " + currBlkIdx );
         }
 
-        blockBuffer = new byte[blockSize]; // to Force all zeros!
         int numBytes, offset = 0;
 
         for (int bytesNeeded = blockSize; bytesNeeded > 0; bytesNeeded -= numBytes) {
@@ -155,6 +281,11 @@ public class TarBuffer {
             // Thanks to 'Yohann.Roussel@alcatel.fr' for this fix.
         }
 
+        if ( offset < blockSize ) {
+            Arrays.fill( blockBuffer, offset, blockSize, (byte) 0 ); // to Force all zeros (w/ a short block)!
+        }
+
+        blockRead = true;
         currBlkIdx++;
         currRecIdx = 0;
 
@@ -121,6 +121,18 @@ public class TarEntry {
         this.header = new TarHeader( headerBuf );
     }
 
+    /**
+     * Construct an entry from an archive's header (copied, so the buffer
+     * can be reused) in a buffer.
+     *
+     * @param buf    The buffer containing the header.
+     * @param offset The offset of the header in the buffer.
+     */
+    public TarEntry( byte[] buf, int offset )
+            throws InvalidHeaderException {
+        this.header = new TarHeader( buf, offset );
+    }
+
     /**
      * Get this entry's header.
      */
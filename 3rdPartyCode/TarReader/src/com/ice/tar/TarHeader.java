@@ -19,10 +19,16 @@ import java.util.*;
 /**
  * This class encapsulates the Tar Entry Header used in Tar Archives.
  * The class also holds a number of tar constants, used mostly in headers.
+ * <p/>
+ * The header keeps (a copy of) the header bytes, and the fields (see THF)
+ * are only decoded when asked for; just the format and type flag (needed
+ * to accept the header) are determined up front.
  *
  * @author Timothy Gerard Endres, <time@gjt.org>
  */
 public class TarHeader {
+    public static final int HEADER_LENGTH = 512;
+
     public enum Type {
         unix { // "old-unix" format - magic tag == ""
 
@@ -46,6 +52,8 @@ public class TarHeader {
             }
         };
 
+        private static final byte[] USTAR = {'u', 's', 't', 'a', 'r'};
+
         abstract public boolean isAcceptableMagicString( String pMagic );
 
         public static Type getType( String pMagic ) {
@@ -56,79 +64,106 @@ public class TarHeader {
             }
             return null;
         }
-    }
 
-    public final Type format;
+        /**
+         * Same as getType( _magic.asString( pHeader ) ), but w/o creating the String.
+         */
+        public static Type getType( byte[] pHeader ) {
+            int zMagic = _magic.getOffset();
+            if ( pHeader[zMagic] == 0 ) {
+                return unix;
+            }
+            for ( int i = 0; i < USTAR.length; i++ ) {
+                if ( pHeader[zMagic + i] != USTAR[i] ) {
+                    return null;
+                }
+            }
+            return (pHeader[zMagic + USTAR.length] == 0) ? ustar : gnu;
+        }
+    }
 
     // . . . . . . . . . . . . . . . . . . . . . . . . . . . . POSIX "ustar" Style Tar Header:
     //
-    // . . . . . . . . . . . . . . . . . . . . . . . . . . . . Field . . . Field
-    // . . . . . . . . . . . . . . . . . . . . . . . . . . . . Width . . . Meaning
-    // . . . . . . . . . . . . . . . . . . . . . . . . . . . . -----  --------- ---------------------------
-    public final THF _name = new THF( "name", /* . . . . . . . */ 100 ); // name of file
-    public final THF _mode = new THF( "mode", /* . . . . . . . . */ 8 ); // file mode
-    public final THF _uid = new THF( "uid", /* . . . . . . . . . */ 8 ); // owner user ID
-    public final THF _gid = new THF( "gid", /* . . . . . . . . . */ 8 ); // owner group ID
-    public final THF _size = new THF( "size", /* . . . . . . . .*/ 12 ); // length of file in bytes
-    public final THF _mtime = new THF( "mtime", /* . . . . . . .*/ 12 ); // modify time of file
-    public final THF _chksum = new THF( "chksum", /* . . . . . . */ 8 ); // checksum for header
-    public final THF _typeflag = new THF( "typeflag", /* . . . . */ 1 ); // type of file
-    public final THF _linkname = new THF( "linkname", /* . . . */ 100 ); // name of linked file *** LAST FIELD of Original Unix Tar Header ***
-    public final THF _magic = new THF( "magic", /* . . . . . . . */ 6 ); // USTAR indicator
-    public final THF _version = new THF( "version", /* . . . . . */ 2 ); // USTAR version
-    public final THF _uname = new THF( "uname", /* . . . . . . .*/ 32 ); // owner user name
-    public final THF _gname = new THF( "gname", /* . . . . . . .*/ 32 ); // owner group name
-    public final THF _devmajor = new THF( "devmajor", /* . . . . */ 8 ); // device major number
-    public final THF _devminor = new THF( "devminor", /* . . . . */ 8 ); // device minor number
-    public final THF _prefix = new THF( "prefix", /* . . . . . */ 155 ); // prefix for file name
-    // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . =====
-    public final THF[] THFS = { // . . . . . . . . . . . . . . .. 500 - length
-                                _name,
-                                _mode,
-                                _uid,
-                                _gid,
-                                _size,
-                                _mtime,
-                                _chksum,
-                                _typeflag,
-                                _linkname,
-                                _magic,
-                                _version,
-                                _uname,
-                                _gname,
-                                _devmajor,
-                                _devminor,
-                                _prefix
+    // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . Field . . . Field
+    // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . Offset  Width . . . Meaning
+    // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . ------  -----  --------- ---------------------------
+    public static final THF _name = new THF( "name", /* . . . . . . . */ 0, 100 ); // name of file
+    public static final THF _mode = new THF( "mode", /* . . . . . . . */ 100, 8 ); // file mode
+    public static final THF _uid = new THF( "uid", /* . . . . . . . . */ 108, 8 ); // owner user ID
+    public static final THF _gid = new THF( "gid", /* . . . . . . . . */ 116, 8 ); // owner group ID
+    public static final THF _size = new THF( "size", /* . . . . . . . */ 124, 12 ); // length of file in bytes
+    public static final THF _mtime = new THF( "mtime", /* . . . . . . */ 136, 12 ); // modify time of file
+    public static final THF _chksum = new THF( "chksum", /* . . . . . */ 148, 8 ); // checksum for header
+    public static final THF _typeflag = new THF( "typeflag", /* . . . */ 156, 1 ); // type of file
+    public static final THF _linkname = new THF( "linkname", /* . . . */ 157, 100 ); // name of linked file *** LAST FIELD of Original Unix Tar Header ***
+    public static final THF _magic = new THF( "magic", /* . . . . . . */ 257, 6 ); // USTAR indicator
+    public static final THF _version = new THF( "version", /* . . . . */ 263, 2 ); // USTAR version
+    public static final THF _uname = new THF( "uname", /* . . . . . . */ 265, 32 ); // owner user name
+    public static final THF _gname = new THF( "gname", /* . . . . . . */ 297, 32 ); // owner group name
+    public static final THF _devmajor = new THF( "devmajor", /* . . . */ 329, 8 ); // device major number
+    public static final THF _devminor = new THF( "devminor", /* . . . */ 337, 8 ); // device minor number
+    public static final THF _prefix = new THF( "prefix", /* . . . . . */ 345, 155 ); // prefix for file name
+    // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . =====
+    public static final THF[] THFS = { // . . . . . . . . . . . . . . . . . 500 - length
+                                       _name,
+                                       _mode,
+                                       _uid,
+                                       _gid,
+                                       _size,
+                                       _mtime,
+                                       _chksum,
+                                       _typeflag,
+                                       _linkname,
+                                       _magic,
+                                       _version,
+                                       _uname,
+                                       _gname,
+                                       _devmajor,
+                                       _devminor,
+                                       _prefix
     };
 
     public enum Action {
         Normal,
-        Directory,
-        Ignore,
-        ReportProceed,
-        ReportIgnore,
-        ReportExtended,
-        Extended,
-        Error;
+        Directory( Is.Directory ),
+        Ignore( Is.Ignore ),
+        ReportProceed( Is.Report ),
+        ReportIgnore( Is.Report, Is.Ignore ),
+        ReportExtended( Is.Report, Is.Extended ),
+        Extended( Is.Extended ),
+        Error( Is.Error );
+
+        private enum Is {Directory, Error, Report, Ignore, Extended}
+
+        private final boolean mDirectory, mError, mReport, mIgnore, mExtended;
+
+        Action( Is... pIs ) {
+            List<Is> zIs = Arrays.asList( pIs );
+            mDirectory = zIs.contains( Is.Directory );
+            mError = zIs.contains( Is.Error );
+            mReport = zIs.contains( Is.Report );
+            mIgnore = zIs.contains( Is.Ignore );
+            mExtended = zIs.contains( Is.Extended );
+        }
 
         public boolean isDirectory() {
-            return name().equals( "Directory" );
+            return mDirectory;
         }
 
         public boolean error() {
-            return name().contains( "Error" );
+            return mError;
         }
 
         public boolean report() {
-            return name().contains( "Report" );
+            return mReport;
         }
 
         public boolean ignore() {
-            return name().contains( "Ignore" );
+            return mIgnore;
         }
 
         public boolean extended() {
-            return name().contains( "Extended" );
+            return mExtended;
         }
     }
 
@@ -156,6 +191,16 @@ public class TarHeader {
         GNU_Sparse( Action.Error, 'S' ), // This is for sparse files.
         GNU_VolDeader( Action.Ignore, 'V' ); // This file is a tape/volume header.  Ignore it on extraction.
 
+        private static final TypeFlag[] BY_IDENTIFIER = new TypeFlag[256];
+
+        static {
+            for ( TypeFlag zTypeFlag : values() ) {
+                for ( byte zIdentifier : zTypeFlag.mIdentifiers ) {
+                    BY_IDENTIFIER[zIdentifier & 0xFF] = zTypeFlag;
+                }
+            }
+        }
+
         private final Action mAction;
         private final byte[] mIdentifiers;
 
@@ -175,38 +220,17 @@ public class TarHeader {
             return mAction;
         }
 
-        private boolean isIdentifier( byte pIdentifier ) {
-            for ( byte zIdentifier : mIdentifiers ) {
-                if ( zIdentifier == pIdentifier ) {
-                    return true;
-                }
-            }
-            return false;
-        }
-
         public static TypeFlag find( byte pIdentifier ) {
-            for ( TypeFlag zTypeFlag : values() ) {
-                if ( zTypeFlag.isIdentifier( pIdentifier ) ) {
-                    return zTypeFlag;
-                }
-            }
-            return null;
+            return BY_IDENTIFIER[pIdentifier & 0xFF];
         }
     }
 
-    private String name = "";
-    @SuppressWarnings({"FieldCanBeLocal", "UnusedDeclaration"}) private int permissionMode; // permission mode.
-    private int userId;
-    private int groupId;
-    private long size; // in bytes
-    private long modificationTime;
-    @SuppressWarnings({"FieldCanBeLocal", "UnusedDeclaration"}) private int checkSum;
-    private TypeFlag typeFlag;
-    @SuppressWarnings({"FieldCanBeLocal", "UnusedDeclaration"}) private String linkName = "";
-    private String userName = "";
-    private String groupName = "";
-    @SuppressWarnings({"FieldCanBeLocal", "UnusedDeclaration"}) private int devMajor; // major device number.
-    @SuppressWarnings({"FieldCanBeLocal", "UnusedDeclaration"}) private int devMinor; // minor device number.
+    public final Type format;
+
+    private final byte[] header;
+    private final TypeFlag typeFlag;
+    private String name; // Lazily parsed
+    private long size = -1; // Lazily parsed
 
     @SuppressWarnings("UnusedDeclaration")
     public boolean isUnixTarFormat() {
@@ -231,43 +255,39 @@ public class TarHeader {
      */
     public TarHeader( byte[] headerBuf )
             throws InvalidHeaderException {
+        this( headerBuf, 0 );
+    }
 
-        // parseTarHeader...
-        int offset = 0;
-        for ( THF zTHF : THFS ) {
-            offset = zTHF.populate( offset, headerBuf );
-        }
-
-        if ( null == (format = Type.getType( _magic.asString() )) ) {
-            throw new InvalidHeaderException( "Unrecognized: " + _magic.toString() );
-        }
+    /**
+     * Parse an entry's TarHeader information from a header (copied, so the
+     * buffer can be reused) in a buffer.
+     *
+     * @param buf    The buffer containing the tar entry header.
+     * @param offset The offset of the header in the buffer.
+     */
+    public TarHeader( byte[] buf, int offset )
+            throws InvalidHeaderException {
+        header = new byte[HEADER_LENGTH];
+        System.arraycopy( buf, offset, header, 0, Math.min( HEADER_LENGTH, buf.length - offset ) );
 
-        name = parseFileName( headerBuf );
-        permissionMode = _mode.asIntOctal();
-        userId = _uid.asIntOctal();
-        groupId = _gid.asIntOctal();
-        size = _size.asLongOctal();
-        modificationTime = _mtime.asLongOctal();
-        checkSum = _chksum.asIntOctal();
-        linkName = _linkname.asString();
-
-        if ( isUSTarFormat() ) {
-            userName = _uname.asString();
-            groupName = _gname.asString();
-            devMajor = _devmajor.asIntOctal();
-            devMinor = _devminor.asIntOctal();
+        if ( null == (format = Type.getType( header )) ) {
+            throw new InvalidHeaderException( "Unrecognized: " + _magic.toString( header ) );
         }
 
-        if ( null == (typeFlag = TypeFlag.find( _typeflag.asByte() )) ) {
-            throw new InvalidHeaderException( "Unrecognized: " + _typeflag );
+        if ( null == (typeFlag = TypeFlag.find( _typeflag.asByte( header ) )) ) {
+            throw new InvalidHeaderException( "Unrecognized: " + _typeflag.toString( header ) );
         }
         Action zAction = typeFlag.getAction();
         if ( zAction.error() ) {
             throw new RuntimeException( "Unable to process: " + this );
         }
-        if ( zAction.report() ) {
-            System.out.println( "*** Report: " + this );
-        }
+    }
+
+    /**
+     * @return the (copy of the) header bytes, for decoding other fields (see THF).
+     */
+    public byte[] getHeaderBytes() {
+        return header;
     }
 
     public TypeFlag getTypeFlag() {
@@ -288,7 +308,7 @@ public class TarHeader {
      * @return True if entry is a descendant of this.
      */
     public boolean isDescendent( TarHeader desc ) {
-        return desc.name.startsWith( this.name );
+        return desc.getName().startsWith( getName() );
     }
 
     /**
@@ -297,6 +317,9 @@ public class TarHeader {
      * @return Teh entry's name.
      */
     public String getName() {
+        if ( name == null ) {
+            name = parseFileName( header );
+        }
         return name;
     }
 
@@ -508,6 +531,9 @@ public class TarHeader {
      * Get this entry's file size.
      */
     public long getSize() {
+        if ( size == -1 ) {
+            size = _size.asLongOctal( header );
+        }
         return size;
     }
 
@@ -526,7 +552,7 @@ public class TarHeader {
      * @return This entry's user id.
      */
     public int getUserId() {
-        return userId;
+        return _uid.asIntOctal( header );
     }
 
     /**
@@ -535,7 +561,7 @@ public class TarHeader {
      * @return This entry's group id.
      */
     public int getGroupId() {
-        return groupId;
+        return _gid.asIntOctal( header );
     }
 
     /**
@@ -544,7 +570,7 @@ public class TarHeader {
      * @return This entry's user name.
      */
     public String getUserName() {
-        return userName;
+        return isUSTarFormat() ? _uname.asString( header ) : "";
     }
 
     /**
@@ -553,14 +579,14 @@ public class TarHeader {
      * @return This entry's group name.
      */
     public String getGroupName() {
-        return groupName;
+        return isUSTarFormat() ? _gname.asString( header ) : "";
     }
 
     /**
      * Set this entry's modification time.
      */
     public Date getModificationTime() {
-        return new Date( modificationTime * 1000 );
+        return new Date( _mtime.asLongOctal( header ) * 1000 );
     }
 
     public String toString() {
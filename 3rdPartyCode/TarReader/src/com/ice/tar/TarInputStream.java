@@ -34,6 +34,11 @@ import java.io.*;
  * <p/>
  * Kerry Menzel <kmenzel@cfl.rr.com> Contributed the code to support
  * file sizes greater than 2GB (longs versus ints).
+ * <p/>
+ * The entry data is copied straight from the TarBuffer's block (as many
+ * records at a time as the read asks for), and any part of a record not
+ * yet read is kept as an index into that block, so reading allocates
+ * nothing.
  *
  * @author Timothy Gerard Endres, <time@gjt.org>
  * @version $Revision: 1.9 $
@@ -47,6 +52,23 @@ public class TarInputStream
         extends FilterInputStream {
     private static final long K32 = 32 * 2014;
 
+    /**
+     * Receives the messages about the entries to be "Reported" (see
+     * TarHeader.Action) and the Extended headers not processed.
+     */
+    public interface Reporter {
+        void report( String message );
+    }
+
+    /**
+     * The default Reporter, which prints to System.out.
+     */
+    public static final Reporter SYSTEM_OUT = new Reporter() {
+        public void report( String message ) {
+            System.out.println( message );
+        }
+    };
+
     protected boolean debug;
     protected boolean hasHitEOF;
 
@@ -54,12 +76,16 @@ public class TarInputStream
     protected long entryOffset;
 
     protected byte[] oneBuf = new byte[1];
-    protected byte[] readBuf;
+    protected int leftOffset; // Read, but not yet returned, bytes in the buffer's block
+    protected int leftLength;
+    protected int runOffset; // Set by nextRun
 
     protected TarBuffer buffer;
 
     protected TarEntry currEntry;
 
+    protected Reporter reporter = SYSTEM_OUT;
+
     public TarInputStream( InputStream is ) {
         super( is );
 
@@ -75,6 +101,13 @@ public class TarInputStream
         this.debug = debugF;
     }
 
+    /**
+     * Sets where the messages about unusual entries go (default SYSTEM_OUT).
+     */
+    public void setReporter( Reporter reporter ) {
+        this.reporter = reporter;
+    }
+
     /**
      * Sets the debugging flag in this stream's TarBuffer.
      */
@@ -106,11 +139,31 @@ public class TarInputStream
      * This value is determined from the entry's size header field
      * and the amount of data already read from the current entry.
      *
-     * @return The number of available bytes for the current entry.
+     * @return The number of available bytes for the current entry
+     *         (capped at Integer.MAX_VALUE, see getEntryRemaining()).
      */
     public int available()
             throws IOException {
-        return (int) (entrySize - entryOffset);
+        return (int) Math.min( getEntryRemaining(), Integer.MAX_VALUE );
+    }
+
+    /**
+     * Get the number of bytes of the current entry's data not yet read
+     * (or skipped), which, unlike available(), is not limited to an int.
+     *
+     * @return The number of bytes left in the current entry.
+     */
+    public long getEntryRemaining() {
+        return entrySize - entryOffset;
+    }
+
+    /**
+     * Get the size of the current entry's data.
+     *
+     * @return The current entry's size.
+     */
+    public long getEntrySize() {
+        return entrySize;
     }
 
     /**
@@ -125,25 +178,37 @@ public class TarInputStream
      */
     public long skip( long numToSkip )
             throws IOException {
-        // REVIEW
-        // This is horribly inefficient, but it ensures that we
-        // properly skip over bytes via the TarBuffer...
-        //
-
-        byte[] skipBuf = new byte[8 * 1024];
-        long num = numToSkip;
-        for (; num > 0; ) {
-            int numRead = read( skipBuf, 0,
-                                (num > skipBuf.length ? skipBuf.length : (int) num) );
-
-            if ( numRead == -1 ) {
-                break;
+        long num = Math.min( numToSkip, entrySize - entryOffset );
+        if ( num <= 0 ) {
+            return 0;
+        }
+
+        // The bytes left in the block (which always end on a record boundary)...
+        long skipped = Math.min( num, leftLength );
+        leftOffset += (int) skipped;
+        leftLength -= (int) skipped;
+
+        // ...then whole records (and blocks) w/o reading them...
+        int recordSize = buffer.getRecordSize();
+        long records = (num - skipped) / recordSize;
+        if ( records > 0 ) {
+            long recordsSkipped = buffer.skipRecords( records );
+            skipped += recordsSkipped * recordSize;
+            if ( recordsSkipped < records ) {
+                entryOffset += skipped;
+                // Unexpected EOF!
+                throw new IOException( "unexpected EOF with " + (num - skipped) + " bytes unskipped" );
             }
+        }
 
-            num -= numRead;
+        // ...and finally part of a record.
+        if ( skipped < num ) {
+            skipped += nextRun( (int) (num - skipped) );
         }
 
-        return (numToSkip - num);
+        entryOffset += skipped;
+
+        return skipped;
     }
 
     /**
@@ -230,7 +295,7 @@ public class TarInputStream
             }
             return zEntry;
         }
-        System.out.println( "---- Extended ----> " + currEntry.getHeader() );
+        reporter.report( "---- Extended ----> " + currEntry.getHeader() );
         return pEntry;
     }
 
@@ -281,18 +346,18 @@ public class TarInputStream
                 skip( numToSkip );
             }
 
-            readBuf = null;
+            leftLength = 0;
         }
 
-        byte[] headerBuf = buffer.readRecord();
+        int headerOffset = buffer.nextRecord();
 
-        if ( headerBuf == null ) {
+        if ( headerOffset == -1 ) {
             if ( debug ) {
                 System.err.println( "READ NULL RECORD" );
             }
 
             hasHitEOF = true;
-        } else if ( buffer.isEOFRecord( headerBuf ) ) {
+        } else if ( buffer.isEOFRecord( buffer.getBlockBuffer(), headerOffset ) ) {
             if ( debug ) {
                 System.err.println( "READ EOF RECORD" );
             }
@@ -306,7 +371,7 @@ public class TarInputStream
         entrySize = 0;
         entryOffset = 0;
         try {
-            currEntry = new TarEntry( headerBuf );
+            currEntry = new TarEntry( buffer.getBlockBuffer(), headerOffset ); // The TarHeader copies the header
 
             if ( debug ) {
                 System.err.println(
@@ -315,6 +380,9 @@ public class TarInputStream
                         + "' size = " + currEntry.getSize() );
             }
             entrySize = currEntry.getSize();
+            if ( currEntry.getAction().report() ) {
+                reporter.report( "*** Report: " + currEntry.getHeader() );
+            }
             return currEntry;
         }
         catch ( InvalidHeaderException ex ) {
@@ -340,7 +408,7 @@ public class TarInputStream
         if ( num == -1 ) {
             return num;
         } else {
-            return (int) oneBuf[0];
+            return oneBuf[0] & 0xFF;
         }
     }
 
@@ -383,71 +451,59 @@ public class TarInputStream
             numToRead = (int) (entrySize - entryOffset);
         }
 
-        if ( readBuf != null ) {
-            int sz = (numToRead > readBuf.length)
-                     ? readBuf.length : numToRead;
-
-            System.arraycopy( readBuf, 0, buf, offset, sz );
+        byte[] block = buffer.getBlockBuffer();
+        for ( int sz; numToRead > 0; totalRead += sz, numToRead -= sz, offset += sz ) {
+            sz = nextRun( numToRead );
+            System.arraycopy( block, runOffset, buf, offset, sz );
+        }
 
-            if ( sz >= readBuf.length ) {
-                readBuf = null;
-            } else {
-                int newLen = readBuf.length - sz;
-                byte[] newBuf = new byte[newLen];
-                System.arraycopy( readBuf, sz, newBuf, 0, newLen );
-                readBuf = newBuf;
-            }
+        entryOffset += totalRead;
 
-            totalRead += sz;
-            numToRead -= sz;
-            offset += sz;
-        }
+        return totalRead;
+    }
 
-        for (; numToRead > 0; ) {
-            byte[] rec = buffer.readRecord();
-            if ( rec == null ) {
+    /**
+     * Advance over the next (up to numToRead) entry bytes, either from
+     * the bytes left in the block by the previous read, or (as whole
+     * records) from the TarBuffer.
+     *
+     * @param numToRead The maximum number of bytes (at least 1).
+     *
+     * @return The number of bytes, which start at runOffset in the buffer's block.
+     */
+    private int nextRun( int numToRead )
+            throws IOException {
+        if ( leftLength == 0 ) {
+            int recordSize = buffer.getRecordSize();
+            int records = (int) ((numToRead + (long) recordSize - 1) / recordSize);
+            int recOffset = buffer.nextRecords( records );
+            if ( recOffset == -1 ) {
                 // Unexpected EOF!
                 throw new IOException( "unexpected EOF with " + numToRead + " bytes unread" );
             }
-
-            int sz = numToRead;
-            int recLen = rec.length;
-
-            if ( recLen > sz ) {
-                System.arraycopy( rec, 0, buf, offset, sz );
-                readBuf = new byte[recLen - sz];
-                System.arraycopy( rec, sz, readBuf, 0, recLen - sz );
-            } else {
-                sz = recLen;
-                System.arraycopy( rec, 0, buf, offset, recLen );
-            }
-
-            totalRead += sz;
-            numToRead -= sz;
-            offset += sz;
+            leftOffset = recOffset;
+            leftLength = Math.min( records * recordSize, buffer.getBlockSize() - recOffset );
         }
-
-        entryOffset += totalRead;
-
-        return totalRead;
+        int sz = Math.min( numToRead, leftLength );
+        runOffset = leftOffset;
+        leftOffset += sz;
+        leftLength -= sz;
+        return sz;
     }
 
     /**
      * Copies the contents of the current tar archive entry directly into
-     * an output stream.
+     * an output stream (straight from the buffer's block).
      *
      * @param out The OutputStream into which to write the entry's data.
      */
     public void copyEntryContents( OutputStream out )
             throws IOException {
-        byte[] buf = new byte[32 * 1024];
-
-        for ( int numRead; -1 != (numRead = read( buf, 0, buf.length )); ) {
-            if ( numRead != 0 ) {
-                out.write( buf, 0, numRead );
-            }
+        byte[] block = buffer.getBlockBuffer();
+        for ( long remaining; (remaining = entrySize - entryOffset) > 0; ) {
+            int sz = nextRun( (int) Math.min( remaining, buffer.getBlockSize() ) );
+            out.write( block, runOffset, sz );
+            entryOffset += sz;
         }
     }
 }
-
-
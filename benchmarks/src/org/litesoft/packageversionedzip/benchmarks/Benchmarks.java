@@ -0,0 +1,23 @@
+package org.litesoft.packageversionedzip.benchmarks;
+
+import org.openjdk.jmh.profile.*;
+import org.openjdk.jmh.runner.*;
+import org.openjdk.jmh.runner.options.*;
+
+/**
+ * Runs the benchmarks (all of them unless the JMH command line arguments include a filter), always w/ the GC profiler so the bytes
+ * allocated per operation ("gc.alloc.rate.norm") are tracked as well as the time.
+ * <p/>
+ * e.g. "java -jar PackageVersionedZipBenchmarks.jar TarHeader -rf json -rff tar-header.json"
+ */
+public class Benchmarks {
+    public static void main( String[] args )
+            throws CommandLineOptionException, RunnerException {
+        CommandLineOptions zCommandLine = new CommandLineOptions( args );
+        ChainedOptionsBuilder zOptions = new OptionsBuilder().parent( zCommandLine ).addProfiler( GCProfiler.class );
+        if ( zCommandLine.getIncludes().isEmpty() ) {
+            zOptions.include( Benchmarks.class.getPackage().getName() + ".*" );
+        }
+        new Runner( zOptions.build() ).run();
+    }
+}
@@ -0,0 +1,166 @@
+package org.litesoft.packageversionedzip.benchmarks;
+
+import com.ice.tar.*;
+import org.litesoft.server.util.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Generates a deterministic (seeded) corpus of real-world shapes as the three matching sources that PackageVersionedZip accepts:
+ * a directory ("corpus"), a ZIP ("corpus.zip"), and a gZip'd tar ("corpus-1-x.gz", i.e. Target "corpus" & Version "1").
+ * <p/>
+ * The shapes (each count can be 0):
+ * - TinyFiles - 0 to 2K bytes each, half text & half random, 1000 per directory (e.g. millions of them).
+ * - DeepFiles - text files whose paths are over 100 bytes (so the tar needs GNU LongName entries).
+ * - MixedFiles - 64K to 4MB each, text (.txt, .xml, .class), random (.jar, .png), or both (.dat).
+ * - LargeFiles - of LargeFileMB each (up to 8191), alternating text & random chunks (e.g. a few multi-GB files).
+ * <p/>
+ * Usage (keyed only): Dir=corpus-parent-dir Seed=1 TinyFiles=10000 DeepFiles=1000 MixedFiles=200 LargeFiles=1 LargeFileMB=256
+ */
+public class CorpusGenerator {
+    public static final String NAME = "corpus";
+    public static final String ZIP_NAME = NAME + ".zip";
+    public static final String GZ_NAME = NAME + "-1-x.gz";
+
+    public static final int CHUNK_SIZE = 1024 * 64;
+
+    private static final long TIMESTAMP = 1406332800000L; // 2014-07-26 (so the ZIP is the same every time)
+    private static final String[] MIXED_EXTENSIONS = {"txt", "xml", "class", "jar", "png", "dat"};
+
+    private enum Content {
+        Text, Random, Both;
+
+        private void fill( byte[] pChunk, long pSeed, int pChunkIndex ) {
+            long zSeed = pSeed * 1000003L + pChunkIndex;
+            if ( (this == Text) || ((this == Both) && ((pChunkIndex & 1) == 0)) ) {
+                System.arraycopy( Fixtures.compressible( pChunk.length, zSeed ), 0, pChunk, 0, pChunk.length );
+            } else {
+                new Random( zSeed ).nextBytes( pChunk );
+            }
+        }
+    }
+
+    private final long mSeed;
+    private final int mTinyFiles, mDeepFiles, mMixedFiles, mLargeFiles;
+    private final long mLargeFileBytes;
+    private final byte[] mChunk = new byte[CHUNK_SIZE];
+    private long mTarPosition;
+
+    public CorpusGenerator( long pSeed, int pTinyFiles, int pDeepFiles, int pMixedFiles, int pLargeFiles, int pLargeFileMB ) {
+        if ( pLargeFileMB > 8191 ) {
+            throw new IllegalArgumentException( "LargeFileMB (" + pLargeFileMB + ") must fit in the tar's (octal) size field: max 8191" );
+        }
+        mSeed = pSeed;
+        mTinyFiles = pTinyFiles;
+        mDeepFiles = pDeepFiles;
+        mMixedFiles = pMixedFiles;
+        mLargeFiles = pLargeFiles;
+        mLargeFileBytes = pLargeFileMB * 1024L * 1024L;
+    }
+
+    public static void main( String[] args )
+            throws IOException {
+        ArgsToMap zArgs = new ArgsToMap( args );
+        File zDir = new File( zArgs.get( "Dir", "." ) ).getAbsoluteFile();
+        new CorpusGenerator( Long.parseLong( zArgs.get( "Seed", "1" ) ),
+                             Integer.parseInt( zArgs.get( "TinyFiles", "10000" ) ),
+                             Integer.parseInt( zArgs.get( "DeepFiles", "1000" ) ),
+                             Integer.parseInt( zArgs.get( "MixedFiles", "200" ) ),
+                             Integer.parseInt( zArgs.get( "LargeFiles", "1" ) ),
+                             Integer.parseInt( zArgs.get( "LargeFileMB", "256" ) ) ).generate( zDir );
+        System.out.println( "Generated: " + new File( zDir, NAME ) + ", " + ZIP_NAME + ", & " + GZ_NAME );
+    }
+
+    public void generate( File pParentDir )
+            throws IOException {
+        File zSourceDir = new File( pParentDir, NAME );
+        if ( zSourceDir.exists() ) {
+            throw new IOException( "Already exists (delete it first): " + zSourceDir );
+        }
+        ZipOutputStream zZip = new ZipOutputStream( new BufferedOutputStream( new FileOutputStream( new File( pParentDir, ZIP_NAME ) ), CHUNK_SIZE ) );
+        OutputStream zTar = new GZIPOutputStream( new FileOutputStream( new File( pParentDir, GZ_NAME ) ), CHUNK_SIZE );
+        try {
+            Random zRandom = new Random( mSeed );
+            int zIndex = 0;
+            for ( int i = 0; i < mTinyFiles; i++ ) {
+                boolean zText = zRandom.nextBoolean();
+                add( zSourceDir, zZip, zTar, "tiny/d" + (i / 1000) + "/f" + i + (zText ? ".txt" : ".bin"),
+                     zRandom.nextInt( 2049 ), zText ? Content.Text : Content.Random, zIndex++ );
+            }
+            for ( int i = 0; i < mDeepFiles; i++ ) {
+                StringBuilder zPath = new StringBuilder( "deep" );
+                for ( int zLevel = 0, zDepth = 4 + zRandom.nextInt( 8 ); zLevel < zDepth; zLevel++ ) {
+                    zPath.append( "/level-" ).append( zLevel ).append( "-with-a-rather-long-directory-name-" ).append( i % 7 );
+                }
+                add( zSourceDir, zZip, zTar, zPath.append( "/file" ).append( i ).append( ".txt" ).toString(),
+                     1 + zRandom.nextInt( 1024 * 16 ), Content.Text, zIndex++ );
+            }
+            for ( int i = 0; i < mMixedFiles; i++ ) {
+                String zExtension = MIXED_EXTENSIONS[zRandom.nextInt( MIXED_EXTENSIONS.length )];
+                Content zContent = "dat".equals( zExtension ) ? Content.Both : (("jar".equals( zExtension ) || "png".equals( zExtension )) ? Content.Random : Content.Text);
+                add( zSourceDir, zZip, zTar, "mixed/m" + i + "." + zExtension,
+                     CHUNK_SIZE + zRandom.nextInt( 1024 * 1024 * 4 - CHUNK_SIZE + 1 ), zContent, zIndex++ );
+            }
+            for ( int i = 0; i < mLargeFiles; i++ ) {
+                add( zSourceDir, zZip, zTar, "large/big" + i + ".dat", mLargeFileBytes, Content.Both, zIndex++ );
+            }
+            writeTar( zTar, new byte[TarHeader.HEADER_LENGTH * 2], TarHeader.HEADER_LENGTH * 2 ); // End-Of-Archive
+            padTar( zTar, Fixtures.BLOCK_SIZE );
+        }
+        finally {
+            zZip.close();
+            zTar.close();
+        }
+    }
+
+    private void add( File pSourceDir, ZipOutputStream pZip, OutputStream pTar, String pName, long pSize, Content pContent, int pIndex )
+            throws IOException {
+        File zFile = new File( pSourceDir, pName );
+        if ( !zFile.getParentFile().isDirectory() && !zFile.getParentFile().mkdirs() ) {
+            throw new IOException( "Unable to create: " + zFile.getParentFile() );
+        }
+        ZipEntry zZipEntry = new ZipEntry( pName );
+        zZipEntry.setTime( TIMESTAMP );
+        pZip.putNextEntry( zZipEntry );
+        byte[] zNameBytes = pName.getBytes( "UTF-8" );
+        if ( zNameBytes.length >= TarHeader._name.getLength() ) {
+            writeTar( pTar, Fixtures.header( "././@LongLink", zNameBytes.length + 1, 'L' ), TarHeader.HEADER_LENGTH );
+            writeTar( pTar, zNameBytes, zNameBytes.length );
+            writeTar( pTar, new byte[1], 1 );
+            padTar( pTar, TarHeader.HEADER_LENGTH );
+            pName = pName.substring( 0, TarHeader._name.getLength() - 1 );
+        }
+        writeTar( pTar, Fixtures.header( pName, pSize, '0' ), TarHeader.HEADER_LENGTH );
+        OutputStream zOutputStream = new FileOutputStream( zFile );
+        try {
+            long zSeed = mSeed * 7919L + pIndex;
+            int zChunkIndex = 0;
+            for ( long zRemaining = pSize; zRemaining > 0; zRemaining -= CHUNK_SIZE ) {
+                int zLength = (int) Math.min( CHUNK_SIZE, zRemaining );
+                pContent.fill( mChunk, zSeed, zChunkIndex++ );
+                zOutputStream.write( mChunk, 0, zLength );
+                pZip.write( mChunk, 0, zLength );
+                writeTar( pTar, mChunk, zLength );
+            }
+        }
+        finally {
+            zOutputStream.close();
+        }
+        pZip.closeEntry();
+        padTar( pTar, TarHeader.HEADER_LENGTH );
+    }
+
+    private void writeTar( OutputStream pTar, byte[] pBytes, int pLength )
+            throws IOException {
+        pTar.write( pBytes, 0, pLength );
+        mTarPosition += pLength;
+    }
+
+    private void padTar( OutputStream pTar, int pMultiple )
+            throws IOException {
+        int zPad = (int) ((pMultiple - (mTarPosition % pMultiple)) % pMultiple);
+        writeTar( pTar, new byte[zPad], zPad );
+    }
+}
@@ -0,0 +1,134 @@
+package org.litesoft.packageversionedzip.benchmarks;
+
+import com.ice.tar.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Deterministic (seeded) data & tar archives for the benchmarks, so runs are comparable from commit to commit.
+ */
+public class Fixtures {
+    public static final int RECORD_SIZE = TarHeader.HEADER_LENGTH;
+    public static final int BLOCK_SIZE = RECORD_SIZE * 20; // The tar default
+
+    private static final String[] WORDS = {"package", "version", "target", "zip", "entry", "deflate", "header", "buffer", "stream",
+                                           "record", "block", "file", "directory", "size", "name", "the", "a", "of", "and", "to"};
+
+    /**
+     * @return pSize bytes of text like data (roughly 3:1 deflatable).
+     */
+    public static byte[] compressible( int pSize, long pSeed ) {
+        Random zRandom = new Random( pSeed );
+        byte[] zBytes = new byte[pSize];
+        for ( int zOffset = 0; zOffset < pSize; ) {
+            String zWord = (zRandom.nextInt( 16 ) == 0) ? Long.toHexString( zRandom.nextLong() ) : WORDS[zRandom.nextInt( WORDS.length )];
+            for ( int i = 0; (i < zWord.length()) && (zOffset < pSize); i++ ) {
+                zBytes[zOffset++] = (byte) zWord.charAt( i );
+            }
+            if ( zOffset < pSize ) {
+                zBytes[zOffset++] = (byte) ((zRandom.nextInt( 12 ) == 0) ? '\n' : ' ');
+            }
+        }
+        return zBytes;
+    }
+
+    /**
+     * @return pSize bytes of random (not deflatable) data.
+     */
+    public static byte[] incompressible( int pSize, long pSeed ) {
+        byte[] zBytes = new byte[pSize];
+        new Random( pSeed ).nextBytes( zBytes );
+        return zBytes;
+    }
+
+    /**
+     * @param pLongNames true to give each entry a name (over 100 bytes) that needs a GNU LongName entry
+     *
+     * @return a (GNU) tar archive of pEntries (compressible) entries of pEntrySize bytes each.
+     */
+    public static byte[] tar( int pEntries, int pEntrySize, boolean pLongNames ) {
+        ByteArrayOutputStream zTar = new ByteArrayOutputStream( (pEntries + 2) * (RECORD_SIZE * 2 + pEntrySize) );
+        byte[] zData = compressible( pEntrySize, pEntrySize );
+        for ( int i = 0; i < pEntries; i++ ) {
+            String zName = entryName( i, pLongNames );
+            if ( zName.length() >= TarHeader._name.getLength() ) {
+                byte[] zNameBytes = (zName + "\0").getBytes();
+                zTar.write( header( "././@LongLink", zNameBytes.length, 'L' ), 0, RECORD_SIZE );
+                zTar.write( zNameBytes, 0, zNameBytes.length );
+                pad( zTar, RECORD_SIZE );
+                zName = zName.substring( 0, TarHeader._name.getLength() - 1 );
+            }
+            zTar.write( header( zName, pEntrySize, '0' ), 0, RECORD_SIZE );
+            zTar.write( zData, 0, zData.length );
+            pad( zTar, RECORD_SIZE );
+        }
+        zTar.write( new byte[RECORD_SIZE * 2], 0, RECORD_SIZE * 2 ); // End-Of-Archive
+        pad( zTar, BLOCK_SIZE );
+        return zTar.toByteArray();
+    }
+
+    /**
+     * Write a gzip'd tar archive (see tar) in the "normal format" (all entries under a single top directory, see ParameterSource).
+     */
+    public static File tarGZ( File pFile, int pEntries, int pEntrySize, boolean pLongNames )
+            throws IOException {
+        OutputStream zOutputStream = new GZIPOutputStream( new FileOutputStream( pFile ), 1024 * 64 );
+        try {
+            zOutputStream.write( tar( pEntries, pEntrySize, pLongNames ) );
+        }
+        finally {
+            zOutputStream.close();
+        }
+        return pFile;
+    }
+
+    public static String entryName( int pIndex, boolean pLongName ) {
+        String zName = "top/dir" + (pIndex % 32) + "/file" + pIndex + ".txt";
+        if ( pLongName ) {
+            zName = "top/a-rather-long-directory-name-for-benchmarking/another-rather-long-directory-name/and-one-more-for-good-measure/" +
+                    zName.substring( 4 );
+        }
+        return zName;
+    }
+
+    public static byte[] header( String pName, long pSize, char pTypeFlag ) {
+        byte[] zHeader = new byte[RECORD_SIZE];
+        TarHeader.getNameBytes( new StringBuffer( pName ), zHeader, TarHeader._name.getOffset(), TarHeader._name.getLength() );
+        TarHeader.getOctalBytes( 0644, zHeader, TarHeader._mode.getOffset(), TarHeader._mode.getLength() );
+        TarHeader.getOctalBytes( 1000, zHeader, TarHeader._uid.getOffset(), TarHeader._uid.getLength() );
+        TarHeader.getOctalBytes( 1000, zHeader, TarHeader._gid.getOffset(), TarHeader._gid.getLength() );
+        TarHeader.getLongOctalBytes( pSize, zHeader, TarHeader._size.getOffset(), TarHeader._size.getLength() );
+        TarHeader.getLongOctalBytes( 1406332800L, zHeader, TarHeader._mtime.getOffset(), TarHeader._mtime.getLength() );
+        zHeader[TarHeader._typeflag.getOffset()] = (byte) pTypeFlag;
+        TarHeader.getNameBytes( new StringBuffer( "ustar  " ), zHeader, TarHeader._magic.getOffset(), 8 ); // GNU Magic & Version
+        TarHeader.getNameBytes( new StringBuffer( "builder" ), zHeader, TarHeader._uname.getOffset(), TarHeader._uname.getLength() );
+        TarHeader.getNameBytes( new StringBuffer( "builder" ), zHeader, TarHeader._gname.getOffset(), TarHeader._gname.getLength() );
+        long zCheckSum = 0;
+        for ( int i = 0; i < RECORD_SIZE; i++ ) {
+            boolean zInCheckSum = (TarHeader._chksum.getOffset() <= i) && (i < TarHeader._chksum.end());
+            zCheckSum += zInCheckSum ? ' ' : (zHeader[i] & 0xFF);
+        }
+        TarHeader.getCheckSumOctalBytes( zCheckSum, zHeader, TarHeader._chksum.getOffset(), TarHeader._chksum.getLength() );
+        return zHeader;
+    }
+
+    private static void pad( ByteArrayOutputStream pTar, int pMultiple ) {
+        int zPad = (pMultiple - (pTar.size() % pMultiple)) % pMultiple;
+        pTar.write( new byte[zPad], 0, zPad );
+    }
+
+    /**
+     * An OutputStream that discards the bytes (so only the producing side is measured).
+     */
+    public static class NullOutputStream extends OutputStream {
+        @Override
+        public void write( int pByte ) {
+        }
+
+        @Override
+        public void write( byte[] pBytes, int pOffset, int pLength ) {
+        }
+    }
+}
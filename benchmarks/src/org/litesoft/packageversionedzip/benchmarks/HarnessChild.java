@@ -0,0 +1,62 @@
+package org.litesoft.packageversionedzip.benchmarks;
+
+import org.litesoft.packageversionedzip.*;
+
+import java.io.*;
+import java.lang.management.*;
+
+/**
+ * The child JVM's main for the PackagingHarness: runs PackageVersionedZip, and (as it exits the JVM) reports its peaks on the way out.
+ */
+public class HarnessChild {
+    public static final String PEAK_RSS_PREFIX = "HarnessChild-PeakRSS=";
+    public static final String PEAK_HEAP_PREFIX = "HarnessChild-PeakHeap=";
+
+    public static void main( String[] args ) {
+        Runtime.getRuntime().addShutdownHook( new Thread() {
+            @Override
+            public void run() {
+                System.out.println( PEAK_RSS_PREFIX + peakRSS() );
+                System.out.println( PEAK_HEAP_PREFIX + peakHeap() );
+                System.out.flush();
+            }
+        } );
+        PackageVersionedZip.main( args );
+    }
+
+    /**
+     * @return the sum of the peaks of the heap pools (the pools can peak at different times, so it is an upper bound)
+     */
+    private static long peakHeap() {
+        long zPeak = 0;
+        for ( MemoryPoolMXBean zPool : ManagementFactory.getMemoryPoolMXBeans() ) {
+            if ( zPool.getType() == MemoryType.HEAP ) {
+                zPeak += zPool.getPeakUsage().getUsed();
+            }
+        }
+        return zPeak;
+    }
+
+    /**
+     * @return the "high water mark" of the Resident Set Size (in bytes), -1 if not available (only Linux has /proc/self/status)
+     */
+    private static long peakRSS() {
+        try {
+            BufferedReader zReader = new BufferedReader( new FileReader( "/proc/self/status" ) );
+            try {
+                for ( String zLine; null != (zLine = zReader.readLine()); ) {
+                    if ( zLine.startsWith( "VmHWM:" ) ) {
+                        return Long.parseLong( zLine.substring( 6 ).replace( "kB", "" ).trim() ) * 1024;
+                    }
+                }
+            }
+            finally {
+                zReader.close();
+            }
+        }
+        catch ( IOException e ) {
+            // Not Linux
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,276 @@
+package org.litesoft.packageversionedzip.benchmarks;
+
+import org.litesoft.commonfoundation.typeutils.*;
+import org.litesoft.server.util.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Runs PackageVersionedZip end to end on each type of Source (see ParameterSource) of a generated corpus (see CorpusGenerator), each in
+ * its own JVM (as PackageVersionedZip exits the JVM), and records per run: MB/s & files/s (of the corpus' uncompressed content), the
+ * peak RSS & heap of the JVM, and the peak temporary disk used (the SpillDir), so the results can be compared from commit to commit.
+ * <p/>
+ * Each run's result is printed and appended (as a JSON line) to "results.jsonl" in the Work directory.
+ * <p/>
+ * Usage: Corpus=corpus-parent-dir Work=work-dir Label=e.g.-the-commit Sources=Dir,Zip,gz JavaOptions=-Xmx512m (any other arguments,
+ * e.g. Threads=4, are passed to PackageVersionedZip)
+ */
+public class PackagingHarness {
+    public static final String[] SOURCE_TYPES = {"Dir", "Zip", "gz"};
+    public static final String RESULTS_FILE_NAME = "results.jsonl";
+
+    private static final String[] HARNESS_KEYS = {"Corpus", "Work", "Label", "Sources", "JavaOptions"};
+    private static final long SAMPLE_MILLIS = 50;
+    private static final double MB = 1024.0 * 1024;
+
+    private final File mCorpusDir, mWorkDir;
+    private final String mLabel;
+    private final List<String> mJavaOptions, mPassThruArgs;
+    private final int mFiles;
+    private final long mBytes;
+
+    public PackagingHarness( File pCorpusDir, File pWorkDir, String pLabel, List<String> pJavaOptions, List<String> pPassThruArgs ) {
+        mCorpusDir = pCorpusDir;
+        mWorkDir = pWorkDir;
+        mLabel = pLabel;
+        mJavaOptions = pJavaOptions;
+        mPassThruArgs = pPassThruArgs;
+        long[] zFilesAndBytes = new long[2];
+        tally( new File( mCorpusDir, CorpusGenerator.NAME ), zFilesAndBytes );
+        mFiles = (int) zFilesAndBytes[0];
+        mBytes = zFilesAndBytes[1];
+        if ( mFiles == 0 ) {
+            throw new IllegalArgumentException( "No corpus (see CorpusGenerator) in: " + mCorpusDir );
+        }
+    }
+
+    public static void main( String[] args )
+            throws Exception {
+        ArgsToMap zArgs = new ArgsToMap( args );
+        List<String> zJavaOptions = Lists.newArrayList();
+        for ( String zOption : zArgs.get( "JavaOptions", "" ).split( " " ) ) {
+            if ( zOption.length() != 0 ) {
+                zJavaOptions.add( zOption );
+            }
+        }
+        PackagingHarness zHarness = new PackagingHarness( new File( zArgs.get( "Corpus", "." ) ).getAbsoluteFile(),
+                                                          new File( zArgs.get( "Work", "harness-work" ) ).getAbsoluteFile(),
+                                                          zArgs.get( "Label", "" ), zJavaOptions, passThru( args ) );
+        boolean zOK = true;
+        for ( String zSourceType : zArgs.get( "Sources", join( SOURCE_TYPES ) ).split( "," ) ) {
+            zOK &= zHarness.run( zSourceType.trim() );
+        }
+        System.exit( zOK ? 0 : 1 );
+    }
+
+    /**
+     * @return true if PackageVersionedZip succeeded (the result is only recorded if it did)
+     */
+    public boolean run( String pSourceType )
+            throws IOException, InterruptedException {
+        File zRunDir = new File( mWorkDir, pSourceType );
+        delete( zRunDir );
+        File zLocalVerDir = new File( zRunDir, "LocalVerDir" );
+        final File zSpillDir = new File( zRunDir, "Spill" );
+        if ( !zLocalVerDir.mkdirs() || !zSpillDir.mkdirs() ) {
+            throw new IOException( "Unable to create: " + zRunDir );
+        }
+        List<String> zCommand = Lists.newArrayList();
+        zCommand.add( new File( new File( System.getProperty( "java.home" ), "bin" ), "java" ).getPath() );
+        zCommand.addAll( mJavaOptions );
+        zCommand.add( "-cp" );
+        zCommand.add( System.getProperty( "java.class.path" ) );
+        zCommand.add( HarnessChild.class.getName() );
+        zCommand.add( "Source=" + sourceFor( pSourceType ).getPath() );
+        if ( !"gz".equals( pSourceType ) ) { // The ".gz"'s name supplies them
+            zCommand.add( "Target=" + CorpusGenerator.NAME );
+            zCommand.add( "Version=" + pSourceType );
+        }
+        zCommand.add( "LocalVerDir=" + zLocalVerDir.getPath() );
+        zCommand.add( "SpillDir=" + zSpillDir.getPath() );
+        zCommand.addAll( mPassThruArgs );
+
+        final long[] zPeakSpill = new long[1];
+        final boolean[] zDone = new boolean[1];
+        Thread zSampler = new Thread( "SpillSampler" ) {
+            @Override
+            public void run() {
+                try {
+                    while ( !isDone() ) {
+                        zPeakSpill[0] = Math.max( zPeakSpill[0], sizeOf( zSpillDir ) );
+                        Thread.sleep( SAMPLE_MILLIS );
+                    }
+                }
+                catch ( InterruptedException e ) {
+                    // Done
+                }
+            }
+
+            private boolean isDone() {
+                synchronized ( zDone ) {
+                    return zDone[0];
+                }
+            }
+        };
+        long zStarted = System.nanoTime();
+        Process zProcess = new ProcessBuilder( zCommand ).redirectErrorStream( true ).start();
+        zSampler.start();
+        Output zOutput = new Output( zProcess.getInputStream() );
+        int zExitCode = zProcess.waitFor();
+        long zNanos = System.nanoTime() - zStarted;
+        synchronized ( zDone ) {
+            zDone[0] = true;
+        }
+        zSampler.join();
+
+        if ( zExitCode != 0 ) {
+            System.out.println( pSourceType + ": FAILED (exit code " + zExitCode + "), last output:" );
+            for ( String zLine : zOutput.mLastLines ) {
+                System.out.println( "    " + zLine );
+            }
+            return false;
+        }
+        double zSeconds = zNanos / 1e9;
+        String zResult = String.format( Locale.US,
+                                        "{\"label\":\"%s\",\"source\":\"%s\",\"args\":\"%s\",\"files\":%d,\"bytes\":%d,\"seconds\":%.3f," +
+                                        "\"MBps\":%.2f,\"filesPerSecond\":%.1f,\"peakRSSMB\":%.1f,\"peakHeapMB\":%.1f,\"peakSpillMB\":%.1f," +
+                                        "\"zipMB\":%.1f}",
+                                        escape( mLabel ), pSourceType, escape( join( mPassThruArgs.toArray( new String[mPassThruArgs.size()] ) ) ),
+                                        mFiles, mBytes, zSeconds, mBytes / MB / zSeconds, mFiles / zSeconds, zOutput.mPeakRSS / MB,
+                                        zOutput.mPeakHeap / MB, zPeakSpill[0] / MB, sizeOf( zLocalVerDir ) / MB );
+        System.out.println( String.format( Locale.US, "%-4s %8.2f s %8.1f MB/s %10.1f files/s   RSS %7.1f MB   Heap %7.1f MB   Spill %8.1f MB",
+                                           pSourceType, zSeconds, mBytes / MB / zSeconds, mFiles / zSeconds, zOutput.mPeakRSS / MB,
+                                           zOutput.mPeakHeap / MB, zPeakSpill[0] / MB ) );
+        Writer zWriter = new OutputStreamWriter( new FileOutputStream( new File( mWorkDir, RESULTS_FILE_NAME ), true ), "UTF-8" );
+        try {
+            zWriter.write( zResult );
+            zWriter.write( '\n' );
+        }
+        finally {
+            zWriter.close();
+        }
+        return true;
+    }
+
+    private File sourceFor( String pSourceType ) {
+        if ( "Dir".equals( pSourceType ) ) {
+            return new File( mCorpusDir, CorpusGenerator.NAME );
+        }
+        if ( "Zip".equals( pSourceType ) ) {
+            return new File( mCorpusDir, CorpusGenerator.ZIP_NAME );
+        }
+        if ( "gz".equals( pSourceType ) ) {
+            return new File( mCorpusDir, CorpusGenerator.GZ_NAME );
+        }
+        throw new IllegalArgumentException( "Unknown Source type '" + pSourceType + "', expected one of: " + join( SOURCE_TYPES ) );
+    }
+
+    /**
+     * Drains (so the child never blocks on a full pipe) the child's output, keeping the last few lines and the peaks the HarnessChild reports.
+     */
+    private static class Output extends Thread {
+        private static final int LAST_LINES = 20;
+
+        private final BufferedReader mReader;
+        private final LinkedList<String> mLastLines = Lists.newLinkedList();
+        private volatile long mPeakRSS = -1, mPeakHeap = -1;
+
+        private Output( InputStream pInputStream )
+                throws UnsupportedEncodingException {
+            super( "HarnessChildOutput" );
+            mReader = new BufferedReader( new InputStreamReader( pInputStream, "UTF-8" ) );
+            start();
+        }
+
+        @Override
+        public void run() {
+            try {
+                for ( String zLine; null != (zLine = mReader.readLine()); ) {
+                    if ( zLine.startsWith( HarnessChild.PEAK_RSS_PREFIX ) ) {
+                        mPeakRSS = Long.parseLong( zLine.substring( HarnessChild.PEAK_RSS_PREFIX.length() ) );
+                    } else if ( zLine.startsWith( HarnessChild.PEAK_HEAP_PREFIX ) ) {
+                        mPeakHeap = Long.parseLong( zLine.substring( HarnessChild.PEAK_HEAP_PREFIX.length() ) );
+                    } else {
+                        synchronized ( mLastLines ) {
+                            mLastLines.add( zLine );
+                            if ( mLastLines.size() > LAST_LINES ) {
+                                mLastLines.removeFirst();
+                            }
+                        }
+                    }
+                }
+            }
+            catch ( IOException e ) {
+                // Child gone
+            }
+        }
+    }
+
+    private static List<String> passThru( String[] pArgs ) {
+        List<String> zArgs = Lists.newArrayList();
+        for ( String zArg : pArgs ) {
+            if ( !isHarnessKey( zArg ) ) {
+                zArgs.add( zArg );
+            }
+        }
+        return zArgs;
+    }
+
+    private static boolean isHarnessKey( String pArg ) {
+        for ( String zKey : HARNESS_KEYS ) {
+            if ( pArg.startsWith( zKey + "=" ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void tally( File pFile, long[] pFilesAndBytes ) {
+        File[] zFiles = pFile.listFiles();
+        if ( zFiles != null ) {
+            for ( File zFile : zFiles ) {
+                if ( zFile.isDirectory() ) {
+                    tally( zFile, pFilesAndBytes );
+                } else {
+                    pFilesAndBytes[0]++;
+                    pFilesAndBytes[1] += zFile.length();
+                }
+            }
+        }
+    }
+
+    private static long sizeOf( File pDir ) {
+        long[] zFilesAndBytes = new long[2];
+        tally( pDir, zFilesAndBytes );
+        return zFilesAndBytes[1];
+    }
+
+    private static void delete( File pFile )
+            throws IOException {
+        File[] zFiles = pFile.listFiles();
+        if ( zFiles != null ) {
+            for ( File zFile : zFiles ) {
+                delete( zFile );
+            }
+        }
+        if ( pFile.exists() && !pFile.delete() ) {
+            throw new IOException( "Unable to delete: " + pFile );
+        }
+    }
+
+    private static String join( String[] pValues ) {
+        StringBuilder sb = new StringBuilder();
+        for ( String zValue : pValues ) {
+            if ( sb.length() != 0 ) {
+                sb.append( ',' );
+            }
+            sb.append( zValue );
+        }
+        return sb.toString();
+    }
+
+    private static String escape( String pValue ) {
+        return pValue.replace( "\\", "\\\\" ).replace( "\"", "\\\"" );
+    }
+}
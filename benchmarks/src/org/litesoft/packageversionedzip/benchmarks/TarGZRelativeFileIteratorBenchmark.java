@@ -0,0 +1,73 @@
+package org.litesoft.packageversionedzip.benchmarks;
+
+import org.litesoft.commonfoundation.base.*;
+import org.litesoft.server.file.*;
+import org.litesoft.server.util.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+/**
+ * TarGZRelativeFileIterator end to end (gunzip, tar, & the buffering or streaming of the entries), per archive (of ARCHIVE_SIZE
+ * uncompressed) read in full.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TarGZRelativeFileIteratorBenchmark {
+    public static final int ARCHIVE_SIZE = 1024 * 1024 * 16; // 16MB
+
+    @Param({"4096", "1048576"})
+    public int entrySize;
+
+    @Param({"Buffered", "Streamed"})
+    public String mode;
+
+    private File mTarGZ;
+    private byte[] mBuffer;
+
+    @Setup
+    public void setup()
+            throws IOException {
+        mTarGZ = Fixtures.tarGZ( File.createTempFile( "benchmark-", ".gz" ), Math.max( 1, ARCHIVE_SIZE / entrySize ), entrySize, false );
+        mBuffer = new byte[1024 * 64];
+    }
+
+    @TearDown
+    public void tearDown() {
+        mTarGZ.delete();
+    }
+
+    @Benchmark
+    public long readAll()
+            throws IOException {
+        long zStreamFromBytes = "Streamed".equals( mode ) ? 0 : Long.MAX_VALUE;
+        TarGZRelativeFileIterator zFiles = new TarGZRelativeFileIterator( mTarGZ, zStreamFromBytes, new SpillManager() );
+        long zTotal = 0;
+        try {
+            while ( zFiles.hasNext() ) {
+                RelativeFile zFile = zFiles.next();
+                InputStream zInputStream = zFile.open();
+                try {
+                    for ( int zRead; -1 != (zRead = zInputStream.read( mBuffer )); ) {
+                        zTotal += zRead;
+                    }
+                }
+                finally {
+                    zInputStream.close();
+                }
+                if ( zFile instanceof Disposable ) {
+                    ((Disposable) zFile).dispose();
+                }
+            }
+        }
+        finally {
+            zFiles.dispose();
+        }
+        return zTotal;
+    }
+}
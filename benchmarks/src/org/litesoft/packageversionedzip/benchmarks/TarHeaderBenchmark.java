@@ -0,0 +1,58 @@
+package org.litesoft.packageversionedzip.benchmarks;
+
+import com.ice.tar.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+import java.util.concurrent.*;
+
+/**
+ * Tar header parsing, per entry: just the name & size (all that TarInputStream & TarGZRelativeFileIterator use, see the lazy TarHeader),
+ * and every field.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TarHeaderBenchmark {
+    @Param({"false", "true"})
+    public boolean longName; // A name that fills the name field (the longest w/o a GNU LongName entry)
+
+    private byte[] mHeader;
+
+    @Setup
+    public void setup() {
+        String zName = Fixtures.entryName( 12345, false );
+        if ( longName ) {
+            while ( zName.length() < TarHeader._name.getLength() - 1 ) {
+                zName = "d/" + zName;
+            }
+        }
+        mHeader = Fixtures.header( zName, 123456789L, '0' );
+    }
+
+    @Benchmark
+    public void nameAndSize( Blackhole pBlackhole )
+            throws InvalidHeaderException {
+        TarEntry zEntry = new TarEntry( mHeader, 0 );
+        pBlackhole.consume( zEntry.getName() );
+        pBlackhole.consume( zEntry.getSize() );
+        pBlackhole.consume( zEntry.isDirectory() );
+    }
+
+    @Benchmark
+    public void allFields( Blackhole pBlackhole )
+            throws InvalidHeaderException {
+        TarHeader zHeader = new TarHeader( mHeader, 0 );
+        pBlackhole.consume( zHeader.getName() );
+        pBlackhole.consume( zHeader.getSize() );
+        pBlackhole.consume( zHeader.getTypeFlag() );
+        pBlackhole.consume( zHeader.getUserId() );
+        pBlackhole.consume( zHeader.getGroupId() );
+        pBlackhole.consume( zHeader.getUserName() );
+        pBlackhole.consume( zHeader.getGroupName() );
+        pBlackhole.consume( zHeader.getModificationTime() );
+    }
+}
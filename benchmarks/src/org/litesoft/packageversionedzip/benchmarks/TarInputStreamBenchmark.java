@@ -0,0 +1,75 @@
+package org.litesoft.packageversionedzip.benchmarks;
+
+import com.ice.tar.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+/**
+ * TarInputStream over an in memory tar (of ARCHIVE_SIZE, so the gunzip & disk are not measured), per archive: reading every entry w/
+ * read( byte[] ), w/ copyEntryContents, and skipping every entry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TarInputStreamBenchmark {
+    public static final int ARCHIVE_SIZE = 1024 * 1024 * 16; // 16MB
+
+    @Param({"1024", "65536", "1048576"})
+    public int entrySize;
+
+    @Param({"false", "true"})
+    public boolean longNames; // GNU LongName entries (see TarInputStream.processExtended)
+
+    private byte[] mTar;
+    private byte[] mBuffer;
+
+    @Setup
+    public void setup() {
+        mTar = Fixtures.tar( Math.max( 1, ARCHIVE_SIZE / entrySize ), entrySize, longNames );
+        mBuffer = new byte[1024 * 64];
+    }
+
+    @Benchmark
+    public long read()
+            throws IOException {
+        TarInputStream zTar = new TarInputStream( new ByteArrayInputStream( mTar ) );
+        long zTotal = 0;
+        while ( zTar.getNextEntry() != null ) {
+            for ( int zRead; -1 != (zRead = zTar.read( mBuffer )); ) {
+                zTotal += zRead;
+            }
+        }
+        zTar.close();
+        return zTotal;
+    }
+
+    @Benchmark
+    public int copyEntryContents()
+            throws IOException {
+        TarInputStream zTar = new TarInputStream( new ByteArrayInputStream( mTar ) );
+        OutputStream zOutputStream = new Fixtures.NullOutputStream();
+        int zEntries = 0;
+        for (; zTar.getNextEntry() != null; zEntries++ ) {
+            zTar.copyEntryContents( zOutputStream );
+        }
+        zTar.close();
+        return zEntries;
+    }
+
+    @Benchmark
+    public long skip()
+            throws IOException {
+        TarInputStream zTar = new TarInputStream( new ByteArrayInputStream( mTar ) );
+        long zTotal = 0;
+        while ( zTar.getNextEntry() != null ) {
+            zTotal += zTar.skip( zTar.getEntrySize() );
+        }
+        zTar.close();
+        return zTotal;
+    }
+}
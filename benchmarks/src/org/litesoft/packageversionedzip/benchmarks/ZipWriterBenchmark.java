@@ -0,0 +1,70 @@
+package org.litesoft.packageversionedzip.benchmarks;
+
+import org.litesoft.packageversionedzip.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+/**
+ * Zip writing (Local Header, data, Data Descriptor, & the Central Directory entry - written on the TearDown), per entry by size class,
+ * either Deflated (w/ EntryDeflater, as ZipFileCreator does) or Stored (see CompressionPolicy).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ZipWriterBenchmark {
+    @Param({"1024", "65536", "1048576", "16777216"})
+    public int entrySize;
+
+    @Param({"Deflated", "Stored"})
+    public String method;
+
+    @Param({"Compressible", "Incompressible"})
+    public String content;
+
+    private byte[] mData;
+    private EntryDeflater mDeflater;
+    private File mZipFile;
+    private ZipWriter mZipWriter;
+    private int mEntries;
+
+    @Setup
+    public void setup() {
+        mData = "Compressible".equals( content ) ? Fixtures.compressible( entrySize, entrySize ) : Fixtures.incompressible( entrySize, entrySize );
+        mDeflater = new EntryDeflater();
+    }
+
+    @TearDown
+    public void tearDown() {
+        mDeflater.dispose();
+    }
+
+    @Setup(Level.Iteration)
+    public void openZip()
+            throws IOException {
+        mZipFile = File.createTempFile( "benchmark-", ".zip" );
+        mZipWriter = new ZipWriter( new ZipOutput( mZipFile ), 0 );
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeZip()
+            throws IOException {
+        mZipWriter.close();
+        mZipFile.delete();
+    }
+
+    @Benchmark
+    public CompressionResult addEntry()
+            throws IOException {
+        String zName = "dir" + (mEntries % 32) + "/entry" + mEntries++ + ".dat";
+        InputStream zInputStream = new ByteArrayInputStream( mData );
+        if ( "Stored".equals( method ) ) {
+            return mZipWriter.addStored( zName, zInputStream, mData.length );
+        }
+        return mZipWriter.addDeflated( zName, zInputStream, mDeflater );
+    }
+}
@@ -0,0 +1,35 @@
+package org.litesoft.packageversionedzip;
+
+/**
+ * An Optional (Keyed only) Parameter that is a whole number within a range (inclusive).
+ */
+public abstract class AbstractOptionalIntParameter extends AbstractOptionalParameter<Integer> {
+    private final int mMin;
+    private final int mMax;
+
+    protected AbstractOptionalIntParameter( int pMin, int pMax, int pDefault, String... pNames ) {
+        super( "MUST be a number from " + pMin + " thru " + pMax, pDefault, pNames );
+        mMin = pMin;
+        mMax = pMax;
+    }
+
+    @Override
+    public boolean acceptable( String pValue ) {
+        Integer zValue = parse( pValue );
+        return (zValue != null) && (mMin <= zValue) && (zValue <= mMax);
+    }
+
+    @Override
+    protected Integer convertValidated( String pValue ) {
+        return parse( pValue );
+    }
+
+    private static Integer parse( String pValue ) {
+        try {
+            return Integer.valueOf( pValue );
+        }
+        catch ( NumberFormatException e ) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.litesoft.packageversionedzip;
+
+import org.litesoft.packageversioned.*;
+import org.litesoft.server.util.*;
+
+/**
+ * An Optional Parameter is only ever populated from a Keyed Argument (e.g. "Threads=8"); if not supplied, the Default is used.
+ * <p/>
+ * This keeps the Optional Parameters from consuming the non-keyed values that the "positional" Parameters
+ * (Source, Target, Version, & LocalVerDir) depend on.
+ */
+public abstract class AbstractOptionalParameter<T> extends AbstractParameter<T> {
+    private final T mDefault;
+
+    protected AbstractOptionalParameter( String pInvalid, T pDefault, String... pNames ) {
+        super( pInvalid, pNames );
+        mValue = mDefault = pDefault;
+    }
+
+    public T getDefault() {
+        return mDefault;
+    }
+
+    @Override
+    protected void populateFromNonKeyed( ArgsToMap pArgs ) {
+        mValue = mDefault;
+    }
+}
@@ -0,0 +1,106 @@
+package org.litesoft.packageversionedzip;
+
+import org.litesoft.commonfoundation.indent.*;
+
+import java.util.zip.*;
+
+/**
+ * Adapts the Deflate level (for the entries that would otherwise be Deflated at the DEFAULT_COMPRESSION, see CompressionPolicy) to get
+ * the best compression while keeping the packaging throughput (the uncompressed bytes written to the Zip per second) at or above a
+ * target - whether the limit is the CPU (deflating) or the I/O (writing the Zip).
+ * <p/>
+ * The throughput is measured over windows (of at least WINDOW_BYTES and WINDOW_MILLIS): below the target the level is lowered (faster),
+ * and above the target (by more than RAISE_MARGIN, to not "hunt") it is raised (smaller), one level per window.
+ * <p/>
+ * Note: As the levels chosen depend on the timing, the resulting Zip can differ from run to run.
+ * <p/>
+ * Thread Safe (the levels are chosen on the worker threads, and the throughput is updated on the writing thread).
+ */
+public class AdaptiveLevelController {
+    public static final int MIN_LEVEL = Deflater.BEST_SPEED;
+    public static final int MAX_LEVEL = Deflater.BEST_COMPRESSION;
+    public static final int INITIAL_LEVEL = 6; // What the DEFAULT_COMPRESSION is
+
+    public static final long WINDOW_BYTES = 1024L * 1024 * 16; // 16MB
+    public static final long WINDOW_MILLIS = 250;
+    public static final double RAISE_MARGIN = 1.25;
+
+    private static final double MB = 1024.0 * 1024;
+
+    private final long mTargetBytesPerSecond;
+    private final long[] mEntriesByLevel = new long[MAX_LEVEL + 1];
+    private final long[] mBytesByLevel = new long[MAX_LEVEL + 1];
+    private int mLevel = INITIAL_LEVEL;
+    private int mChanges;
+    private long mFirstNanos, mWindowNanos, mLastNanos;
+    private long mWindowInputBytes, mLastInputBytes, mLastOutputBytes;
+
+    public AdaptiveLevelController( long pTargetBytesPerSecond ) {
+        mTargetBytesPerSecond = pTargetBytesPerSecond;
+    }
+
+    /**
+     * @param pSize the (uncompressed) size of the entry, -1 if not known
+     *
+     * @return the level for the next entry to Deflate (which is noted for the report).
+     */
+    public synchronized int nextLevel( long pSize ) {
+        mEntriesByLevel[mLevel]++;
+        if ( pSize > 0 ) {
+            mBytesByLevel[mLevel] += pSize;
+        }
+        return mLevel;
+    }
+
+    /**
+     * @param pInputBytes  the total (uncompressed) bytes written so far
+     * @param pOutputBytes the total Zip bytes written so far
+     */
+    public synchronized void update( long pInputBytes, long pOutputBytes ) {
+        long zNow = System.nanoTime();
+        if ( mFirstNanos == 0 ) {
+            mFirstNanos = mWindowNanos = zNow;
+            mWindowInputBytes = pInputBytes;
+        }
+        mLastNanos = zNow;
+        mLastInputBytes = pInputBytes;
+        mLastOutputBytes = pOutputBytes;
+        long zBytes = pInputBytes - mWindowInputBytes;
+        long zNanos = zNow - mWindowNanos;
+        if ( (zBytes < WINDOW_BYTES) || (zNanos < WINDOW_MILLIS * 1000000L) ) {
+            return;
+        }
+        double zBytesPerSecond = zBytes * 1e9 / zNanos;
+        if ( zBytesPerSecond < mTargetBytesPerSecond ) {
+            changeLevel( -1 );
+        } else if ( zBytesPerSecond > mTargetBytesPerSecond * RAISE_MARGIN ) {
+            changeLevel( +1 );
+        }
+        mWindowNanos = zNow;
+        mWindowInputBytes = pInputBytes;
+    }
+
+    private void changeLevel( int pBy ) {
+        int zLevel = Math.max( MIN_LEVEL, Math.min( MAX_LEVEL, mLevel + pBy ) );
+        if ( zLevel != mLevel ) {
+            mLevel = zLevel;
+            mChanges++;
+        }
+    }
+
+    public synchronized void report( IndentableWriter pConsole ) {
+        double zSeconds = Math.max( 1, mLastNanos - mFirstNanos ) / 1e9;
+        pConsole.printLn( "Adaptive Levels (target ", mTargetBytesPerSecond / (long) MB, " MB/s): ",
+                          format( mLastInputBytes / MB / zSeconds ), " MB/s in, ", format( mLastOutputBytes / MB / zSeconds ),
+                          " MB/s out, ", mChanges, " level changes" );
+        for ( int zLevel = MIN_LEVEL; zLevel <= MAX_LEVEL; zLevel++ ) {
+            if ( mEntriesByLevel[zLevel] != 0 ) {
+                pConsole.printLn( "    Level ", zLevel, ": ", mEntriesByLevel[zLevel], " entries, ", format( mBytesByLevel[zLevel] / MB ), " MB" );
+            }
+        }
+    }
+
+    private static String format( double pValue ) {
+        return String.format( "%.1f", pValue );
+    }
+}
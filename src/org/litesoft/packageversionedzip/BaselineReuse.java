@@ -0,0 +1,94 @@
+package org.litesoft.packageversionedzip;
+
+import org.litesoft.commonfoundation.exceptions.*;
+import org.litesoft.commonfoundation.indent.*;
+import org.litesoft.server.file.*;
+import org.litesoft.server.util.*;
+
+import java.io.*;
+
+/**
+ * The reuse of a (optional) ZipBaseline's entries for a ZipFileCreator: an entry whose name, size, & CRC-32 match a Baseline entry has
+ * the Baseline's compressed bytes copied as is.  As copied entries have no Data Descriptor, the resulting Zip is only the same for the
+ * same Baseline.
+ * <p/>
+ * The time of the checks is recorded in the PackagingMetrics (as ZipFileCreator.REUSE_CHECK_PHASE).
+ * <p/>
+ * Thread Safe (the checks are done on the worker pool).
+ */
+public class BaselineReuse implements Closeable {
+    private final ZipBaseline mBaseline;
+    private final PhaseMetrics.Phase mPhase;
+
+    /**
+     * @param pBaselineZip null means no Baseline (nothing is reused)
+     */
+    public BaselineReuse( File pBaselineZip, PackagingMetrics pMetrics ) {
+        mBaseline = open( pBaselineZip );
+        mPhase = pMetrics.phase( ZipFileCreator.REUSE_CHECK_PHASE );
+    }
+
+    private static ZipBaseline open( File pBaselineZip ) {
+        if ( pBaselineZip == null ) {
+            return null;
+        }
+        try {
+            return new ZipBaseline( pBaselineZip );
+        }
+        catch ( IOException e ) {
+            throw new FileSystemException( "Unable to read Baseline: " + pBaselineZip, e );
+        }
+    }
+
+    public PhaseMetrics.Phase getPhase() {
+        return mPhase;
+    }
+
+    /**
+     * @return true if a Baseline entry has the same name & size (w/o reading pFile).
+     */
+    public boolean isCandidate( String pName, RelativeFile pFile ) {
+        return (mBaseline != null) && mBaseline.isCandidate( pName, SizedRelativeFile.sizeOf( pFile ) );
+    }
+
+    /**
+     * @return null if no Baseline or no matching Baseline entry
+     */
+    public RawZipEntry find( String pName, RelativeFile pFile ) {
+        if ( mBaseline == null ) {
+            return null;
+        }
+        long zSize = SizedRelativeFile.sizeOf( pFile );
+        long zStarted = System.nanoTime();
+        try {
+            return mBaseline.find( pName, pFile, zSize );
+        }
+        catch ( IOException e ) {
+            throw new FileSystemException( e );
+        }
+        finally {
+            mPhase.record( System.nanoTime() - zStarted, Math.max( 0, zSize ), 0 );
+        }
+    }
+
+    /**
+     * @return the Central Directory to copy the entries found from.
+     */
+    public ZipCentralDirectory getDirectory() {
+        return mBaseline.getDirectory();
+    }
+
+    public void report( IndentableWriter pConsole, int pEntryCount ) {
+        if ( mBaseline != null ) {
+            pConsole.printLn( "Reused ", mBaseline.getReused(), " of ", pEntryCount, " entries from: ", mBaseline.getFile() );
+        }
+    }
+
+    @Override
+    public void close()
+            throws IOException {
+        if ( mBaseline != null ) {
+            mBaseline.close();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.litesoft.packageversionedzip;
+
+import org.litesoft.commonfoundation.typeutils.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+/**
+ * An in memory OutputStream that collects the bytes into fixed size blocks (rather than a growing array) so no bytes are copied more than once.
+ */
+public class BlockOutputStream extends OutputStream {
+    private static final int BLOCK_SIZE = 1024 * 64; // 64K
+
+    private final List<byte[]> mBlocks = Lists.newArrayList();
+    private byte[] mCurrentBlock;
+    private int mCurrentOffset = BLOCK_SIZE;
+
+    @Override
+    public void write( int pByte ) {
+        if ( mCurrentOffset == BLOCK_SIZE ) {
+            addBlock();
+        }
+        mCurrentBlock[mCurrentOffset++] = (byte) pByte;
+    }
+
+    @Override
+    public void write( byte[] pBytes, int pOffset, int pLength ) {
+        while ( pLength > 0 ) {
+            if ( mCurrentOffset == BLOCK_SIZE ) {
+                addBlock();
+            }
+            int zLength = Math.min( pLength, BLOCK_SIZE - mCurrentOffset );
+            System.arraycopy( pBytes, pOffset, mCurrentBlock, mCurrentOffset, zLength );
+            mCurrentOffset += zLength;
+            pOffset += zLength;
+            pLength -= zLength;
+        }
+    }
+
+    private void addBlock() {
+        mBlocks.add( mCurrentBlock = new byte[BLOCK_SIZE] );
+        mCurrentOffset = 0;
+    }
+
+    public void writeTo( OutputStream pOutputStream )
+            throws IOException {
+        int zLast = mBlocks.size() - 1;
+        for ( int i = 0; i < zLast; i++ ) {
+            pOutputStream.write( mBlocks.get( i ), 0, BLOCK_SIZE );
+        }
+        if ( zLast != -1 ) {
+            pOutputStream.write( mBlocks.get( zLast ), 0, mCurrentOffset );
+        }
+    }
+
+    /**
+     * All the blocks are handed over at once (e.g. for a single gathering write, see ZipOutput.write( ByteBuffer... )).
+     */
+    public void writeTo( GatheringOutputStream pOutputStream )
+            throws IOException {
+        pOutputStream.write( toByteBuffers() );
+    }
+
+    private ByteBuffer[] toByteBuffers() {
+        ByteBuffer[] zBuffers = new ByteBuffer[mBlocks.size()];
+        for ( int i = 0; i < zBuffers.length; i++ ) {
+            zBuffers[i] = ByteBuffer.wrap( mBlocks.get( i ), 0, (i + 1 < zBuffers.length) ? BLOCK_SIZE : mCurrentOffset );
+        }
+        return zBuffers;
+    }
+}
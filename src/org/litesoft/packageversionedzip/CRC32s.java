@@ -0,0 +1,68 @@
+package org.litesoft.packageversionedzip;
+
+/**
+ * CRC-32 helpers.
+ */
+public class CRC32s {
+    private static final long POLYNOMIAL = 0xEDB88320L; // Reversed
+
+    /**
+     * Combine the CRC-32s of two consecutive blocks of data (as zlib's crc32_combine does), so that blocks can have their
+     * CRC-32 computed independently (e.g. on different threads).
+     *
+     * @param pCRC1    CRC-32 of the first block
+     * @param pCRC2    CRC-32 of the second block
+     * @param pLength2 length of the second block
+     *
+     * @return the CRC-32 of the two blocks as if they were one.
+     */
+    public static long combine( long pCRC1, long pCRC2, long pLength2 ) {
+        if ( pLength2 <= 0 ) {
+            return pCRC1;
+        }
+        long[] zEven = new long[32]; // even-power-of-two zeros operator
+        long[] zOdd = new long[32]; // odd-power-of-two zeros operator
+
+        zOdd[0] = POLYNOMIAL; // operator for one zero bit
+        long zRow = 1;
+        for ( int n = 1; n < 32; n++ ) {
+            zOdd[n] = zRow;
+            zRow <<= 1;
+        }
+        square( zEven, zOdd ); // operator for two zero bits
+        square( zOdd, zEven ); // operator for four zero bits
+
+        // apply len2 zeros to crc1 (first square will put the operator for one zero byte, eight zero bits, in even)
+        do {
+            square( zEven, zOdd );
+            if ( (pLength2 & 1) != 0 ) {
+                pCRC1 = times( zEven, pCRC1 );
+            }
+            if ( 0 == (pLength2 >>= 1) ) {
+                break;
+            }
+            square( zOdd, zEven );
+            if ( (pLength2 & 1) != 0 ) {
+                pCRC1 = times( zOdd, pCRC1 );
+            }
+            pLength2 >>= 1;
+        } while ( pLength2 != 0 );
+        return pCRC1 ^ pCRC2;
+    }
+
+    private static long times( long[] pMatrix, long pVector ) {
+        long zSum = 0;
+        for ( int i = 0; pVector != 0; i++, pVector >>>= 1 ) {
+            if ( (pVector & 1) != 0 ) {
+                zSum ^= pMatrix[i];
+            }
+        }
+        return zSum;
+    }
+
+    private static void square( long[] pSquare, long[] pMatrix ) {
+        for ( int n = 0; n < 32; n++ ) {
+            pSquare[n] = times( pMatrix, pMatrix[n] );
+        }
+    }
+}
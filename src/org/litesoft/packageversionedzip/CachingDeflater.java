@@ -0,0 +1,90 @@
+package org.litesoft.packageversionedzip;
+
+import org.litesoft.commonfoundation.indent.*;
+import org.litesoft.server.file.*;
+
+import java.io.*;
+
+/**
+ * Deflates entries into memory (on the current thread) for a ZipFileCreator, w/ an (optional) DeflateCache: each entry is looked up by
+ * content (which costs an extra read), and on a hit the cached deflated bytes are used instead (cached by the same zlib build, see
+ * DeflateCache, so the resulting Zip is the same as without the cache); otherwise the deflated bytes are added to the cache.
+ * <p/>
+ * Thread Safe.
+ */
+public class CachingDeflater {
+    private final DeflateCache mCache;
+
+    /**
+     * @param pCache null means no DeflateCache (if not null, it is closed by close)
+     */
+    public CachingDeflater( DeflateCache pCache ) {
+        mCache = pCache;
+    }
+
+    public boolean isCaching() {
+        return (mCache != null);
+    }
+
+    /**
+     * @param pMapped      null means deflate the pInputStream
+     * @param pInputStream pFile's data (which is not read on a cache hit)
+     */
+    public Deflated deflate( String pName, RelativeFile pFile, MappedFile pMapped, InputStream pInputStream, int pLevel )
+            throws IOException {
+        String zKey = null;
+        if ( mCache != null ) {
+            DeflateCache.Cached zCached = mCache.get( zKey = mCache.keyFor( pFile ), pLevel );
+            if ( zCached != null ) {
+                return new Deflated( ZipFileCreator.CACHED_PHASE, zCached, zCached.getResult() );
+            }
+        }
+        EntryDeflater zDeflater = EntryDeflater.forCurrentThread( pLevel );
+        DeflatedEntry zDeflated = (pMapped != null) ? new DeflatedEntry( pName ).deflate( pMapped, zDeflater )
+                                                    : new DeflatedEntry( pName ).deflate( pInputStream, zDeflater );
+        if ( zKey != null ) {
+            mCache.put( zKey, pLevel, zDeflated );
+        }
+        return new Deflated( ZipFileCreator.DEFLATE_PHASE, zDeflated, zDeflated.getResult() );
+    }
+
+    public void report( IndentableWriter pConsole ) {
+        if ( mCache != null ) {
+            pConsole.printLn( "Deflate Cache: ", mCache.getHits(), " hits, ", mCache.getStored(), " stored, in: ", mCache.getDirectory() );
+        }
+    }
+
+    public void close() {
+        if ( mCache != null ) {
+            mCache.close();
+        }
+    }
+
+    /**
+     * An entry's deflated data, either from the DeflateCache (CACHED_PHASE, which must be disposed if not written) or deflated into memory
+     * (DEFLATE_PHASE).
+     */
+    public static class Deflated {
+        private final String mPhase;
+        private final DeflatedData mData;
+        private final CompressionResult mResult;
+
+        private Deflated( String pPhase, DeflatedData pData, CompressionResult pResult ) {
+            mPhase = pPhase;
+            mData = pData;
+            mResult = pResult;
+        }
+
+        public String getPhase() {
+            return mPhase;
+        }
+
+        public DeflatedData getData() {
+            return mData;
+        }
+
+        public CompressionResult getResult() {
+            return mResult;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package org.litesoft.packageversionedzip;
+
+import org.litesoft.commonfoundation.exceptions.*;
+import org.litesoft.commonfoundation.typeutils.*;
+import org.litesoft.server.file.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+/**
+ * Deflate a (large) entry's data in fixed size chunks (pigz style), where the chunks can be deflated concurrently, and then
+ * written (in order) as a single entry with a combined CRC-32.
+ * <p/>
+ * The chunking only depends on the data (not the number of threads), so the deflated bytes are the same regardless of the
+ * Executor (or lack of one - in which case the chunks are deflated on the calling thread).
+ * <p/>
+ * The data of a MappedFile is not read at all: its chunks are slices of the mapping (and deflate to the same bytes).
+ */
+public class ChunkedDeflate implements DeflatedData {
+    public static final int CHUNK_SIZE = 1024 * 1024; // 1MB
+
+    private final InputStream mInputStream;
+    private final MappedFile mMappedFile;
+    private long mMappedOffset;
+    private final ExecutorService mExecutor;
+    private final int mMaxInFlight;
+    private final int mLevel;
+    private final Deque<Future<DeflatedChunk>> mInFlight = Lists.newLinkedList();
+    private long mCRC, mSize, mCompressedSize;
+
+    /**
+     * @param pExecutor null means deflate the chunks on the calling thread
+     */
+    public ChunkedDeflate( InputStream pInputStream, ExecutorService pExecutor, int pMaxInFlight ) {
+        this( pInputStream, pExecutor, pMaxInFlight, Deflater.DEFAULT_COMPRESSION );
+    }
+
+    /**
+     * @param pExecutor null means deflate the chunks on the calling thread
+     * @param pLevel    see EntryDeflater.forCurrentThread
+     */
+    public ChunkedDeflate( InputStream pInputStream, ExecutorService pExecutor, int pMaxInFlight, int pLevel ) {
+        this( pInputStream, null, pExecutor, pMaxInFlight, pLevel );
+    }
+
+    /**
+     * @param pExecutor null means deflate the chunks on the calling thread
+     * @param pLevel    see EntryDeflater.forCurrentThread
+     */
+    public ChunkedDeflate( MappedFile pMappedFile, ExecutorService pExecutor, int pMaxInFlight, int pLevel ) {
+        this( null, pMappedFile, pExecutor, pMaxInFlight, pLevel );
+    }
+
+    private ChunkedDeflate( InputStream pInputStream, MappedFile pMappedFile, ExecutorService pExecutor, int pMaxInFlight, int pLevel ) {
+        mInputStream = pInputStream;
+        mMappedFile = pMappedFile;
+        mExecutor = pExecutor;
+        mMaxInFlight = Math.max( 1, pMaxInFlight );
+        mLevel = pLevel;
+    }
+
+    @Override
+    public CompressionResult writeDeflatedTo( GatheringOutputStream pOutputStream )
+            throws IOException {
+        try {
+            Chunk zPrevious = null;
+            Chunk zCurrent = readChunk();
+            do {
+                Chunk zNext = (zCurrent.mLength == CHUNK_SIZE) ? readChunk() : null;
+                if ( (zNext != null) && (zNext.mLength == 0) ) {
+                    zNext = null;
+                }
+                submit( new DeflatedChunk( zCurrent, zPrevious, (zNext == null), mLevel ) );
+                if ( mInFlight.size() >= mMaxInFlight ) {
+                    writeNextInFlight( pOutputStream );
+                }
+                zPrevious = zCurrent;
+                zCurrent = zNext;
+            } while ( zCurrent != null );
+            while ( !mInFlight.isEmpty() ) {
+                writeNextInFlight( pOutputStream );
+            }
+        }
+        finally {
+            for ( Future<DeflatedChunk> zFuture : mInFlight ) {
+                zFuture.cancel( true );
+            }
+        }
+        return new CompressionResult( mCRC, mSize, mCompressedSize );
+    }
+
+    private void submit( DeflatedChunk pChunk )
+            throws IOException {
+        if ( mExecutor != null ) {
+            mInFlight.add( mExecutor.submit( pChunk ) );
+            return;
+        }
+        FutureTask<DeflatedChunk> zTask = new FutureTask<DeflatedChunk>( pChunk );
+        zTask.run();
+        mInFlight.add( zTask );
+    }
+
+    private void writeNextInFlight( OutputStream pOutputStream )
+            throws IOException {
+        DeflatedChunk zChunk = awaitNextInFlight();
+        zChunk.writeTo( pOutputStream );
+        CompressionResult zResult = zChunk.mResult;
+        mCRC = CRC32s.combine( mCRC, zResult.getCRC(), zResult.getSize() );
+        mSize += zResult.getSize();
+        mCompressedSize += zResult.getCompressedSize();
+    }
+
+    private DeflatedChunk awaitNextInFlight()
+            throws IOException {
+        try {
+            return mInFlight.removeFirst().get();
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while Deflating" );
+        }
+        catch ( ExecutionException e ) {
+            Throwable zCause = e.getCause();
+            if ( zCause instanceof IOException ) {
+                throw (IOException) zCause;
+            }
+            if ( zCause instanceof RuntimeException ) {
+                throw (RuntimeException) zCause;
+            }
+            if ( zCause instanceof Error ) {
+                throw (Error) zCause;
+            }
+            throw new FileSystemException( zCause );
+        }
+    }
+
+    /**
+     * @return the next chunk, which will be less than full only at End-Of-File.
+     */
+    private Chunk readChunk()
+            throws IOException {
+        if ( mMappedFile != null ) {
+            int zLength = (int) Math.min( CHUNK_SIZE, mMappedFile.getSize() - mMappedOffset );
+            Chunk zChunk = new Chunk( mMappedFile.slice( mMappedOffset, zLength ) );
+            mMappedOffset += zLength;
+            return zChunk;
+        }
+        byte[] zBytes = new byte[CHUNK_SIZE];
+        int zFilled = 0;
+        for ( int zRead; zFilled < CHUNK_SIZE; zFilled += zRead ) {
+            if ( -1 == (zRead = mInputStream.read( zBytes, zFilled, CHUNK_SIZE - zFilled )) ) {
+                break;
+            }
+        }
+        return new Chunk( ByteBuffer.wrap( zBytes, 0, zFilled ) );
+    }
+
+    private static class Chunk {
+        private final ByteBuffer mBytes;
+        private final int mLength;
+
+        private Chunk( ByteBuffer pBytes ) {
+            mBytes = pBytes;
+            mLength = pBytes.remaining();
+        }
+    }
+
+    private static class DeflatedChunk extends BlockOutputStream implements Callable<DeflatedChunk> {
+        private final Chunk mChunk;
+        private final Chunk mPrevious;
+        private final boolean mLast;
+        private final int mLevel;
+        private CompressionResult mResult;
+
+        private DeflatedChunk( Chunk pChunk, Chunk pPrevious, boolean pLast, int pLevel ) {
+            mChunk = pChunk;
+            mPrevious = pPrevious;
+            mLast = pLast;
+            mLevel = pLevel;
+        }
+
+        @Override
+        public DeflatedChunk call()
+                throws IOException {
+            ByteBuffer zPreviousBytes = (mPrevious == null) ? null : mPrevious.mBytes;
+            mResult = EntryDeflater.forCurrentThread( mLevel ).deflateChunk( mChunk.mBytes, zPreviousBytes, mLast, this );
+            return this;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package org.litesoft.packageversionedzip;
+
+import org.litesoft.server.util.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Chooses, per entry, whether its data is Stored (not compressed) or Deflated (and at what level), so that CPU is not burnt trying to
+ * compress data that is already compressed (e.g. ".jar", ".gz", ".png").
+ * <p/>
+ * The choice is made from the entry's extension, else (only then) from the (Shannon) entropy of a sample of the first SAMPLE_SIZE
+ * bytes of its data: near-random data (at least STORED_ENTROPY bits per byte) is Stored, mostly-random data (at least BEST_SPEED_ENTROPY) is
+ * Deflated at BEST_SPEED, and everything else at the DEFAULT_COMPRESSION.
+ * <p/>
+ * As the choice only depends on the entry's name & data, the resulting Zip is still the same regardless of the number of Threads
+ * (unless the DEFAULT_COMPRESSION is replaced by the level of an AdaptiveLevelController, see adaptive).
+ */
+public class CompressionPolicy {
+    public static final int STORED = Deflater.NO_COMPRESSION; // Level 0 means Stored
+
+    public static final int SAMPLE_SIZE = 1024 * 8; // 8K
+    public static final int MIN_SAMPLE_SIZE = 1024; // Fewer bytes than this can not be usefully measured
+    public static final double STORED_ENTROPY = 7.6;
+    public static final double BEST_SPEED_ENTROPY = 7.2;
+
+    private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<String>( Arrays.asList(
+            "jar", "war", "ear", "jmod", "zip", "gz", "tgz", "bz2", "xz", "txz", "zst", "7z", "rar", "lz4", "lzma",
+            "png", "jpg", "jpeg", "gif", "webp", "mp3", "mp4", "m4a", "ogg", "avi", "mov", "mkv", "woff", "woff2" ) );
+
+    /**
+     * Always Deflated at the DEFAULT_COMPRESSION (no sampling).
+     */
+    public static final CompressionPolicy DEFLATE = new CompressionPolicy( false );
+
+    /**
+     * By extension & sampling (see class doc).
+     */
+    public static final CompressionPolicy AUTO = new CompressionPolicy( true );
+
+    private final boolean mAuto;
+    private final AdaptiveLevelController mController;
+
+    private CompressionPolicy( boolean pAuto, AdaptiveLevelController pController ) {
+        mAuto = pAuto;
+        mController = pController;
+    }
+
+    private CompressionPolicy( boolean pAuto ) {
+        this( pAuto, null );
+    }
+
+    public boolean isAuto() {
+        return mAuto;
+    }
+
+    /**
+     * @return null if the DEFAULT_COMPRESSION is used as is
+     */
+    public AdaptiveLevelController getController() {
+        return mController;
+    }
+
+    /**
+     * @return this policy, but w/ the DEFAULT_COMPRESSION replaced by pController's level (see ZipFileCreator).
+     */
+    public CompressionPolicy adaptive( AdaptiveLevelController pController ) {
+        return new CompressionPolicy( mAuto, pController );
+    }
+
+    /**
+     * @param pInputStream the entry's data, which is only sampled (and then "unread") if the pName does not decide the level.
+     *
+     * @return the chosen level & the stream to read the entry's data from (pInputStream, or if sampled, a stream over it), which on a
+     * failure is disposed.
+     */
+    public Choice choose( String pName, InputStream pInputStream )
+            throws IOException {
+        if ( !mAuto ) {
+            return new Choice( Deflater.DEFAULT_COMPRESSION, pInputStream );
+        }
+        if ( COMPRESSED_EXTENSIONS.contains( extension( pName ) ) ) {
+            return new Choice( STORED, pInputStream );
+        }
+        PushbackInputStream zInputStream = new PushbackInputStream( pInputStream, SAMPLE_SIZE );
+        boolean zSampled = false;
+        try {
+            Choice zChoice = new Choice( levelFor( zInputStream ), zInputStream );
+            zSampled = true;
+            return zChoice;
+        }
+        finally {
+            if ( !zSampled ) {
+                Closeables.dispose( zInputStream );
+            }
+        }
+    }
+
+    /**
+     * @param pInputStream the entry's data, which is sampled and then "unread", so the data can still be read in full.
+     *
+     * @return STORED, or the level to Deflate at (see EntryDeflater.forCurrentThread)
+     */
+    private static int levelFor( PushbackInputStream pInputStream )
+            throws IOException {
+        byte[] zSample = new byte[SAMPLE_SIZE];
+        int zSampled = 0;
+        for ( int zRead; zSampled < SAMPLE_SIZE; zSampled += zRead ) {
+            if ( -1 == (zRead = pInputStream.read( zSample, zSampled, SAMPLE_SIZE - zSampled )) ) {
+                break;
+            }
+        }
+        pInputStream.unread( zSample, 0, zSampled );
+        if ( zSampled < MIN_SAMPLE_SIZE ) {
+            return Deflater.DEFAULT_COMPRESSION;
+        }
+        double zEntropy = entropy( zSample, zSampled );
+        if ( zEntropy >= STORED_ENTROPY ) {
+            return STORED;
+        }
+        return (zEntropy >= BEST_SPEED_ENTROPY) ? Deflater.BEST_SPEED : Deflater.DEFAULT_COMPRESSION;
+    }
+
+    /**
+     * @return the Shannon entropy (0 thru 8 bits per byte) of the pLength bytes.
+     */
+    public static double entropy( byte[] pBytes, int pLength ) {
+        int[] zCounts = new int[256];
+        for ( int i = 0; i < pLength; i++ ) {
+            zCounts[pBytes[i] & 0xFF]++;
+        }
+        double zEntropy = 0;
+        for ( int zCount : zCounts ) {
+            if ( zCount != 0 ) {
+                double zProbability = (double) zCount / pLength;
+                zEntropy -= zProbability * Math.log( zProbability );
+            }
+        }
+        return zEntropy / Math.log( 2 );
+    }
+
+    private static String extension( String pName ) {
+        int zSlash = pName.lastIndexOf( '/' );
+        int zDot = pName.lastIndexOf( '.' );
+        return (zDot <= zSlash + 1) ? "" : pName.substring( zDot + 1 ).toLowerCase();
+    }
+
+    /**
+     * The level chosen for an entry, and the stream to read its data from.
+     */
+    public static class Choice {
+        private final int mLevel;
+        private final InputStream mInputStream;
+
+        private Choice( int pLevel, InputStream pInputStream ) {
+            mLevel = pLevel;
+            mInputStream = pInputStream;
+        }
+
+        /**
+         * @return STORED, or the level to Deflate at (see EntryDeflater.forCurrentThread)
+         */
+        public int getLevel() {
+            return mLevel;
+        }
+
+        public InputStream getInputStream() {
+            return mInputStream;
+        }
+
+        /**
+         * @return this choice, but w/ pLevel instead (see EntryLevelSelector)
+         */
+        Choice withLevel( int pLevel ) {
+            return (pLevel == mLevel) ? this : new Choice( pLevel, mInputStream );
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.litesoft.packageversionedzip;
+
+/**
+ * The CRC-32 and sizes (uncompressed & compressed) of an entry's data, as needed for the Zip Data Descriptor and Central Directory.
+ */
+public class CompressionResult {
+    private final long mCRC;
+    private final long mSize;
+    private final long mCompressedSize;
+
+    public CompressionResult( long pCRC, long pSize, long pCompressedSize ) {
+        mCRC = pCRC;
+        mSize = pSize;
+        mCompressedSize = pCompressedSize;
+    }
+
+    public long getCRC() {
+        return mCRC;
+    }
+
+    public long getSize() {
+        return mSize;
+    }
+
+    public long getCompressedSize() {
+        return mCompressedSize;
+    }
+
+    @Override
+    public String toString() {
+        return "crc=" + Long.toHexString( mCRC ) + ", size=" + mSize + ", compressed=" + mCompressedSize;
+    }
+}
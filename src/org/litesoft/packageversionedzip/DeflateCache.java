@@ -0,0 +1,298 @@
+package org.litesoft.packageversionedzip;
+
+import org.litesoft.commonfoundation.base.*;
+import org.litesoft.commonfoundation.typeutils.*;
+import org.litesoft.server.file.*;
+import org.litesoft.server.util.*;
+
+import java.io.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.zip.*;
+
+/**
+ * A persistent (across runs, and Targets/Versions) content addressed cache of deflated entry data, so the same content (e.g. the
+ * same third-party files packaged into many Zips) is only deflated once.
+ * <p/>
+ * Each cached entry is a file (in a sub-directory named for the first 2 hex digits of its key), named for the SHA-256 & size of the
+ * (uncompressed) content plus the deflate level and the Deflater's fingerprint, holding the CRC-32 & sizes followed by the raw deflated
+ * bytes.  The deflated bytes depend on the content & level (see EntryDeflater), but also on the zlib build behind the JDK's Deflater,
+ * so the fingerprint (of a probe deflated at each level) keeps the entries of different zlib builds (sharing a cache) apart.
+ * <p/>
+ * The cache is kept within a size cap by evicting the Least Recently Used (the files' "last modified", which is updated on each hit)
+ * entries (down to EVICT_TO_PERCENT of the cap, so the directory is not re-scanned on every put): when opened, when a put takes the
+ * (running) total over the cap, and when closed (as other runs may share the cache).
+ * <p/>
+ * Thread Safe (each entry is written to a temporary file and then renamed into place, so concurrent runs can share the cache).
+ */
+public class DeflateCache implements Closeable {
+    public static final String DIRECTORY_NAME = ".DeflateCache";
+    public static final int EVICT_TO_PERCENT = 90;
+
+    private static final String SUFFIX = ".deflated";
+    private static final int MAGIC = 0x50565A43; // "PVZC"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_LENGTH = 4 + 4 + 8 + 8 + 8;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int PROBE_SIZE = 1024 * 64;
+    private static final String DEFLATER_FINGERPRINT = deflaterFingerprint();
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+    private final AtomicInteger mHits = new AtomicInteger();
+    private final AtomicInteger mStored = new AtomicInteger();
+    private final AtomicLong mTotalBytes = new AtomicLong(); // Running total - re-counted on each evict
+
+    /**
+     * @param pMaxBytes the size cap (the total of the cached entry files)
+     */
+    public DeflateCache( File pDirectory, long pMaxBytes ) {
+        mDirectory = FileUtils.insure( pDirectory );
+        mMaxBytes = pMaxBytes;
+        evict();
+    }
+
+    public File getDirectory() {
+        return mDirectory;
+    }
+
+    public int getHits() {
+        return mHits.get();
+    }
+
+    public int getStored() {
+        return mStored.get();
+    }
+
+    /**
+     * @return the key for pFile's content (SHA-256 & size), for get and put.
+     */
+    public String keyFor( RelativeFile pFile )
+            throws IOException {
+        MessageDigest zDigest = newDigest();
+        long zSize = 0;
+        byte[] zBuffer = new byte[EntryDeflater.BUFFER_SIZE];
+        InputStream zInputStream = pFile.open();
+        try {
+            for ( int zRead; -1 != (zRead = zInputStream.read( zBuffer )); zSize += zRead ) {
+                zDigest.update( zBuffer, 0, zRead );
+            }
+        }
+        finally {
+            Closeables.dispose( zInputStream );
+        }
+        return toHex( zDigest.digest() ) + "-" + zSize;
+    }
+
+    /**
+     * @return null if not cached (or the cached entry is not usable)
+     */
+    public Cached get( String pKey, int pLevel )
+            throws IOException {
+        File zFile = fileFor( pKey, pLevel );
+        DataInputStream zInputStream;
+        try {
+            zInputStream = new DataInputStream( new BufferedInputStream( new FileInputStream( zFile ), EntryDeflater.BUFFER_SIZE ) );
+        }
+        catch ( FileNotFoundException e ) {
+            return null;
+        }
+        CompressionResult zResult;
+        try {
+            if ( (zInputStream.readInt() != MAGIC) || (zInputStream.readInt() != FORMAT_VERSION) ) {
+                throw new EOFException();
+            }
+            zResult = new CompressionResult( zInputStream.readLong(), zInputStream.readLong(), zInputStream.readLong() );
+        }
+        catch ( EOFException e ) { // Truncated or not ours - ignore it (a put will replace it)
+            Closeables.dispose( zInputStream );
+            return null;
+        }
+        if ( zFile.length() != (HEADER_LENGTH + zResult.getCompressedSize()) ) {
+            Closeables.dispose( zInputStream );
+            return null;
+        }
+        zFile.setLastModified( System.currentTimeMillis() );
+        mHits.incrementAndGet();
+        return new Cached( pKey, zResult, zInputStream );
+    }
+
+    public void put( String pKey, int pLevel, DeflatedEntry pDeflated )
+            throws IOException {
+        File zFile = fileFor( pKey, pLevel );
+        File zTemp = File.createTempFile( zFile.getName(), ".tmp", FileUtils.insure( zFile.getParentFile() ) );
+        boolean zMoved = false;
+        try {
+            CompressionResult zResult = pDeflated.getResult();
+            DataOutputStream zOutputStream = new DataOutputStream( IOUtils.createBufferedOutputStream( new FileOutputStream( zTemp ) ) );
+            try {
+                zOutputStream.writeInt( MAGIC );
+                zOutputStream.writeInt( FORMAT_VERSION );
+                zOutputStream.writeLong( zResult.getCRC() );
+                zOutputStream.writeLong( zResult.getSize() );
+                zOutputStream.writeLong( zResult.getCompressedSize() );
+                pDeflated.writeTo( zOutputStream );
+            }
+            finally {
+                Closeables.close( zOutputStream );
+            }
+            zFile.delete(); // Another run may have put it - as it is the same, either is fine!
+            if ( zMoved = zTemp.renameTo( zFile ) ) {
+                mStored.incrementAndGet();
+                if ( mTotalBytes.addAndGet( zFile.length() ) > mMaxBytes ) {
+                    evict();
+                }
+            }
+        }
+        finally {
+            if ( !zMoved ) {
+                zTemp.delete();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        evict();
+    }
+
+    /**
+     * If over the size cap, evict the Least Recently Used entries until the cache is within EVICT_TO_PERCENT of it.
+     */
+    private synchronized void evict() {
+        List<File> zFiles = Lists.newArrayList();
+        long zTotal = 0;
+        File[] zSubDirs = mDirectory.listFiles();
+        if ( zSubDirs != null ) {
+            for ( File zSubDir : zSubDirs ) {
+                File[] zEntries = zSubDir.listFiles();
+                if ( zEntries != null ) {
+                    for ( File zEntry : zEntries ) {
+                        if ( zEntry.getName().endsWith( SUFFIX ) ) {
+                            zFiles.add( zEntry );
+                            zTotal += zEntry.length();
+                        }
+                    }
+                }
+            }
+        }
+        if ( zTotal <= mMaxBytes ) {
+            mTotalBytes.set( zTotal );
+            return;
+        }
+        final Map<File, Long> zLastUsed = Maps.newHashMap(); // Snapshot, as the sort needs them to not change
+        for ( File zFile : zFiles ) {
+            zLastUsed.put( zFile, zFile.lastModified() );
+        }
+        Collections.sort( zFiles, new Comparator<File>() {
+            @Override
+            public int compare( File pFile1, File pFile2 ) {
+                return zLastUsed.get( pFile1 ).compareTo( zLastUsed.get( pFile2 ) );
+            }
+        } );
+        long zEvictTo = mMaxBytes / 100 * EVICT_TO_PERCENT;
+        for ( Iterator<File> zIt = zFiles.iterator(); (zTotal > zEvictTo) && zIt.hasNext(); ) {
+            File zFile = zIt.next();
+            long zLength = zFile.length();
+            if ( zFile.delete() ) {
+                zTotal -= zLength;
+            }
+        }
+        mTotalBytes.set( zTotal );
+    }
+
+    private File fileFor( String pKey, int pLevel ) {
+        return new File( new File( mDirectory, pKey.substring( 0, 2 ) ), pKey + "-L" + pLevel + "-Z" + DEFLATER_FINGERPRINT + SUFFIX );
+    }
+
+    /**
+     * @return the CRC-32 (in hex) of a (deterministic, partly compressible) probe deflated at each level.
+     */
+    private static String deflaterFingerprint() {
+        Random zRandom = new Random( 0 );
+        byte[] zProbe = new byte[PROBE_SIZE];
+        for ( int i = 0; i < zProbe.length; i++ ) {
+            zProbe[i] = (byte) ((i % 3 == 0) ? zRandom.nextInt( 256 ) : 'a' + zRandom.nextInt( 8 ));
+        }
+        CRC32 zCRC = new CRC32();
+        for ( int zLevel = Deflater.BEST_SPEED; zLevel <= Deflater.BEST_COMPRESSION; zLevel++ ) {
+            EntryDeflater zDeflater = new EntryDeflater( zLevel );
+            try {
+                ByteArrayOutputStream zDeflated = new ByteArrayOutputStream();
+                zDeflater.deflate( new ByteArrayInputStream( zProbe ), zDeflated );
+                zCRC.update( zDeflated.toByteArray() );
+            }
+            catch ( IOException e ) {
+                throw new IllegalStateException( e ); // In memory!
+            }
+            finally {
+                zDeflater.dispose();
+            }
+        }
+        return String.format( "%08x", zCRC.getValue() );
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance( "SHA-256" );
+        }
+        catch ( NoSuchAlgorithmException e ) {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    private static String toHex( byte[] pBytes ) {
+        char[] zChars = new char[pBytes.length * 2];
+        for ( int i = 0; i < pBytes.length; i++ ) {
+            zChars[i * 2] = HEX[(pBytes[i] >> 4) & 0xF];
+            zChars[i * 2 + 1] = HEX[pBytes[i] & 0xF];
+        }
+        return new String( zChars );
+    }
+
+    /**
+     * A cached entry's deflated bytes (read from the cache when written).  The cache file is held open until written, so if not written
+     * it must be disposed.
+     */
+    public static class Cached implements DeflatedData, Disposable {
+        private final String mKey;
+        private final CompressionResult mResult;
+        private final InputStream mInputStream;
+
+        private Cached( String pKey, CompressionResult pResult, InputStream pInputStream ) {
+            mKey = pKey;
+            mResult = pResult;
+            mInputStream = pInputStream;
+        }
+
+        public CompressionResult getResult() {
+            return mResult;
+        }
+
+        @Override
+        public CompressionResult writeDeflatedTo( GatheringOutputStream pOutputStream )
+                throws IOException {
+            try {
+                byte[] zBuffer = new byte[EntryDeflater.BUFFER_SIZE];
+                for ( long zRemaining = mResult.getCompressedSize(); zRemaining > 0; ) {
+                    int zRead = mInputStream.read( zBuffer, 0, (int) Math.min( zBuffer.length, zRemaining ) );
+                    if ( zRead == -1 ) {
+                        throw new EOFException( "Deflate Cache entry truncated: " + mKey );
+                    }
+                    pOutputStream.write( zBuffer, 0, zRead );
+                    zRemaining -= zRead;
+                }
+            }
+            finally {
+                dispose();
+            }
+            return mResult;
+        }
+
+        @Override
+        public void dispose() {
+            Closeables.dispose( mInputStream );
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package org.litesoft.packageversionedzip;
+
+import java.io.*;
+
+/**
+ * The (raw) deflated data of an entry, which may be deflated as it is written, or may already have been deflated.
+ */
+public interface DeflatedData {
+    /**
+     * @return the CRC-32 & sizes of the data written.
+     */
+    CompressionResult writeDeflatedTo( GatheringOutputStream pOutputStream )
+            throws IOException;
+}
@@ -0,0 +1,44 @@
+package org.litesoft.packageversionedzip;
+
+import org.litesoft.server.file.*;
+
+import java.io.*;
+
+/**
+ * An entry that has been deflated (off the writing thread) into memory, waiting for its turn to be written to the Zip.
+ */
+public class DeflatedEntry extends BlockOutputStream implements DeflatedData {
+    private final String mName;
+    private CompressionResult mResult;
+
+    public DeflatedEntry( String pName ) {
+        mName = pName;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public CompressionResult getResult() {
+        return mResult;
+    }
+
+    public DeflatedEntry deflate( InputStream pInputStream, EntryDeflater pDeflater )
+            throws IOException {
+        mResult = pDeflater.deflate( pInputStream, this );
+        return this;
+    }
+
+    public DeflatedEntry deflate( MappedFile pMappedFile, EntryDeflater pDeflater )
+            throws IOException {
+        mResult = pDeflater.deflate( pMappedFile, this );
+        return this;
+    }
+
+    @Override
+    public CompressionResult writeDeflatedTo( GatheringOutputStream pOutputStream )
+            throws IOException {
+        writeTo( pOutputStream );
+        return mResult;
+    }
+}
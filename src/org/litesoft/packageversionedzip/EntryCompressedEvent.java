@@ -0,0 +1,47 @@
+package org.litesoft.packageversionedzip;
+
+import jdk.jfr.*;
+
+/**
+ * Java Flight Recorder event: an entry Deflated, Stored, from the DeflateCache, or copied (the Method is the ZipFileCreator phase, e.g.
+ * "deflate"), on the thread that did it.
+ */
+@Name("org.litesoft.EntryCompressed")
+@Label("Entry Compressed")
+@Category({"PackageVersionedZip", "Zip"})
+@StackTrace(false)
+public class EntryCompressedEvent extends Event {
+    @Label("Name")
+    String name;
+
+    @Label("Method")
+    String method;
+
+    @Label("Level")
+    @Description("The Deflate level (0 if Stored, -1 for the default level, i.e. 6, and if copied)")
+    int level;
+
+    @Label("Size")
+    @DataAmount
+    long size;
+
+    @Label("Compressed Size")
+    @Description("-1 if not yet known (from the DeflateCache)")
+    @DataAmount
+    long compressedSize;
+
+    /**
+     * End the event, and commit it (if enabled, and over its threshold).
+     */
+    public void commit( String pMethod, String pName, int pLevel, long pSize, long pCompressedSize ) {
+        end();
+        if ( shouldCommit() ) {
+            method = pMethod;
+            name = pName;
+            level = pLevel;
+            size = pSize;
+            compressedSize = pCompressedSize;
+            commit();
+        }
+    }
+}
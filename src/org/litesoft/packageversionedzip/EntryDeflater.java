@@ -0,0 +1,187 @@
+package org.litesoft.packageversionedzip;
+
+import org.litesoft.commonfoundation.base.*;
+import org.litesoft.server.file.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.zip.*;
+
+/**
+ * Deflate (raw - no zlib wrapper, as required by the Zip format) an entry's data, while computing the CRC-32.
+ * <p/>
+ * The input is always fed to the Deflater in full BUFFER_SIZE chunks (except the last), regardless of how the InputStream
+ * chooses to return its data, so that the compressed bytes are the same no matter where (or on which thread) the deflating happens.
+ * <p/>
+ * A MappedFile is fed to the Deflater & CRC32 directly (as ByteBuffers, in the same BUFFER_SIZE chunks, so the compressed bytes are also
+ * the same), w/o being copied onto the heap.
+ * <p/>
+ * Not Thread Safe - each thread needs its own (the Deflater and buffers are reused from entry to entry), see forCurrentThread() (one
+ * per level).
+ */
+public class EntryDeflater implements Disposable {
+    public static final int BUFFER_SIZE = 1024 * 64; // 64K
+    public static final int DICTIONARY_SIZE = 1024 * 32; // 32K - the Deflate "window"
+
+    private static final ThreadLocal<EntryDeflater[]> FOR_THREAD = new ThreadLocal<EntryDeflater[]>() {
+        @Override
+        protected EntryDeflater[] initialValue() {
+            return new EntryDeflater[1 + Deflater.BEST_COMPRESSION + 1]; // Indexed by Level + 1 (DEFAULT_COMPRESSION is -1)
+        }
+    };
+
+    public static EntryDeflater forCurrentThread() {
+        return forCurrentThread( Deflater.DEFAULT_COMPRESSION );
+    }
+
+    /**
+     * @param pLevel DEFAULT_COMPRESSION or 0 (NO_COMPRESSION) thru 9 (BEST_COMPRESSION)
+     */
+    public static EntryDeflater forCurrentThread( int pLevel ) {
+        EntryDeflater[] zDeflaters = FOR_THREAD.get();
+        EntryDeflater zDeflater = zDeflaters[pLevel + 1];
+        if ( zDeflater == null ) {
+            zDeflaters[pLevel + 1] = zDeflater = new EntryDeflater( pLevel );
+        }
+        return zDeflater;
+    }
+
+    public static void disposeForCurrentThread() {
+        for ( EntryDeflater zDeflater : FOR_THREAD.get() ) {
+            if ( zDeflater != null ) {
+                zDeflater.dispose();
+            }
+        }
+        FOR_THREAD.remove();
+    }
+
+    private final int mLevel;
+    private final Deflater mDeflater;
+    private final CRC32 mCRC = new CRC32();
+    private final byte[] mInput = new byte[BUFFER_SIZE];
+    private final byte[] mOutput = new byte[BUFFER_SIZE];
+
+    public EntryDeflater( int pLevel ) {
+        mDeflater = new Deflater( mLevel = pLevel, true );
+    }
+
+    public EntryDeflater() {
+        this( Deflater.DEFAULT_COMPRESSION );
+    }
+
+    public int getLevel() {
+        return mLevel;
+    }
+
+    public CompressionResult deflate( InputStream pInputStream, OutputStream pOutputStream )
+            throws IOException {
+        mDeflater.reset();
+        mCRC.reset();
+        for ( int zRead; 0 != (zRead = fill( pInputStream )); ) {
+            mCRC.update( mInput, 0, zRead );
+            mDeflater.setInput( mInput, 0, zRead );
+            while ( !mDeflater.needsInput() ) {
+                drain( pOutputStream );
+            }
+        }
+        return finish( pOutputStream );
+    }
+
+    public CompressionResult deflate( MappedFile pMappedFile, OutputStream pOutputStream )
+            throws IOException {
+        mDeflater.reset();
+        mCRC.reset();
+        long zSize = pMappedFile.getSize();
+        for ( long zOffset = 0; zOffset < zSize; zOffset += BUFFER_SIZE ) {
+            ByteBuffer zInput = pMappedFile.slice( zOffset, (int) Math.min( BUFFER_SIZE, zSize - zOffset ) );
+            mCRC.update( zInput.duplicate() );
+            mDeflater.setInput( zInput );
+            while ( !mDeflater.needsInput() ) {
+                drain( pOutputStream );
+            }
+        }
+        return finish( pOutputStream );
+    }
+
+    private CompressionResult finish( OutputStream pOutputStream )
+            throws IOException {
+        mDeflater.finish();
+        while ( !mDeflater.finished() ) {
+            drain( pOutputStream );
+        }
+        return new CompressionResult( mCRC.getValue(), mDeflater.getBytesRead(), mDeflater.getBytesWritten() );
+    }
+
+    /**
+     * Deflate one chunk of an entry's data that is being deflated in independent chunks (pigz style).  Each chunk is primed with the
+     * (last 32K of the) previous chunk as the dictionary, and all but the last chunk end with a "sync flush" (on a byte boundary, not
+     * "final"), so that the deflated chunks can be simply concatenated into a single valid deflate stream.
+     *
+     * @param pPreviousChunk null if this is the first chunk
+     *
+     * @return the CRC-32 & sizes of just this chunk (see CRC32s.combine).
+     */
+    public CompressionResult deflateChunk( byte[] pChunk, int pLength, byte[] pPreviousChunk, int pPreviousLength, boolean pLast,
+                                           OutputStream pOutputStream )
+            throws IOException {
+        return deflateChunk( ByteBuffer.wrap( pChunk, 0, pLength ),
+                             (pPreviousChunk == null) ? null : ByteBuffer.wrap( pPreviousChunk, 0, pPreviousLength ), pLast, pOutputStream );
+    }
+
+    /**
+     * As above, but w/ the chunks as ByteBuffers (e.g. slices of a MappedFile), whose remaining bytes are the chunks (their positions
+     * are not changed, so a chunk can be deflated while it is the previous chunk of another).
+     */
+    public CompressionResult deflateChunk( ByteBuffer pChunk, ByteBuffer pPreviousChunk, boolean pLast, OutputStream pOutputStream )
+            throws IOException {
+        mDeflater.reset();
+        mCRC.reset();
+        if ( pPreviousChunk != null ) {
+            ByteBuffer zDictionary = pPreviousChunk.duplicate();
+            zDictionary.position( zDictionary.limit() - Math.min( DICTIONARY_SIZE, zDictionary.remaining() ) );
+            mDeflater.setDictionary( zDictionary );
+        }
+        int zLength = pChunk.remaining();
+        mCRC.update( pChunk.duplicate() );
+        mDeflater.setInput( pChunk.duplicate() );
+        if ( pLast ) {
+            mDeflater.finish();
+            while ( !mDeflater.finished() ) {
+                drain( pOutputStream );
+            }
+        } else {
+            int zDeflated;
+            do {
+                pOutputStream.write( mOutput, 0, zDeflated = mDeflater.deflate( mOutput, 0, mOutput.length, Deflater.SYNC_FLUSH ) );
+            } while ( zDeflated == mOutput.length );
+        }
+        return new CompressionResult( mCRC.getValue(), zLength, mDeflater.getBytesWritten() );
+    }
+
+    private void drain( OutputStream pOutputStream )
+            throws IOException {
+        int zDeflated = mDeflater.deflate( mOutput, 0, mOutput.length );
+        if ( zDeflated != 0 ) {
+            pOutputStream.write( mOutput, 0, zDeflated );
+        }
+    }
+
+    /**
+     * @return the number of bytes read into mInput, which will be less than BUFFER_SIZE only at End-Of-File.
+     */
+    private int fill( InputStream pInputStream )
+            throws IOException {
+        int zFilled = 0;
+        for ( int zRead; zFilled < mInput.length; zFilled += zRead ) {
+            if ( -1 == (zRead = pInputStream.read( mInput, zFilled, mInput.length - zFilled )) ) {
+                break;
+            }
+        }
+        return zFilled;
+    }
+
+    @Override
+    public void dispose() {
+        mDeflater.end();
+    }
+}
@@ -0,0 +1,72 @@
+package org.litesoft.packageversionedzip;
+
+import org.litesoft.commonfoundation.exceptions.*;
+import org.litesoft.commonfoundation.indent.*;
+import org.litesoft.server.file.*;
+
+import java.io.*;
+import java.util.zip.*;
+
+/**
+ * Chooses (see CompressionPolicy) whether each entry that is not copied is Stored or Deflated, and at what level, for a ZipFileCreator.
+ * <p/>
+ * An entry of unknown size is never Stored (as that needs the size up front, unless read into memory - but it is the same whether or not
+ * it is, so the Zip is the same regardless of the number of Threads), but Deflated at BEST_SPEED.  With an AdaptiveLevelController (see
+ * CompressionPolicy.adaptive), the DEFAULT_COMPRESSION is replaced by its level, and it is updated w/ the throughput after each entry.
+ * <p/>
+ * Thread Safe.
+ */
+public class EntryLevelSelector {
+    private final CompressionPolicy mPolicy;
+
+    public EntryLevelSelector( CompressionPolicy pPolicy ) {
+        mPolicy = pPolicy;
+    }
+
+    /**
+     * Opens pFile (or its pMapped data) and chooses its level.
+     *
+     * @param pMapped null means read pFile
+     *
+     * @return the chosen level & the stream to read the entry's data from (which the caller must dispose).
+     */
+    public CompressionPolicy.Choice choose( String pName, RelativeFile pFile, MappedFile pMapped ) {
+        CompressionPolicy.Choice zChoice;
+        try {
+            zChoice = mPolicy.choose( pName, (pMapped != null) ? pMapped.open() : EntryReadEvent.open( pName, pFile ) );
+        }
+        catch ( IOException e ) {
+            throw new FileSystemException( e );
+        }
+        long zSize = SizedRelativeFile.sizeOf( pFile );
+        if ( (zChoice.getLevel() == CompressionPolicy.STORED) && (zSize == -1) ) {
+            return zChoice.withLevel( Deflater.BEST_SPEED );
+        }
+        AdaptiveLevelController zController = mPolicy.getController();
+        if ( (zChoice.getLevel() == Deflater.DEFAULT_COMPRESSION) && (zController != null) ) {
+            return zChoice.withLevel( zController.nextLevel( zSize ) );
+        }
+        return zChoice;
+    }
+
+    /**
+     * @param pInputBytes  the uncompressed bytes added to the Zip so far
+     * @param pOutputBytes the bytes written to the Zip so far
+     */
+    public void update( long pInputBytes, long pOutputBytes ) {
+        AdaptiveLevelController zController = mPolicy.getController();
+        if ( zController != null ) {
+            zController.update( pInputBytes, pOutputBytes );
+        }
+    }
+
+    /**
+     * Reports the levels the AdaptiveLevelController (if any) chose.
+     */
+    public void report( IndentableWriter pConsole ) {
+        AdaptiveLevelController zController = mPolicy.getController();
+        if ( zController != null ) {
+            zController.report( pConsole );
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.litesoft.packageversionedzip;
+
+import org.litesoft.commonfoundation.exceptions.*;
+import org.litesoft.server.file.*;
+
+import jdk.jfr.*;
+
+import java.io.*;
+
+/**
+ * Java Flight Recorder event: an entry's data read from its Source, from open to close, w/ the time spent in the reads (waiting on the
+ * Source) and the bytes read.
+ */
+@Name("org.litesoft.EntryRead")
+@Label("Entry Read")
+@Category({"PackageVersionedZip", "Source"})
+@StackTrace(false)
+public class EntryReadEvent extends Event {
+    @Label("Name")
+    String name;
+
+    @Label("Bytes Read")
+    @DataAmount
+    long bytes;
+
+    @Label("Read Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long readTime;
+
+    /**
+     * @return pFile's InputStream, which (if the event is enabled) commits the event when closed.
+     */
+    public static InputStream open( String pName, RelativeFile pFile )
+            throws FileSystemException {
+        EntryReadEvent zEvent = new EntryReadEvent();
+        if ( !zEvent.isEnabled() ) {
+            return pFile.open();
+        }
+        zEvent.name = pName;
+        zEvent.begin();
+        return new Reading( pFile.open(), zEvent );
+    }
+
+    private static class Reading extends FilterInputStream {
+        private final EntryReadEvent mEvent;
+        private boolean mClosed;
+
+        private Reading( InputStream pInputStream, EntryReadEvent pEvent ) {
+            super( pInputStream );
+            mEvent = pEvent;
+        }
+
+        @Override
+        public int read()
+                throws IOException {
+            long zStarted = System.nanoTime();
+            int zByte = super.read();
+            read( zStarted, (zByte == -1) ? 0 : 1 );
+            return zByte;
+        }
+
+        @Override
+        public int read( byte[] pBytes, int pOffset, int pLength )
+                throws IOException {
+            long zStarted = System.nanoTime();
+            int zRead = super.read( pBytes, pOffset, pLength );
+            read( zStarted, zRead );
+            return zRead;
+        }
+
+        private void read( long pStartedNanos, int pRead ) {
+            mEvent.readTime += System.nanoTime() - pStartedNanos;
+            if ( pRead > 0 ) {
+                mEvent.bytes += pRead;
+            }
+        }
+
+        @Override
+        public void close()
+                throws IOException {
+            try {
+                super.close();
+            }
+            finally {
+                if ( !mClosed ) {
+                    mClosed = true;
+                    mEvent.end();
+                    if ( mEvent.shouldCommit() ) {
+                        mEvent.commit();
+                    }
+                }
+            }
+        }
+    }
+}
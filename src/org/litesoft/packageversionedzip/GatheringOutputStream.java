@@ -0,0 +1,33 @@
+package org.litesoft.packageversionedzip;
+
+import java.io.*;
+import java.nio.*;
+
+/**
+ * An OutputStream that can be handed several ByteBuffers at once (e.g. all the blocks of a BlockOutputStream), so that an implementation
+ * that can write them together (e.g. ZipOutput, in a single gathering write) does not have to copy them one at a time.
+ */
+public abstract class GatheringOutputStream extends OutputStream {
+    /**
+     * Write the remaining bytes of the pBuffers (their positions are advanced), by default one buffer at a time.
+     */
+    public void write( ByteBuffer... pBuffers )
+            throws IOException {
+        byte[] zBytes = null;
+        for ( ByteBuffer zBuffer : pBuffers ) {
+            if ( zBuffer.hasArray() ) {
+                write( zBuffer.array(), zBuffer.arrayOffset() + zBuffer.position(), zBuffer.remaining() );
+                zBuffer.position( zBuffer.limit() );
+                continue;
+            }
+            while ( zBuffer.hasRemaining() ) {
+                if ( zBytes == null ) {
+                    zBytes = new byte[EntryDeflater.BUFFER_SIZE];
+                }
+                int zLength = Math.min( zBytes.length, zBuffer.remaining() );
+                zBuffer.get( zBytes, 0, zLength );
+                write( zBytes, 0, zLength );
+            }
+        }
+    }
+}
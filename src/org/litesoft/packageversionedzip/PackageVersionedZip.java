@@ -1,13 +1,11 @@
 package org.litesoft.packageversionedzip;
 
-import org.litesoft.commonfoundation.exceptions.*;
 import org.litesoft.commonfoundation.typeutils.*;
 import org.litesoft.packageversioned.*;
 import org.litesoft.server.file.*;
 import org.litesoft.server.util.*;
 
 import java.io.*;
-import java.util.zip.*;
 
 public class PackageVersionedZip extends AbstractApp<Parameters> {
     public static final String VERSION = "0.9";
@@ -26,60 +24,37 @@ public class PackageVersionedZip extends AbstractApp<Parameters> {
     protected void process() {
         String zTarget = getTarget();
         String zVersion = mParameters.getVersion();
-        ZipFileCreator zZipper = new ZipFileCreator( new File( mParameters.getLocalVerDir(),
-                                                               Paths.forwardSlashCombine( zTarget, zVersion + ".zip" ) ) );
-        RelativeFileIterator zSourceFiles = mParameters.getSourceFiles();
-        CONSOLE.indent();
-        zZipper.add( new RelativeFileFromContents( VERSION_FILE, zVersion + "\n" ) );
-        while ( zSourceFiles.hasNext() ) {
-            zZipper.add( zSourceFiles.next() );
-        }
-        CONSOLE.outdent();
-        zSourceFiles.dispose();
-        Closeables.close(zZipper);
-    }
-
-    private class ZipFileCreator implements Closeable {
-        private final File mZipFile;
-        private ZipOutputStream mZipOutputStream;
-
-        public ZipFileCreator( File pZipFile ) {
-            CONSOLE.printLn( "Producing: ", (mZipFile = pZipFile) );
-            OutputStream zOS = FileUtils.asOutputStream( FileUtils.asNewFile( mZipFile ) );
-            mZipOutputStream = new ZipOutputStream( IOUtils.createBufferedOutputStream( zOS ) );
-        }
-
-        public void add( final RelativeFile pFile ) {
-            CONSOLE.printLn( pFile.getRelativeFilePath() );
-            ZipEntry zEntry = new ZipEntry( Paths.forwardSlash( pFile.getRelativeFilePath() ) );
+        File zZipFile = new File( mParameters.getLocalVerDir(), Paths.forwardSlashCombine( zTarget, zVersion + ".zip" ) );
+        PackagingMetrics zMetrics = new PackagingMetrics();
+        Progress zProgress = mParameters.getProgress( CONSOLE );
+        ZipFileCreator zZipper = new ZipFileCreator( CONSOLE, zZipFile, mParameters.getThreads(), mParameters.getLargeFileBytes(),
+                                                     mParameters.getBaselineZip( zZipFile ), mParameters.getDeflateCache(),
+                                                     mParameters.getCompressionPolicy(), mParameters.getZipOutputSettings(), zMetrics,
+                                                     zProgress );
+        try {
+            RelativeFileIterator zSourceFiles = mParameters.getSourceFiles( zMetrics );
             try {
-                mZipOutputStream.putNextEntry( zEntry );
+                zProgress.watch( zSourceFiles );
+                CONSOLE.indent();
+                try {
+                    zZipper.add( new RelativeFileFromContents( VERSION_FILE, zVersion + "\n" ) );
+                    while ( zSourceFiles.hasNext() ) {
+                        zZipper.add( zSourceFiles.next() );
+                    }
+                    Closeables.close( zZipper ); // Any entries still being deflated need the Console indent & the Source Files!
+                }
+                finally {
+                    CONSOLE.outdent();
+                }
             }
-            catch ( IOException e ) {
-                throw new FileSystemException( e );
+            finally {
+                zSourceFiles.dispose();
             }
-            IOCopier.from( new IOSupplier<InputStream>() {
-                @Override
-                public InputStream get() {
-                    return pFile.open();
-                }
-            } ).append( mZipOutputStream );
-            //    } ).to( new IOSupplier<OutputStream>() {
-            //        @Override
-            //        public OutputStream get()
-            //                throws IOException {
-            //            File zFile = new File("/tempGZ/" + pFile.getRelativeFilePath());
-            //            FileUtils.insureParent( zFile );
-            //            return new FileOutputStream( zFile );
-            //        }
-            //    } );
         }
-
-        @Override
-        public void close()
-                throws IOException {
-            mZipOutputStream.close();
-            FileUtils.rollIn( FileUtils.asNewFile( mZipFile ), mZipFile, FileUtils.asBackupFile( mZipFile ) );
+        finally {
+            zZipper.dispose(); // Only if not closed (i.e. failed) - abandons the Zip
         }
+        zMetrics.writeReport( zZipFile );
+        CONSOLE.printLn( "Metrics: ", PackagingMetrics.reportFileFor( zZipFile ) );
     }
 }
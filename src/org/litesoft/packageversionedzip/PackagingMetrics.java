@@ -0,0 +1,167 @@
+package org.litesoft.packageversionedzip;
+
+import org.litesoft.commonfoundation.typeutils.*;
+import org.litesoft.server.file.*;
+import org.litesoft.server.util.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * The PhaseMetrics of a packaging run (see ZipFileCreator & TarGZRelativeFileIterator for the phases), plus the top TOP_N slowest &
+ * largest entries and the compression ratios by file extension, written (on close) as a JSON report next to the Zip
+ * (e.g. "7u60.metrics.json" for "7u60.zip").
+ * <p/>
+ * An entry's time is that of the phase that compressed (or stored or copied) it, and the ratio is the compressed size / the size.
+ * <p/>
+ * Thread Safe.
+ */
+public class PackagingMetrics extends PhaseMetrics {
+    public static final int TOP_N = 10;
+    public static final String REPORT_SUFFIX = ".metrics.json";
+
+    private static final String NO_EXTENSION = "";
+
+    private final long mStartedNanos = System.nanoTime();
+    private final PriorityQueue<EntryMetrics> mSlowest = new PriorityQueue<EntryMetrics>( TOP_N + 1, new Comparator<EntryMetrics>() {
+        @Override
+        public int compare( EntryMetrics pEntry1, EntryMetrics pEntry2 ) {
+            return Long.compare( pEntry1.mNanos, pEntry2.mNanos );
+        }
+    } );
+    private final PriorityQueue<EntryMetrics> mLargest = new PriorityQueue<EntryMetrics>( TOP_N + 1, new Comparator<EntryMetrics>() {
+        @Override
+        public int compare( EntryMetrics pEntry1, EntryMetrics pEntry2 ) {
+            return Long.compare( pEntry1.mSize, pEntry2.mSize );
+        }
+    } );
+    private final Map<String, long[]> mByExtension = new TreeMap<String, long[]>(); // Extension -> {Entries, Size, Compressed Size}
+
+    /**
+     * @return the JSON report file for pZipFile.
+     */
+    public static File reportFileFor( File pZipFile ) {
+        String zName = pZipFile.getName();
+        if ( zName.toLowerCase().endsWith( ".zip" ) ) {
+            zName = zName.substring( 0, zName.length() - 4 );
+        }
+        return new File( pZipFile.getParentFile(), zName + REPORT_SUFFIX );
+    }
+
+    /**
+     * Record an entry (added to the Zip) and its time in pPhase.
+     */
+    public void entry( String pPhase, String pName, long pNanos, long pSize, long pCompressedSize ) {
+        phase( pPhase ).record( pNanos, pSize, pCompressedSize );
+        EntryMetrics zEntry = new EntryMetrics( pPhase, pName, pNanos, pSize, pCompressedSize );
+        synchronized ( this ) {
+            keepTop( mSlowest, zEntry );
+            keepTop( mLargest, zEntry );
+            String zExtension = extensionOf( pName );
+            long[] zTotals = mByExtension.get( zExtension );
+            if ( zTotals == null ) {
+                mByExtension.put( zExtension, zTotals = new long[3] );
+            }
+            zTotals[0]++;
+            zTotals[1] += pSize;
+            zTotals[2] += pCompressedSize;
+        }
+    }
+
+    private static void keepTop( PriorityQueue<EntryMetrics> pTop, EntryMetrics pEntry ) {
+        pTop.add( pEntry );
+        if ( pTop.size() > TOP_N ) {
+            pTop.remove();
+        }
+    }
+
+    private static String extensionOf( String pName ) {
+        String zName = pName.substring( pName.lastIndexOf( '/' ) + 1 );
+        int zDot = zName.lastIndexOf( '.' );
+        return (zDot < 1) ? NO_EXTENSION : zName.substring( zDot + 1 ).toLowerCase();
+    }
+
+    public synchronized void writeReport( File pZipFile ) {
+        long zTotalNanos = System.nanoTime() - mStartedNanos;
+        List<String> zLines = Lists.newArrayList();
+        zLines.add( "{" );
+        zLines.add( "  \"zip\": " + quote( pZipFile.getPath() ) + "," );
+        zLines.add( "  \"zipBytes\": " + pZipFile.length() + "," );
+        zLines.add( "  \"seconds\": " + seconds( zTotalNanos ) + "," );
+        zLines.add( "  \"phases\": [" );
+        List<Phase> zPhases = getPhases();
+        for ( int i = 0; i < zPhases.size(); i++ ) {
+            Phase zPhase = zPhases.get( i );
+            zLines.add( "    {\"name\": " + quote( zPhase.getName() ) + ", \"count\": " + zPhase.getCount() +
+                        ", \"seconds\": " + seconds( zPhase.getNanos() ) + ", \"bytesIn\": " + zPhase.getBytesIn() +
+                        ", \"bytesOut\": " + zPhase.getBytesOut() + "}" + comma( i, zPhases.size() ) );
+        }
+        zLines.add( "  ]," );
+        addEntries( zLines, "slowestEntries", mSlowest );
+        addEntries( zLines, "largestEntries", mLargest );
+        zLines.add( "  \"byExtension\": [" );
+        int zIndex = 0;
+        for ( Map.Entry<String, long[]> zExtension : mByExtension.entrySet() ) {
+            long[] zTotals = zExtension.getValue();
+            zLines.add( "    {\"extension\": " + quote( zExtension.getKey() ) + ", \"entries\": " + zTotals[0] + ", \"size\": " + zTotals[1] +
+                        ", \"compressedSize\": " + zTotals[2] + ", \"ratio\": " + ratio( zTotals[1], zTotals[2] ) + "}" +
+                        comma( zIndex++, mByExtension.size() ) );
+        }
+        zLines.add( "  ]" );
+        zLines.add( "}" );
+        FileUtils.storeTextFile( reportFileFor( pZipFile ), zLines.toArray( new String[zLines.size()] ) );
+    }
+
+    private static void addEntries( List<String> pLines, String pKey, PriorityQueue<EntryMetrics> pTop ) {
+        List<EntryMetrics> zEntries = Lists.newArrayList( pTop );
+        Collections.sort( zEntries, Collections.reverseOrder( pTop.comparator() ) );
+        pLines.add( "  " + quote( pKey ) + ": [" );
+        for ( int i = 0; i < zEntries.size(); i++ ) {
+            EntryMetrics zEntry = zEntries.get( i );
+            pLines.add( "    {\"name\": " + quote( zEntry.mName ) + ", \"phase\": " + quote( zEntry.mPhase ) +
+                        ", \"seconds\": " + seconds( zEntry.mNanos ) + ", \"size\": " + zEntry.mSize +
+                        ", \"compressedSize\": " + zEntry.mCompressedSize + ", \"ratio\": " + ratio( zEntry.mSize, zEntry.mCompressedSize ) + "}" +
+                        comma( i, zEntries.size() ) );
+        }
+        pLines.add( "  ]," );
+    }
+
+    private static String comma( int pIndex, int pCount ) {
+        return (pIndex + 1 < pCount) ? "," : "";
+    }
+
+    private static String seconds( long pNanos ) {
+        return String.format( Locale.US, "%.6f", pNanos / 1e9 );
+    }
+
+    private static String ratio( long pSize, long pCompressedSize ) {
+        return (pSize == 0) ? "null" : String.format( Locale.US, "%.4f", (double) pCompressedSize / pSize );
+    }
+
+    private static String quote( String pValue ) {
+        StringBuilder sb = new StringBuilder( pValue.length() + 2 ).append( '"' );
+        for ( char c : pValue.toCharArray() ) {
+            if ( (c == '"') || (c == '\\') ) {
+                sb.append( '\\' ).append( c );
+            } else if ( c < ' ' ) {
+                sb.append( String.format( "\\u%04x", (int) c ) );
+            } else {
+                sb.append( c );
+            }
+        }
+        return sb.append( '"' ).toString();
+    }
+
+    private static class EntryMetrics {
+        private final String mPhase, mName;
+        private final long mNanos, mSize, mCompressedSize;
+
+        private EntryMetrics( String pPhase, String pName, long pNanos, long pSize, long pCompressedSize ) {
+            mPhase = pPhase;
+            mName = pName;
+            mNanos = pNanos;
+            mSize = pSize;
+            mCompressedSize = pCompressedSize;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.litesoft.packageversionedzip;
+
+import java.io.*;
+
+/**
+ * Parameter Argument: Baseline ("Baseline") - a previous Zip whose (unchanged) entries are copied as is instead of being deflated
+ * again (see ZipBaseline), either the path of a Zip file or "Previous" for the Zip currently at the path being produced (if any).
+ * <p/>
+ * Optional (Keyed only), defaults to none (every entry is deflated).
+ */
+public class ParameterBaseline extends AbstractOptionalParameter<String> {
+    public static final String NAME = "Baseline";
+
+    public static final String PREVIOUS = "Previous";
+
+    public ParameterBaseline() {
+        super( "MUST be an existing Zip file or '" + PREVIOUS + "'", "", NAME );
+    }
+
+    @Override
+    public boolean acceptable( String pValue ) {
+        return PREVIOUS.equalsIgnoreCase( pValue.trim() ) || new File( pValue ).isFile();
+    }
+
+    @Override
+    protected String convertValidated( String pValue ) {
+        return PREVIOUS.equalsIgnoreCase( pValue.trim() ) ? PREVIOUS : new File( pValue ).getAbsolutePath();
+    }
+
+    /**
+     * @param pZipFile the Zip being produced
+     *
+     * @return null if no Baseline (or "Previous" and there is no Zip at pZipFile yet)
+     */
+    public File getBaselineZip( File pZipFile ) {
+        String zValue = get();
+        if ( PREVIOUS.equals( zValue ) ) {
+            return pZipFile.isFile() ? pZipFile : null;
+        }
+        return (zValue.length() == 0) ? null : new File( zValue );
+    }
+}
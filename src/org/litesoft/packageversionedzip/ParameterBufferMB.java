@@ -0,0 +1,17 @@
+package org.litesoft.packageversionedzip;
+
+/**
+ * Parameter Argument: BufferMB ("BufferMB") - the memory budget (in MB) for buffering the entries of a ".gz" source (see SpillManager);
+ * entries that do not fit are "spilled" to a (single) spill file in the SpillDir (see ParameterSpillDir).
+ * <p/>
+ * Optional (Keyed only), defaults to 64 (MB); 0 spills every buffered entry.
+ * <p/>
+ * Note: Entries are only buffered when they are deflated concurrently (see ParameterThreads).
+ */
+public class ParameterBufferMB extends AbstractOptionalIntParameter {
+    public static final String NAME = "BufferMB";
+
+    public ParameterBufferMB() {
+        super( 0, 1024 * 1024, 64, NAME );
+    }
+}
@@ -0,0 +1,16 @@
+package org.litesoft.packageversionedzip;
+
+/**
+ * Parameter Argument: CacheMB ("CacheMB") - the size cap (in MB) of the persistent DeflateCache (in the LocalVerDir), which lets the
+ * same content (e.g. third-party files packaged into many Zips) be deflated only once across runs; the Least Recently Used
+ * entries are evicted to stay within the cap.
+ * <p/>
+ * Optional (Keyed only), defaults to 0 (no cache).
+ */
+public class ParameterCacheMB extends AbstractOptionalIntParameter {
+    public static final String NAME = "CacheMB";
+
+    public ParameterCacheMB() {
+        super( 0, 1024 * 1024, 0, NAME );
+    }
+}
@@ -0,0 +1,28 @@
+package org.litesoft.packageversionedzip;
+
+/**
+ * Parameter Argument: Compression ("Compression") - how each entry's data is compressed (see CompressionPolicy), either "Auto" (Stored
+ * or Deflated, and at what level, by the entry's extension & a sample of its data), or "Deflate" (always Deflated at the default level).
+ * <p/>
+ * Optional (Keyed only), defaults to "Deflate" (so the Zip is the same as it has always been; "Auto" is opt-in).
+ */
+public class ParameterCompression extends AbstractOptionalParameter<CompressionPolicy> {
+    public static final String NAME = "Compression";
+
+    public static final String AUTO = "Auto";
+    public static final String DEFLATE = "Deflate";
+
+    public ParameterCompression() {
+        super( "MUST be '" + AUTO + "' or '" + DEFLATE + "'", CompressionPolicy.DEFLATE, NAME );
+    }
+
+    @Override
+    public boolean acceptable( String pValue ) {
+        return AUTO.equalsIgnoreCase( pValue.trim() ) || DEFLATE.equalsIgnoreCase( pValue.trim() );
+    }
+
+    @Override
+    protected CompressionPolicy convertValidated( String pValue ) {
+        return AUTO.equalsIgnoreCase( pValue.trim() ) ? CompressionPolicy.AUTO : CompressionPolicy.DEFLATE;
+    }
+}
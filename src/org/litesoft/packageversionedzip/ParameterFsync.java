@@ -0,0 +1,35 @@
+package org.litesoft.packageversionedzip;
+
+/**
+ * Parameter Argument: Fsync ("Fsync") - when the Zip's bytes are forced to the storage device (see ZipOutput.Fsync), either "None"
+ * (left to the OS), "Close" (before the Zip is "rolled in"), or "Periodic" (every ZipOutput.PERIODIC_FSYNC_BYTES, and on close).
+ * <p/>
+ * Optional (Keyed only), defaults to "None".
+ */
+public class ParameterFsync extends AbstractOptionalParameter<ZipOutput.Fsync> {
+    public static final String NAME = "Fsync";
+
+    public ParameterFsync() {
+        super( "MUST be '" + ZipOutput.Fsync.None + "', '" + ZipOutput.Fsync.Close + "', or '" + ZipOutput.Fsync.Periodic + "'",
+               ZipOutput.Fsync.None, NAME );
+    }
+
+    @Override
+    public boolean acceptable( String pValue ) {
+        return (find( pValue ) != null);
+    }
+
+    @Override
+    protected ZipOutput.Fsync convertValidated( String pValue ) {
+        return find( pValue );
+    }
+
+    private static ZipOutput.Fsync find( String pValue ) {
+        for ( ZipOutput.Fsync zFsync : ZipOutput.Fsync.values() ) {
+            if ( zFsync.name().equalsIgnoreCase( pValue.trim() ) ) {
+                return zFsync;
+            }
+        }
+        return null;
+    }
+}
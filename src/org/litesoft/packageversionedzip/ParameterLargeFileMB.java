@@ -0,0 +1,18 @@
+package org.litesoft.packageversionedzip;
+
+/**
+ * Parameter Argument: LargeFileMB ("LargeFileMB") - files (of a known size) of at least this many MB are deflated in (1 MB) chunks,
+ * which can be deflated concurrently (see ParameterThreads), and then joined into a single entry.
+ * <p/>
+ * Optional (Keyed only), defaults to 64 (MB); 0 turns off the chunking.
+ * <p/>
+ * Note: As the chunked entries are deflated slightly differently (each chunk ends with a "sync flush"), changing this value
+ * can change the resulting zip file (but changing the number of Threads does not).
+ */
+public class ParameterLargeFileMB extends AbstractOptionalIntParameter {
+    public static final String NAME = "LargeFileMB";
+
+    public ParameterLargeFileMB() {
+        super( 0, 1024 * 1024, 64, NAME );
+    }
+}
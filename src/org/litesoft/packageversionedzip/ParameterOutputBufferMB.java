@@ -0,0 +1,15 @@
+package org.litesoft.packageversionedzip;
+
+/**
+ * Parameter Argument: OutputBufferMB ("OutputBufferMB") - the size (in MB) of the (direct) buffer the Zip is written thru (see ZipOutput);
+ * the larger it is, the fewer (and larger) the writes.
+ * <p/>
+ * Optional (Keyed only), defaults to 1 (MB).
+ */
+public class ParameterOutputBufferMB extends AbstractOptionalIntParameter {
+    public static final String NAME = "OutputBufferMB";
+
+    public ParameterOutputBufferMB() {
+        super( 1, 1024, ZipOutput.DEFAULT_BUFFER_SIZE / (1024 * 1024), NAME );
+    }
+}
@@ -0,0 +1,15 @@
+package org.litesoft.packageversionedzip;
+
+/**
+ * Parameter Argument: PrefetchFiles ("PrefetchFiles") - for a directory source, the number of files to read ahead (concurrently, into
+ * memory) while the current ones are compressed (see PrefetchingRelativeFileIterator & ParameterPrefetchMB).
+ * <p/>
+ * Optional (Keyed only), defaults to 16; 0 turns the read ahead off.
+ */
+public class ParameterPrefetchFiles extends AbstractOptionalIntParameter {
+    public static final String NAME = "PrefetchFiles";
+
+    public ParameterPrefetchFiles() {
+        super( 0, 1024, 16, NAME );
+    }
+}
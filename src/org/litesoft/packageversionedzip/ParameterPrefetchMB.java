@@ -0,0 +1,15 @@
+package org.litesoft.packageversionedzip;
+
+/**
+ * Parameter Argument: PrefetchMB ("PrefetchMB") - the memory budget (in MB) for the files read ahead of a directory source (see
+ * ParameterPrefetchFiles); when it is used up, further files are not read ahead until the files read are written.
+ * <p/>
+ * Optional (Keyed only), defaults to 32 (MB); 0 turns the read ahead off.
+ */
+public class ParameterPrefetchMB extends AbstractOptionalIntParameter {
+    public static final String NAME = "PrefetchMB";
+
+    public ParameterPrefetchMB() {
+        super( 0, 1024 * 1024, 32, NAME );
+    }
+}
@@ -0,0 +1,17 @@
+package org.litesoft.packageversionedzip;
+
+import org.litesoft.server.util.*;
+
+/**
+ * Parameter Argument: ProgressSeconds ("ProgressSeconds") - the interval (in seconds) between the progress summaries (files/s, MB/s,
+ * percent of the Source consumed, & ETA, see Progress).
+ * <p/>
+ * Optional (Keyed only), defaults to 10 (0 means only the final summary).
+ */
+public class ParameterProgressSeconds extends AbstractOptionalIntParameter {
+    public static final String NAME = "ProgressSeconds";
+
+    public ParameterProgressSeconds() {
+        super( 0, 3600, Progress.DEFAULT_INTERVAL_SECONDS, NAME );
+    }
+}
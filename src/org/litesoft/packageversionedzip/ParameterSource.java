@@ -5,6 +5,7 @@ import org.litesoft.commonfoundation.exceptions.*;
 import org.litesoft.commonfoundation.typeutils.*;
 import org.litesoft.packageversioned.*;
 import org.litesoft.server.file.*;
+import org.litesoft.server.util.*;
 
 import java.io.*;
 
@@ -69,18 +70,25 @@ public class ParameterSource extends AbstractFileParameter {
         }
     }
 
-    public RelativeFileIterator getSourceFiles() {
+    /**
+     * @param pStreamFromBytes for a ".gz", entries of at least this size are streamed straight from the TAR, rather than buffered (see
+     *                         TarGZRelativeFileIterator)
+     * @param pMemoryBudget    for a ".gz", the memory for buffering the other entries (see SpillManager)
+     * @param pSpillDir        for a ".gz", where to spill the buffered entries that do not fit in the memory budget
+     * @param pMetrics         for a ".gz", where the inflating, TAR parsing, & buffering phases are recorded
+     */
+    public RelativeFileIterator getSourceFiles( long pStreamFromBytes, long pMemoryBudget, File pSpillDir, PhaseMetrics pMetrics ) {
         if ( mSourceType == null ) {
             return null;
         }
         try {
             switch ( mSourceType ) {
                 case Dir:
-                    return new RecursiveRelativeFileIterator( mValue );
+                    return new DirRelativeFileIterator( mValue );
                 case Zip:
-                    return new ZipRelativeFileIterator( mValue );
+                    return new RawZipRelativeFileIterator( mValue );
                 case gz:
-                    return new TarGZRelativeFileIterator( mValue );
+                    return new TarGZRelativeFileIterator( mValue, pStreamFromBytes, new SpillManager( pMemoryBudget, pSpillDir ), pMetrics );
                 default:
                     throw new IllegalStateException( "Unexpected SourceType: " + mSourceType );
             }
@@ -0,0 +1,27 @@
+package org.litesoft.packageversionedzip;
+
+import java.io.*;
+
+/**
+ * Parameter Argument: SpillDir ("SpillDir") - the directory (existing or creatable) for the spill file (see ParameterBufferMB), e.g. a tmpfs.
+ * <p/>
+ * Optional (Keyed only), defaults to the system's temporary-file directory ("java.io.tmpdir").
+ */
+public class ParameterSpillDir extends AbstractOptionalParameter<File> {
+    public static final String NAME = "SpillDir";
+
+    public ParameterSpillDir() {
+        super( "MUST be a directory (existing or creatable)", new File( System.getProperty( "java.io.tmpdir" ) ), NAME );
+    }
+
+    @Override
+    public boolean acceptable( String pValue ) {
+        File zDir = new File( pValue );
+        return (pValue.trim().length() != 0) && (zDir.isDirectory() || !zDir.exists());
+    }
+
+    @Override
+    protected File convertValidated( String pValue ) {
+        return new File( pValue ).getAbsoluteFile();
+    }
+}
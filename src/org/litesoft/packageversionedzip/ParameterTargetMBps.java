@@ -0,0 +1,17 @@
+package org.litesoft.packageversionedzip;
+
+/**
+ * Parameter Argument: TargetMBps ("TargetMBps") - the packaging throughput (in MB of uncompressed data per second) to stay at or
+ * above, while getting the best compression, by adapting the Deflate level from entry to entry (see AdaptiveLevelController).
+ * <p/>
+ * Optional (Keyed only), defaults to 0 (no adapting - the default level is used).
+ * <p/>
+ * Note: As the levels chosen depend on the timing, the resulting zip file can differ from run to run.
+ */
+public class ParameterTargetMBps extends AbstractOptionalIntParameter {
+    public static final String NAME = "TargetMBps";
+
+    public ParameterTargetMBps() {
+        super( 0, 1024 * 1024, 0, NAME );
+    }
+}
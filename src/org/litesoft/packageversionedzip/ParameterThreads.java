@@ -0,0 +1,18 @@
+package org.litesoft.packageversionedzip;
+
+/**
+ * Parameter Argument: Threads ("Threads") - the number of threads used to compress (deflate) the entries.
+ * <p/>
+ * Optional (Keyed only), defaults to 1 (all entries are compressed on the main thread).
+ * <p/>
+ * Note: The resulting zip file is byte-for-byte the same regardless of the number of threads used.
+ */
+public class ParameterThreads extends AbstractOptionalIntParameter {
+    public static final String NAME = "Threads";
+
+    public static final int MAX_THREADS = 256;
+
+    public ParameterThreads() {
+        super( 1, MAX_THREADS, 1, NAME );
+    }
+}
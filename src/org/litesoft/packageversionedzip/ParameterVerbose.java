@@ -0,0 +1,24 @@
+package org.litesoft.packageversionedzip;
+
+/**
+ * Parameter Argument: Verbose ("Verbose") - "true" to list each file as it is added (asynchronously, see Progress).
+ * <p/>
+ * Optional (Keyed only), defaults to "false" (only the periodic progress summaries, see ParameterProgressSeconds).
+ */
+public class ParameterVerbose extends AbstractOptionalParameter<Boolean> {
+    public static final String NAME = "Verbose";
+
+    public ParameterVerbose() {
+        super( "MUST be 'true' or 'false'", false, NAME );
+    }
+
+    @Override
+    public boolean acceptable( String pValue ) {
+        return "true".equalsIgnoreCase( pValue.trim() ) || "false".equalsIgnoreCase( pValue.trim() );
+    }
+
+    @Override
+    protected Boolean convertValidated( String pValue ) {
+        return "true".equalsIgnoreCase( pValue.trim() );
+    }
+}
@@ -1,5 +1,6 @@
 package org.litesoft.packageversionedzip;
 
+import org.litesoft.commonfoundation.indent.*;
 import org.litesoft.packageversioned.*;
 import org.litesoft.server.file.*;
 import org.litesoft.server.util.*;
@@ -18,12 +19,42 @@ import java.io.*;
  * <p/>
  * When a ".gz" of the normal format (See ParameterSource) is supplied to the "Source", when combined with the alternate suppliers for LocalVerDir,
  * the parameters can be just the "Source" ".gz" file.
+ * <p/>
+ * Optional Parameters (Keyed only, and as they are matched after the four above, their keys should be given in full):
+ * - Threads ("Threads") - See ParameterThreads for details.
+ * - LargeFileMB ("LargeFileMB") - See ParameterLargeFileMB for details.
+ * - BufferMB ("BufferMB") - See ParameterBufferMB for details.
+ * - SpillDir ("SpillDir") - See ParameterSpillDir for details.
+ * - Baseline ("Baseline") - See ParameterBaseline for details.
+ * - CacheMB ("CacheMB") - See ParameterCacheMB for details.
+ * - Compression ("Compression") - See ParameterCompression for details.
+ * - TargetMBps ("TargetMBps") - See ParameterTargetMBps for details.
+ * - ProgressSeconds ("ProgressSeconds") - See ParameterProgressSeconds for details.
+ * - Verbose ("Verbose") - See ParameterVerbose for details.
+ * - PrefetchFiles ("PrefetchFiles") - See ParameterPrefetchFiles for details.
+ * - PrefetchMB ("PrefetchMB") - See ParameterPrefetchMB for details.
+ * - OutputBufferMB ("OutputBufferMB") - See ParameterOutputBufferMB for details.
+ * - Fsync ("Fsync") - See ParameterFsync for details.
  */
 public class Parameters extends AbstractParameters {
     private ParameterSource mSource = new ParameterSource( mTarget, mVersion );
     private ParameterLocalVerDir mLocalVerDir = ParameterLocalVerDir.existingOrCreatable();
+    private ParameterThreads mThreads = new ParameterThreads();
+    private ParameterLargeFileMB mLargeFileMB = new ParameterLargeFileMB();
+    private ParameterBufferMB mBufferMB = new ParameterBufferMB();
+    private ParameterSpillDir mSpillDir = new ParameterSpillDir();
+    private ParameterBaseline mBaseline = new ParameterBaseline();
+    private ParameterCacheMB mCacheMB = new ParameterCacheMB();
+    private ParameterCompression mCompression = new ParameterCompression();
+    private ParameterTargetMBps mTargetMBps = new ParameterTargetMBps();
+    private ParameterProgressSeconds mProgressSeconds = new ParameterProgressSeconds();
+    private ParameterVerbose mVerbose = new ParameterVerbose();
+    private ParameterPrefetchFiles mPrefetchFiles = new ParameterPrefetchFiles();
+    private ParameterPrefetchMB mPrefetchMB = new ParameterPrefetchMB();
+    private ParameterOutputBufferMB mOutputBufferMB = new ParameterOutputBufferMB();
+    private ParameterFsync mFsync = new ParameterFsync();
 
-    private Parameter<?>[] mParameters = {mSource, mTarget, mVersion, mLocalVerDir};
+    private Parameter<?>[] mParameters = {mSource, mTarget, mVersion, mLocalVerDir, mThreads, mLargeFileMB, mBufferMB, mSpillDir, mBaseline, mCacheMB, mCompression, mTargetMBps, mProgressSeconds, mVerbose, mPrefetchFiles, mPrefetchMB, mOutputBufferMB, mFsync};
 
     public static final String SOURCE1 = "From";
     public static final String SOURCE2 = "Source";
@@ -41,8 +72,75 @@ public class Parameters extends AbstractParameters {
         return mLocalVerDir.get();
     }
 
-    public RelativeFileIterator getSourceFiles() {
-        return mSource.getSourceFiles();
+    public int getThreads() {
+        return mThreads.get();
+    }
+
+    public long getLargeFileBytes() {
+        return mLargeFileMB.get() * 1024L * 1024L;
+    }
+
+    public long getBufferBytes() {
+        return mBufferMB.get() * 1024L * 1024L;
+    }
+
+    public File getSpillDir() {
+        return mSpillDir.get();
+    }
+
+    /**
+     * @param pZipFile the Zip being produced
+     *
+     * @return null if no Baseline
+     */
+    public File getBaselineZip( File pZipFile ) {
+        return mBaseline.getBaselineZip( pZipFile );
+    }
+
+    /**
+     * @return the Compression policy, made adaptive if there is a TargetMBps.
+     */
+    public CompressionPolicy getCompressionPolicy() {
+        long zTargetBytesPerSecond = mTargetMBps.get() * 1024L * 1024L;
+        CompressionPolicy zPolicy = mCompression.get();
+        return (zTargetBytesPerSecond == 0) ? zPolicy : zPolicy.adaptive( new AdaptiveLevelController( zTargetBytesPerSecond ) );
+    }
+
+    public ZipOutput.Settings getZipOutputSettings() {
+        return new ZipOutput.Settings( mOutputBufferMB.get() * 1024 * 1024, mFsync.get() );
+    }
+
+    public Progress getProgress( IndentableWriter pConsole ) {
+        return new Progress( pConsole, mProgressSeconds.get(), mVerbose.get() );
+    }
+
+    /**
+     * @return null if no cache (CacheMB of 0)
+     */
+    public DeflateCache getDeflateCache() {
+        long zMaxBytes = mCacheMB.get() * 1024L * 1024L;
+        return (zMaxBytes == 0) ? null : new DeflateCache( new File( getLocalVerDir(), DeflateCache.DIRECTORY_NAME ), zMaxBytes );
+    }
+
+    /**
+     * With a single Thread nothing is gained by buffering the entries of a ".gz", so it is processed in a single pass (each entry streamed
+     * straight into the Zip); otherwise the entries are buffered (so they can be deflated concurrently), except for the "large" ones, which
+     * are streamed into the (concurrent) chunked deflating, and the ones too large to buffer (see ZipFileCreator.MAX_BUFFERED_ENTRY_BYTES).  The buffered entries are kept within the BufferMB, else spilled to the SpillDir.
+     */
+    public RelativeFileIterator getSourceFiles( PhaseMetrics pMetrics ) {
+        long zStreamFromBytes = ZipFileCreator.MAX_BUFFERED_ENTRY_BYTES + 1;
+        long zLargeFileBytes = getLargeFileBytes();
+        if ( zLargeFileBytes != 0 ) {
+            zStreamFromBytes = Math.min( zStreamFromBytes, zLargeFileBytes );
+        }
+        RelativeFileIterator zSourceFiles = mSource.getSourceFiles( (getThreads() < 2) ? 0 : zStreamFromBytes,
+                                                                    getBufferBytes(), getSpillDir(), pMetrics );
+        int zPrefetchFiles = mPrefetchFiles.get();
+        long zPrefetchBytes = mPrefetchMB.get() * 1024L * 1024L;
+        if ( (zSourceFiles instanceof DirRelativeFileIterator) && (zPrefetchFiles != 0) && (zPrefetchBytes != 0) ) {
+            zSourceFiles = new PrefetchingRelativeFileIterator( zSourceFiles, zPrefetchFiles, zPrefetchBytes, pMetrics );
+        }
+        return zSourceFiles;
     }
 
     @Override
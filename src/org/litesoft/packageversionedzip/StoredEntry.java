@@ -0,0 +1,38 @@
+package org.litesoft.packageversionedzip;
+
+import java.io.*;
+import java.util.zip.*;
+
+/**
+ * An entry that is to be Stored (not compressed), read (off the writing thread) into memory w/ its CRC-32, waiting for its turn to be
+ * written to the Zip.  As the CRC-32 & size are known before it is written, they go in the Local Header (see ZipWriter.addStored).
+ */
+public class StoredEntry extends BlockOutputStream {
+    private final String mName;
+    private CompressionResult mResult;
+
+    public StoredEntry( String pName ) {
+        mName = pName;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public CompressionResult getResult() {
+        return mResult;
+    }
+
+    public StoredEntry store( InputStream pInputStream )
+            throws IOException {
+        CRC32 zCRC = new CRC32();
+        long zSize = 0;
+        byte[] zBuffer = new byte[EntryDeflater.BUFFER_SIZE];
+        for ( int zRead; -1 != (zRead = pInputStream.read( zBuffer )); zSize += zRead ) {
+            zCRC.update( zBuffer, 0, zRead );
+            write( zBuffer, 0, zRead );
+        }
+        mResult = new CompressionResult( zCRC.getValue(), zSize, zSize );
+        return this;
+    }
+}
@@ -0,0 +1,99 @@
+package org.litesoft.packageversionedzip;
+
+import org.litesoft.commonfoundation.typeutils.*;
+import org.litesoft.server.file.*;
+import org.litesoft.server.util.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.zip.*;
+
+/**
+ * A previous Zip (the "Baseline", e.g. the last Zip produced for the same Target & Version) whose entries can be reused: an entry
+ * whose name, size, & CRC-32 match a (Stored or Deflated) Baseline entry can have the Baseline's compressed bytes copied as is
+ * (see ZipWriter.addCopied) instead of being deflated again.
+ * <p/>
+ * Checking an entry costs a read of its data (for the CRC-32), which is much cheaper than deflating it.
+ * <p/>
+ * Thread Safe (after construction the entries are only looked up, and the compressed bytes are read w/ positional reads).
+ */
+public class ZipBaseline implements Closeable {
+    private final ZipCentralDirectory mDirectory;
+    private final Map<String, RawZipEntry> mEntries = Maps.newHashMap();
+    private final AtomicInteger mReused = new AtomicInteger();
+
+    public ZipBaseline( File pZipFile )
+            throws IOException {
+        mDirectory = new ZipCentralDirectory( pZipFile );
+        for ( RawZipEntry zEntry : mDirectory.getEntries() ) {
+            if ( !zEntry.isDirectory() && zEntry.isCopyable() ) {
+                mEntries.put( zEntry.getName(), zEntry );
+            }
+        }
+    }
+
+    public ZipCentralDirectory getDirectory() {
+        return mDirectory;
+    }
+
+    public File getFile() {
+        return mDirectory.getFile();
+    }
+
+    /**
+     * @return the number of entries found (see find) so far.
+     */
+    public int getReused() {
+        return mReused.get();
+    }
+
+    /**
+     * @return true if there is a Baseline entry of pName & pSize, so (pending the CRC-32 check, see find) it could be reused.
+     */
+    public boolean isCandidate( String pName, long pSize ) {
+        RawZipEntry zEntry = mEntries.get( pName );
+        return (zEntry != null) && (zEntry.getSize() == pSize);
+    }
+
+    /**
+     * Find the Baseline entry that pFile's data (if it were added as pName) would duplicate.
+     *
+     * @param pKnownSize -1 if not known
+     *
+     * @return null if there is no such entry (pFile needs to be deflated)
+     */
+    public RawZipEntry find( String pName, RelativeFile pFile, long pKnownSize )
+            throws IOException {
+        RawZipEntry zEntry = mEntries.get( pName );
+        if ( (zEntry == null) || ((pKnownSize != -1) && (pKnownSize != zEntry.getSize())) ) {
+            return null;
+        }
+        CRC32 zCRC = new CRC32();
+        long zSize = 0;
+        byte[] zBuffer = new byte[EntryDeflater.BUFFER_SIZE];
+        InputStream zInputStream = pFile.open();
+        try {
+            for ( int zRead; -1 != (zRead = zInputStream.read( zBuffer )); zSize += zRead ) {
+                zCRC.update( zBuffer, 0, zRead );
+                if ( zSize + zRead > zEntry.getSize() ) {
+                    return null;
+                }
+            }
+        }
+        finally {
+            Closeables.dispose( zInputStream );
+        }
+        if ( (zSize != zEntry.getSize()) || (zCRC.getValue() != zEntry.getCRC()) ) {
+            return null;
+        }
+        mReused.incrementAndGet();
+        return zEntry;
+    }
+
+    @Override
+    public void close()
+            throws IOException {
+        mDirectory.close();
+    }
+}
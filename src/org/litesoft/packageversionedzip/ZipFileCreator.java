@@ -0,0 +1,570 @@
+package org.litesoft.packageversionedzip;
+
+import org.litesoft.commonfoundation.base.*;
+import org.litesoft.commonfoundation.exceptions.*;
+import org.litesoft.commonfoundation.indent.*;
+import org.litesoft.commonfoundation.typeutils.*;
+import org.litesoft.server.file.*;
+import org.litesoft.server.util.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Creates the Zip file (as a ".new" file, which is then "rolled in" on close, or deleted if disposed w/o being closed).
+ * <p/>
+ * With 1 Thread, each entry is Stored or Deflated (see EntryLevelSelector) directly into the Zip on the calling thread.  With more
+ * Threads, each entry is deflated into memory (see CachingDeflater) on a worker pool, and the calling thread writes them in the order
+ * they were added, w/ at most 2 entries per thread "in flight"; as the deflating is done the same way, the resulting Zip is the same
+ * regardless of the number of Threads.  Files of at least the LargeFileBytes are deflated in chunks (see ChunkedDeflate), large local
+ * files are memory mapped (see MappedFile), and entries from a Zip source (or matching a Baseline entry, see BaselineReuse) are copied.
+ * <p/>
+ * Each entry is recorded in the PackagingMetrics by the phase that added it (e.g. DEFLATE_PHASE, or WRITE_PHASE for the writing of the
+ * entries "in flight"), as Java Flight Recorder events (see EntryCompressedEvent), and by the Progress.
+ */
+public class ZipFileCreator implements Closeable, Disposable {
+    public static final long MAX_BUFFERED_ENTRY_BYTES = 1024L * 1024 * 256; // 256MB
+    public static final long MIN_MAPPED_BYTES = 1024L * 1024 * 4; // 4MB
+
+    public static final String DEFLATE_PHASE = "deflate";
+    public static final String STORE_PHASE = "store";
+    public static final String CACHED_PHASE = "cached";
+    public static final String COPY_PHASE = "copy";
+    public static final String REUSE_CHECK_PHASE = "reuseCheck";
+    public static final String WRITE_PHASE = "write";
+    public static final String FINISH_PHASE = "finish";
+    public static final String ROLL_IN_PHASE = "rollIn";
+
+    private static final int IN_FLIGHT_PER_THREAD = 2;
+    private static final int MAX_POOLED_SLABS = 64; // 4MB of 64K slabs
+
+    private final IndentableWriter mConsole;
+    private final File mZipFile;
+    private final ZipOutput mZipOutput;
+    private final ZipWriter mZipWriter;
+    private final ExecutorService mExecutor;
+    private final int mMaxInFlight;
+    private final long mLargeFileBytes;
+    private final BaselineReuse mReuse;
+    private final CachingDeflater mDeflater;
+    private final EntryLevelSelector mLevels;
+    private final PackagingMetrics mMetrics;
+    private final Progress mProgress;
+    private final Deque<Future<InFlight>> mInFlight = Lists.newLinkedList();
+    private final SlabPool mSlabPool = new SlabPool( MAX_POOLED_SLABS );
+    private final Set<InFlight> mUnwritten = Sets.newHashSet(); // Completed on the worker pool, but not yet written (see dispose)
+    private boolean mAbandoned; // guarded by mUnwritten
+    private boolean mRolledIn;
+
+    /**
+     * @param pLargeFileBytes 0 means no files are chunked
+     */
+    public ZipFileCreator( IndentableWriter pConsole, File pZipFile, int pThreads, long pLargeFileBytes ) {
+        this( pConsole, pZipFile, pThreads, pLargeFileBytes, null, null, CompressionPolicy.DEFLATE, ZipOutput.Settings.DEFAULT,
+              new PackagingMetrics(), new Progress( pConsole, Progress.DEFAULT_INTERVAL_SECONDS, true ) );
+    }
+
+    /**
+     * @param pLargeFileBytes 0 means no files are chunked
+     * @param pBaselineZip    null means no Baseline (every entry is deflated)
+     * @param pCache          null means no DeflateCache (if not null, it is closed by close)
+     * @param pOutputSettings how the Zip is written (see ZipOutput)
+     * @param pProgress       closed by close (after the last entry is written)
+     */
+    public ZipFileCreator( IndentableWriter pConsole, File pZipFile, int pThreads, long pLargeFileBytes, File pBaselineZip,
+                           DeflateCache pCache, CompressionPolicy pPolicy, ZipOutput.Settings pOutputSettings, PackagingMetrics pMetrics,
+                           Progress pProgress ) {
+        (mConsole = pConsole).printLn( "Producing: ", (mZipFile = pZipFile) );
+        mReuse = new BaselineReuse( pBaselineZip, pMetrics );
+        mDeflater = new CachingDeflater( pCache );
+        mLevels = new EntryLevelSelector( pPolicy );
+        mMetrics = pMetrics;
+        mProgress = pProgress;
+        mZipWriter = new ZipWriter( mZipOutput = new ZipOutput( FileUtils.asNewFile( mZipFile ), pOutputSettings ), System.currentTimeMillis() );
+        mExecutor = (pThreads < 2) ? null : Executors.newFixedThreadPool( pThreads, new DeflaterThreadFactory() );
+        mMaxInFlight = pThreads * IN_FLIGHT_PER_THREAD;
+        mLargeFileBytes = pLargeFileBytes;
+    }
+
+    public void add( RelativeFile pFile ) {
+        addEntry( bufferIfReusable( pFile ) );
+        mLevels.update( mZipWriter.getTotalSize(), mZipWriter.getPosition() );
+    }
+
+    private void addEntry( final RelativeFile pFile ) {
+        final String zName = Paths.forwardSlash( pFile.getRelativeFilePath() );
+        if ( isCopyable( pFile ) ) {
+            addCopied( zName, (RawZipRelativeFileIterator.RawZipRelativeFile) pFile );
+            return;
+        }
+        boolean zInline = (mExecutor == null) || (pFile instanceof StreamedRelativeFile) || (knownSize( pFile ) > MAX_BUFFERED_ENTRY_BYTES);
+        if ( (zInline || isLarge( pFile )) && addReused( zName, pFile ) ) {
+            return;
+        }
+        if ( isLarge( pFile ) ) {
+            addChunked( zName, pFile );
+            return;
+        }
+        if ( zInline ) {
+            addInline( zName, pFile );
+            return;
+        }
+        mInFlight.add( mExecutor.submit( new Callable<InFlight>() {
+            @Override
+            public InFlight call()
+                    throws IOException {
+                try {
+                    RawZipEntry zReused = mReuse.find( zName, pFile );
+                    if ( zReused != null ) {
+                        return new InFlight( zName, zReused );
+                    }
+                    return completed( toMemory( zName, pFile ) );
+                }
+                finally {
+                    disposeIfDisposable( pFile );
+                }
+            }
+        } ) );
+        if ( mInFlight.size() >= mMaxInFlight ) {
+            writeNextInFlight();
+        }
+    }
+
+    /**
+     * The entries already "in flight" are written first (to keep the order), and then this entry is stored or deflated directly into
+     * the Zip.
+     */
+    private void addInline( String pName, RelativeFile pFile ) {
+        while ( !mInFlight.isEmpty() ) {
+            writeNextInFlight();
+        }
+        if ( mDeflater.isCaching() && isBufferable( pFile ) ) {
+            try {
+                writeInFlight( toMemory( pName, pFile ) );
+            }
+            catch ( IOException e ) {
+                throw new FileSystemException( e );
+            }
+            finally {
+                disposeIfDisposable( pFile );
+            }
+            return;
+        }
+        EntryCompressedEvent zEvent = new EntryCompressedEvent();
+        zEvent.begin();
+        long zStarted = System.nanoTime();
+        MappedFile zMapped = mapped( pFile );
+        CompressionPolicy.Choice zChoice = mLevels.choose( pName, pFile, zMapped );
+        InputStream zInputStream = zChoice.getInputStream();
+        try {
+            int zLevel = zChoice.getLevel();
+            if ( zLevel == CompressionPolicy.STORED ) {
+                added( STORE_PHASE, pName, zLevel, zStarted, zEvent, mZipWriter.addStored( pName, zInputStream, knownSize( pFile ) ) );
+            } else if ( zMapped != null ) {
+                added( DEFLATE_PHASE, pName, zLevel, zStarted, zEvent,
+                       mZipWriter.addDeflated( pName, zMapped, EntryDeflater.forCurrentThread( zLevel ), isZip64( pFile ) ) );
+            } else {
+                added( DEFLATE_PHASE, pName, zLevel, zStarted, zEvent,
+                       mZipWriter.addDeflated( pName, zInputStream, EntryDeflater.forCurrentThread( zLevel ), isZip64( pFile ) ) );
+            }
+        }
+        catch ( IOException e ) {
+            throw new FileSystemException( e );
+        }
+        finally {
+            Closeables.dispose( zInputStream );
+            disposeIfDisposable( pFile );
+        }
+    }
+
+    /**
+     * An entry added to the Zip (on the calling thread).
+     */
+    private void entry( String pPhase, String pName, long pNanos, long pSize, long pCompressedSize ) {
+        mMetrics.entry( pPhase, pName, pNanos, pSize, pCompressedSize );
+        mProgress.entry( pName, pSize );
+    }
+
+    private void added( String pPhase, String pName, int pLevel, long pStartedNanos, EntryCompressedEvent pEvent, CompressionResult pResult ) {
+        entry( pPhase, pName, System.nanoTime() - pStartedNanos, pResult.getSize(), pResult.getCompressedSize() );
+        pEvent.commit( pPhase, pName, pLevel, pResult.getSize(), pResult.getCompressedSize() );
+    }
+
+    /**
+     * @return true if pFile can be deflated into memory (e.g. to use the DeflateCache) instead of directly into the Zip.
+     */
+    private static boolean isBufferable( RelativeFile pFile ) {
+        long zSize = knownSize( pFile );
+        return !(pFile instanceof StreamedRelativeFile) && (zSize != -1) && (zSize <= MAX_BUFFERED_ENTRY_BYTES);
+    }
+
+    /**
+     * Store or Deflate pFile into memory (on the current thread), unless it is (to be Deflated and) in the DeflateCache (if any).
+     */
+    private InFlight toMemory( String pName, RelativeFile pFile )
+            throws IOException {
+        EntryCompressedEvent zEvent = new EntryCompressedEvent();
+        zEvent.begin();
+        long zStarted = System.nanoTime();
+        MappedFile zMapped = mapped( pFile );
+        CompressionPolicy.Choice zChoice = mLevels.choose( pName, pFile, zMapped );
+        InputStream zInputStream = zChoice.getInputStream();
+        try {
+            int zLevel = zChoice.getLevel();
+            if ( zLevel == CompressionPolicy.STORED ) {
+                StoredEntry zStored = new StoredEntry( pName ).store( zInputStream );
+                zEvent.commit( STORE_PHASE, pName, zLevel, zStored.getResult().getSize(), zStored.getResult().getCompressedSize() );
+                return new InFlight( zStored, System.nanoTime() - zStarted );
+            }
+            CachingDeflater.Deflated zDeflated = mDeflater.deflate( pName, pFile, zMapped, zInputStream, zLevel );
+            CompressionResult zResult = zDeflated.getResult();
+            zEvent.commit( zDeflated.getPhase(), pName, zLevel, zResult.getSize(), zResult.getCompressedSize() );
+            return new InFlight( zDeflated.getPhase(), pName, zDeflated.getData(), System.nanoTime() - zStarted );
+        }
+        finally {
+            Closeables.dispose( zInputStream );
+        }
+    }
+
+    private boolean isCopyable( RelativeFile pFile ) {
+        return (pFile instanceof RawZipRelativeFileIterator.RawZipRelativeFile)
+               && ((RawZipRelativeFileIterator.RawZipRelativeFile) pFile).getEntry().isCopyable();
+    }
+
+    /**
+     * The entries already "in flight" are written first (to keep the order), and then this entry's compressed bytes are copied.
+     */
+    private void addCopied( String pName, RawZipRelativeFileIterator.RawZipRelativeFile pFile ) {
+        while ( !mInFlight.isEmpty() ) {
+            writeNextInFlight();
+        }
+        writeCopied( pName, pFile.getDirectory(), pFile.getEntry() );
+    }
+
+    private void writeCopied( String pName, ZipCentralDirectory pDirectory, RawZipEntry pEntry ) {
+        EntryCompressedEvent zEvent = new EntryCompressedEvent();
+        zEvent.begin();
+        long zStarted = System.nanoTime();
+        try {
+            mZipWriter.addCopied( pName, pEntry, pDirectory.getChannel(), pDirectory.getDataOffset( pEntry ) );
+            entry( COPY_PHASE, pName, System.nanoTime() - zStarted, pEntry.getSize(), pEntry.getCompressedSize() );
+            zEvent.commit( COPY_PHASE, pName, -1, pEntry.getSize(), pEntry.getCompressedSize() );
+        }
+        catch ( IOException e ) {
+            throw new FileSystemException( e );
+        }
+    }
+
+    /**
+     * If the entry matches a Baseline entry, the entries already "in flight" are written first (to keep the order), and then the
+     * Baseline entry's compressed bytes are copied.
+     *
+     * @return false if not reused (still needs to be added)
+     */
+    private boolean addReused( String pName, RelativeFile pFile ) {
+        if ( pFile instanceof StreamedRelativeFile ) {
+            return false; // Can only be read once!
+        }
+        RawZipEntry zReused = mReuse.find( pName, pFile );
+        if ( zReused == null ) {
+            return false;
+        }
+        disposeIfDisposable( pFile );
+        while ( !mInFlight.isEmpty() ) {
+            writeNextInFlight();
+        }
+        writeCopied( pName, mReuse.getDirectory(), zReused );
+        return true;
+    }
+
+    /**
+     * A StreamedRelativeFile can only be read once, so if it could be reused (a Baseline entry has the same name & size, or there is a
+     * DeflateCache), and is not too large, it is buffered (on the calling thread), so its CRC-32 (or cache key) can be checked, and it can
+     * still be added if that does not match.
+     */
+    private RelativeFile bufferIfReusable( RelativeFile pFile ) {
+        long zSize = knownSize( pFile );
+        if ( !(pFile instanceof StreamedRelativeFile) || (zSize > MAX_BUFFERED_ENTRY_BYTES) ) {
+            return pFile;
+        }
+        boolean zCandidate = mReuse.isCandidate( Paths.forwardSlash( pFile.getRelativeFilePath() ), pFile );
+        if ( !zCandidate && !mDeflater.isCaching() ) {
+            return pFile;
+        }
+        long zStarted = System.nanoTime();
+        try {
+            return ((StreamedRelativeFile) pFile).buffer( mSlabPool );
+        }
+        finally {
+            mReuse.getPhase().record( System.nanoTime() - zStarted, zSize, 0 );
+        }
+    }
+
+    private boolean isLarge( RelativeFile pFile ) {
+        return (mLargeFileBytes != 0) && (knownSize( pFile ) >= mLargeFileBytes);
+    }
+
+    private static boolean isZip64( RelativeFile pFile ) {
+        return ZipWriter.isZip64Size( knownSize( pFile ) );
+    }
+
+    /**
+     * @return -1 if not known
+     */
+    private static long knownSize( RelativeFile pFile ) {
+        return SizedRelativeFile.sizeOf( pFile );
+    }
+
+    /**
+     * The entries already "in flight" are written first (to keep the order), and then the chunks of this entry use the worker pool
+     * (unless it is to be Stored).
+     */
+    private void addChunked( String pName, RelativeFile pFile ) {
+        while ( !mInFlight.isEmpty() ) {
+            writeNextInFlight();
+        }
+        EntryCompressedEvent zEvent = new EntryCompressedEvent();
+        zEvent.begin();
+        long zStarted = System.nanoTime();
+        MappedFile zMapped = mapped( pFile );
+        CompressionPolicy.Choice zChoice = mLevels.choose( pName, pFile, zMapped );
+        InputStream zInputStream = zChoice.getInputStream();
+        try {
+            int zLevel = zChoice.getLevel();
+            if ( zLevel == CompressionPolicy.STORED ) {
+                added( STORE_PHASE, pName, zLevel, zStarted, zEvent, mZipWriter.addStored( pName, zInputStream, knownSize( pFile ) ) );
+            } else {
+                ChunkedDeflate zChunked = (zMapped != null) ? new ChunkedDeflate( zMapped, mExecutor, mMaxInFlight, zLevel )
+                                                            : new ChunkedDeflate( zInputStream, mExecutor, mMaxInFlight, zLevel );
+                added( DEFLATE_PHASE, pName, zLevel, zStarted, zEvent, mZipWriter.addDeflated( pName, zChunked, isZip64( pFile ) ) );
+            }
+        }
+        catch ( IOException e ) {
+            throw new FileSystemException( e );
+        }
+        finally {
+            Closeables.dispose( zInputStream );
+            disposeIfDisposable( pFile );
+        }
+    }
+
+    /**
+     * @return null unless pFile is a local file of (a known size of) at least MIN_MAPPED_BYTES.
+     */
+    private static MappedFile mapped( RelativeFile pFile ) {
+        if ( !(pFile instanceof LocalRelativeFile) || (knownSize( pFile ) < MIN_MAPPED_BYTES) ) {
+            return null;
+        }
+        try {
+            return new MappedFile( ((LocalRelativeFile) pFile).getFile() );
+        }
+        catch ( IOException e ) {
+            throw new FileSystemException( e );
+        }
+    }
+
+    private static void disposeIfDisposable( RelativeFile pFile ) {
+        if ( pFile instanceof Disposable ) {
+            ((Disposable) pFile).dispose();
+        }
+    }
+
+    /**
+     * Called on the worker pool, so that if the Zip is abandoned (see dispose) the entries already deflated into memory (or from the
+     * DeflateCache, which hold the cache file open) are disposed.
+     */
+    private InFlight completed( InFlight pInFlight ) {
+        synchronized ( mUnwritten ) {
+            if ( !mAbandoned ) {
+                mUnwritten.add( pInFlight );
+                return pInFlight;
+            }
+        }
+        pInFlight.dispose();
+        return pInFlight;
+    }
+
+    private void writeNextInFlight() {
+        InFlight zInFlight = awaitNextInFlight();
+        synchronized ( mUnwritten ) {
+            mUnwritten.remove( zInFlight );
+        }
+        writeInFlight( zInFlight );
+    }
+
+    private void writeInFlight( InFlight pInFlight ) {
+        if ( pInFlight.mReused != null ) {
+            writeCopied( pInFlight.mName, mReuse.getDirectory(), pInFlight.mReused );
+            return;
+        }
+        long zStarted = System.nanoTime();
+        try {
+            CompressionResult zResult = (pInFlight.mStored != null) ? mZipWriter.addStored( pInFlight.mStored )
+                                                                    : mZipWriter.addDeflated( pInFlight.mName, pInFlight.mDeflated );
+            mMetrics.phase( WRITE_PHASE ).record( System.nanoTime() - zStarted, zResult.getSize(), zResult.getCompressedSize() );
+            entry( pInFlight.mPhase, pInFlight.mName, pInFlight.mNanos, zResult.getSize(), zResult.getCompressedSize() );
+        }
+        catch ( IOException e ) {
+            throw new FileSystemException( e );
+        }
+        finally {
+            pInFlight.dispose();
+        }
+    }
+
+    private InFlight awaitNextInFlight() {
+        try {
+            return mInFlight.removeFirst().get();
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "Interrupted while Deflating", e );
+        }
+        catch ( ExecutionException e ) {
+            Throwable zCause = e.getCause();
+            if ( zCause instanceof RuntimeException ) {
+                throw (RuntimeException) zCause;
+            }
+            if ( zCause instanceof Error ) {
+                throw (Error) zCause;
+            }
+            throw new FileSystemException( zCause );
+        }
+    }
+
+    @Override
+    public void close()
+            throws IOException {
+        try {
+            while ( !mInFlight.isEmpty() ) {
+                writeNextInFlight();
+            }
+        }
+        finally {
+            if ( mExecutor != null ) {
+                mExecutor.shutdownNow();
+            }
+            EntryDeflater.disposeForCurrentThread();
+            mProgress.close();
+        }
+        ZipFinalizedEvent zEvent = new ZipFinalizedEvent();
+        zEvent.begin();
+        long zStarted = System.nanoTime();
+        mZipWriter.close();
+        mMetrics.phase( FINISH_PHASE ).record( System.nanoTime() - zStarted, 0, 0 );
+        zEvent.commit( mZipFile.getPath(), false, mZipWriter.getEntryCount(), mZipWriter.getTotalSize(), mZipWriter.getPosition() );
+        mReuse.report( mConsole, mZipWriter.getEntryCount() );
+        mReuse.close();
+        mLevels.report( mConsole );
+        mDeflater.report( mConsole );
+        mDeflater.close();
+        zEvent = new ZipFinalizedEvent();
+        zEvent.begin();
+        zStarted = System.nanoTime();
+        FileUtils.rollIn( FileUtils.asNewFile( mZipFile ), mZipFile, FileUtils.asBackupFile( mZipFile ) );
+        mRolledIn = true;
+        mMetrics.phase( ROLL_IN_PHASE ).record( System.nanoTime() - zStarted, 0, mZipFile.length() );
+        zEvent.commit( mZipFile.getPath(), true, mZipWriter.getEntryCount(), mZipWriter.getTotalSize(), mZipFile.length() );
+    }
+
+    /**
+     * Unless closed (i.e. the Zip was "rolled in"), e.g. after a failure, abandon the Zip: the entries "in flight" are dropped, the worker
+     * pool is stopped (the entries it already completed are disposed), and the (partial) ".new" file is deleted (any existing Zip is left as is).
+     */
+    @Override
+    public void dispose() {
+        if ( mRolledIn ) {
+            return;
+        }
+        mRolledIn = true; // Only once
+        if ( mExecutor != null ) {
+            mExecutor.shutdownNow();
+        }
+        mInFlight.clear();
+        synchronized ( mUnwritten ) {
+            mAbandoned = true;
+            for ( InFlight zInFlight : mUnwritten ) {
+                zInFlight.dispose();
+            }
+            mUnwritten.clear();
+        }
+        EntryDeflater.disposeForCurrentThread();
+        mProgress.close();
+        Closeables.dispose( mZipOutput );
+        Closeables.dispose( mReuse );
+        mDeflater.close();
+        FileUtils.deleteIfExists( FileUtils.asNewFile( mZipFile ) );
+    }
+
+    /**
+     * An entry "in flight", either Deflated (into memory, or from the DeflateCache), Stored (into memory), or to be copied from the
+     * Baseline.
+     */
+    private static class InFlight implements Disposable {
+        private final String mPhase;
+        private final String mName;
+        private final DeflatedData mDeflated;
+        private final StoredEntry mStored;
+        private final RawZipEntry mReused;
+        private final long mNanos;
+
+        private InFlight( String pPhase, String pName, DeflatedData pDeflated, long pNanos ) {
+            mPhase = pPhase;
+            mName = pName;
+            mDeflated = pDeflated;
+            mStored = null;
+            mReused = null;
+            mNanos = pNanos;
+        }
+
+        private InFlight( StoredEntry pStored, long pNanos ) {
+            mPhase = STORE_PHASE;
+            mName = pStored.getName();
+            mDeflated = null;
+            mStored = pStored;
+            mReused = null;
+            mNanos = pNanos;
+        }
+
+        private InFlight( String pName, RawZipEntry pReused ) {
+            mPhase = COPY_PHASE;
+            mName = pName;
+            mDeflated = null;
+            mStored = null;
+            mReused = pReused;
+            mNanos = 0;
+        }
+
+        @Override
+        public void dispose() {
+            if ( mDeflated instanceof Disposable ) {
+                ((Disposable) mDeflated).dispose();
+            }
+        }
+    }
+
+    /**
+     * Daemon threads (so a failure on the main thread does not leave the JVM running), each w/ its own EntryDeflater.
+     */
+    private static class DeflaterThreadFactory implements ThreadFactory {
+        private int mThreadNumber;
+
+        @Override
+        public synchronized Thread newThread( final Runnable pRunnable ) {
+            Thread zThread = new Thread( new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        pRunnable.run();
+                    }
+                    finally {
+                        EntryDeflater.disposeForCurrentThread();
+                    }
+                }
+            }, "Deflater-" + (++mThreadNumber) );
+            zThread.setDaemon( true );
+            return zThread;
+        }
+    }
+}
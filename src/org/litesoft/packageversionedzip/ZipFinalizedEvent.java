@@ -0,0 +1,42 @@
+package org.litesoft.packageversionedzip;
+
+import jdk.jfr.*;
+
+/**
+ * Java Flight Recorder event: the Zip finalized (the Central Directory written, see ZipWriter.close), or rolled in (see FileUtils.rollIn).
+ */
+@Name("org.litesoft.ZipFinalized")
+@Label("Zip Finalized")
+@Category({"PackageVersionedZip", "Zip"})
+@StackTrace(false)
+public class ZipFinalizedEvent extends Event {
+    @Label("Zip")
+    String zip;
+
+    @Label("Rolled In")
+    boolean rolledIn;
+
+    @Label("Entries")
+    int entries;
+
+    @Label("Size")
+    @Description("The total (uncompressed) size of the entries")
+    @DataAmount
+    long size;
+
+    @Label("Zip Size")
+    @DataAmount
+    long zipSize;
+
+    public void commit( String pZip, boolean pRolledIn, int pEntries, long pSize, long pZipSize ) {
+        end();
+        if ( shouldCommit() ) {
+            zip = pZip;
+            rolledIn = pRolledIn;
+            entries = pEntries;
+            size = pSize;
+            zipSize = pZipSize;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package org.litesoft.packageversionedzip;
+
+import org.litesoft.commonfoundation.exceptions.*;
+import org.litesoft.server.file.*;
+import org.litesoft.server.util.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+ * The (buffered) OutputStream that a ZipWriter writes to, which tracks the Position (number of bytes written) so that the
+ * offsets of the Local Headers and the Central Directory are known.
+ * <p/>
+ * The bytes are collected in a (large, direct) buffer (see Settings) and written straight to the FileChannel, so a multi-GB Zip takes
+ * few (large) writes.  Writes that are larger than what is left of the buffer (e.g. an entry deflated into memory, see write( ByteBuffer... ))
+ * are not copied into the buffer, but written together with it (the pending Local Header, etc.) in a single gathering write.
+ * <p/>
+ * Bytes can also be copied directly from another file (see transferFrom), which bypasses the buffer (and, where the OS supports it,
+ * the Java heap entirely).
+ * <p/>
+ * How often the bytes are forced to the storage device is the Fsync policy.
+ */
+public class ZipOutput extends GatheringOutputStream {
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024; // 1MB
+    public static final long PERIODIC_FSYNC_BYTES = 1024L * 1024 * 256; // 256MB
+
+    private static final int MAX_GATHERED = 16;
+
+    /**
+     * When the written bytes are forced (FileChannel.force) to the storage device: None (left to the OS), on Close (before the Zip is
+     * "rolled in"), or Periodic (every PERIODIC_FSYNC_BYTES, and on Close), which keeps the OS from building up GBs of dirty pages to
+     * write at the end.
+     */
+    public enum Fsync {
+        None, Close, Periodic
+    }
+
+    public static class Settings {
+        public static final Settings DEFAULT = new Settings( DEFAULT_BUFFER_SIZE, Fsync.None );
+
+        private final int mBufferSize;
+        private final Fsync mFsync;
+
+        public Settings( int pBufferSize, Fsync pFsync ) {
+            mBufferSize = pBufferSize;
+            mFsync = pFsync;
+        }
+
+        public int getBufferSize() {
+            return mBufferSize;
+        }
+
+        public Fsync getFsync() {
+            return mFsync;
+        }
+    }
+
+    private final RandomAccessFile mFile;
+    private final FileChannel mChannel;
+    private final ByteBuffer mBuffer;
+    private final Fsync mFsync;
+    private long mPosition;
+    private long mNextFsyncPosition = PERIODIC_FSYNC_BYTES;
+    private boolean mClosed;
+
+    public ZipOutput( File pFile ) {
+        this( pFile, Settings.DEFAULT );
+    }
+
+    public ZipOutput( File pFile, Settings pSettings ) {
+        try {
+            mFile = new RandomAccessFile( FileUtils.insureParent( pFile ), "rw" );
+            mFile.setLength( 0 ); // Truncate any existing file
+        }
+        catch ( IOException e ) {
+            throw new FileSystemException( e );
+        }
+        mChannel = mFile.getChannel();
+        mBuffer = ByteBuffer.allocateDirect( pSettings.getBufferSize() ).order( ByteOrder.LITTLE_ENDIAN );
+        mFsync = pSettings.getFsync();
+    }
+
+    public long getPosition() {
+        return mPosition;
+    }
+
+    @Override
+    public void write( int pByte )
+            throws IOException {
+        if ( !mBuffer.hasRemaining() ) {
+            flush();
+        }
+        mBuffer.put( (byte) pByte );
+        mPosition++;
+        fsyncIfDue();
+    }
+
+    @Override
+    public void write( byte[] pBytes, int pOffset, int pLength )
+            throws IOException {
+        write( ByteBuffer.wrap( pBytes, pOffset, pLength ) );
+    }
+
+    /**
+     * Write the remaining bytes of the pBuffers (their positions are advanced), either copied into the buffer (if they fit) or together
+     * with it in a single gathering write.
+     */
+    @Override
+    public void write( ByteBuffer... pBuffers )
+            throws IOException {
+        long zLength = 0;
+        for ( ByteBuffer zBuffer : pBuffers ) {
+            zLength += zBuffer.remaining();
+        }
+        if ( zLength <= mBuffer.remaining() ) {
+            for ( ByteBuffer zBuffer : pBuffers ) {
+                mBuffer.put( zBuffer );
+            }
+        } else {
+            ByteBuffer[] zBuffers = new ByteBuffer[pBuffers.length + 1];
+            zBuffers[0] = mBuffer.flip();
+            System.arraycopy( pBuffers, 0, zBuffers, 1, pBuffers.length );
+            writeFully( zBuffers, mBuffer.remaining() + zLength );
+            mBuffer.clear();
+        }
+        mPosition += zLength;
+        fsyncIfDue();
+    }
+
+    /**
+     * At most MAX_GATHERED buffers are written at a time, as each (non direct) one is copied into a temporary direct buffer (which the
+     * JDK caches per thread) for the write.
+     */
+    private void writeFully( ByteBuffer[] pBuffers, long pLength )
+            throws IOException {
+        int zOffset = 0;
+        for ( long zWritten = 0; zWritten < pLength; ) {
+            while ( !pBuffers[zOffset].hasRemaining() ) {
+                zOffset++;
+            }
+            zWritten += mChannel.write( pBuffers, zOffset, Math.min( MAX_GATHERED, pBuffers.length - zOffset ) );
+        }
+    }
+
+    /**
+     * Copy (as is) pCount bytes of the pSource file starting at pSourcePosition (the pSource's own position is not used or changed).
+     */
+    public void transferFrom( FileChannel pSource, long pSourcePosition, long pCount )
+            throws IOException {
+        flush();
+        for ( long zTransferred = 0; zTransferred < pCount; ) {
+            long zCount = pSource.transferTo( pSourcePosition + zTransferred, pCount - zTransferred, mChannel );
+            if ( zCount <= 0 ) {
+                if ( pSourcePosition + zTransferred >= pSource.size() ) {
+                    throw new EOFException( "Unexpected End-Of-File (at " + (pSourcePosition + zTransferred) + ") while transferring" );
+                }
+                continue;
+            }
+            zTransferred += zCount;
+        }
+        mPosition += pCount;
+        fsyncIfDue();
+    }
+
+    /**
+     * Overwrite (w/o changing the Position) the 4 (little-endian) bytes at pPosition, which must have already been written (they are
+     * patched in the buffer if they are still there).
+     */
+    public void patchInt( long pPosition, int pValue )
+            throws IOException {
+        long zBufferedFrom = mPosition - mBuffer.position();
+        if ( pPosition >= zBufferedFrom ) {
+            mBuffer.putInt( (int) (pPosition - zBufferedFrom), pValue );
+            return;
+        }
+        flush();
+        ByteBuffer zBytes = ByteBuffer.allocate( 4 ).order( ByteOrder.LITTLE_ENDIAN );
+        zBytes.putInt( pValue ).flip();
+        while ( zBytes.hasRemaining() ) {
+            mChannel.write( zBytes, pPosition + zBytes.position() );
+        }
+    }
+
+    private void fsyncIfDue()
+            throws IOException {
+        if ( (mFsync == Fsync.Periodic) && (mPosition >= mNextFsyncPosition) ) {
+            flush();
+            mChannel.force( false );
+            mNextFsyncPosition = mPosition + PERIODIC_FSYNC_BYTES;
+        }
+    }
+
+    /**
+     * Write the buffered bytes to the FileChannel (which does not force them to the storage device, see Fsync).
+     */
+    @Override
+    public void flush()
+            throws IOException {
+        mBuffer.flip();
+        while ( mBuffer.hasRemaining() ) {
+            mChannel.write( mBuffer );
+        }
+        mBuffer.clear();
+    }
+
+    /**
+     * Flush, and (unless the Fsync is None) force the file to the storage device.
+     */
+    @Override
+    public void close()
+            throws IOException {
+        if ( mClosed ) {
+            return;
+        }
+        mClosed = true;
+        try {
+            flush();
+            if ( mFsync != Fsync.None ) {
+                mChannel.force( true );
+            }
+        }
+        finally {
+            Closeables.dispose( mFile );
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package org.litesoft.packageversionedzip;
+
+import org.litesoft.commonfoundation.typeutils.*;
+import org.litesoft.server.file.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Writes the Zip file structure (Local Headers, entry data, Data Descriptors, the Central Directory, and the End records - including
+ * the Zip64 variants when needed) to a ZipOutput.
+ * <p/>
+ * Unlike ZipOutputStream, the entry data can be supplied already compressed, so entries can be deflated elsewhere (e.g. on other
+ * threads) and then written here in order.  Whether the data is deflated "in line" or supplied already deflated the bytes written
+ * are identical (the layout mirrors ZipOutputStream's: the Data Descriptor follows the data, names are UTF-8, and all entries share the
+ * same timestamp), so the resulting file only depends on the entries and their order.
+ * <p/>
+ * Entries from another Zip can also be copied "raw" (see addCopied), in which case the CRC & sizes are already known, so they go in
+ * the Local Header (no Data Descriptor) and the compressed bytes are copied as is.
+ * <p/>
+ * Stored entries (see addStored) also have no Data Descriptor (many readers need the sizes of a Stored entry up front), so either the
+ * data (& CRC) is already in memory, or the size is known and the CRC-32 is patched into the Local Header after the data is written.
+ */
+public class ZipWriter implements Closeable {
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    private static final int LOCAL_HEADER_SIG = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIG = 0x08074b50;
+    private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+    private static final int ZIP64_END_SIG = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+    private static final int END_SIG = 0x06054b50;
+
+    private static final int VERSION_STORED = 10;
+    private static final int VERSION_DEFLATED = 20;
+    private static final int VERSION_ZIP64 = 45;
+
+    private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+    private static final int FLAG_UTF_8 = 0x0800;
+
+    private static final int MAX_NAME_LENGTH = 0xFFFF;
+
+    private static final int LOCAL_HEADER_CRC_OFFSET = 14;
+
+    private final ZipOutput mOutput;
+    private final int mDosTime;
+    private final List<Entry> mEntries = Lists.newArrayList();
+    private long mTotalSize;
+    private final ByteBuffer mScratch = ByteBuffer.allocate( 128 + MAX_NAME_LENGTH ).order( ByteOrder.LITTLE_ENDIAN );
+
+    public ZipWriter( ZipOutput pOutput, long pTimeMillis ) {
+        mOutput = pOutput;
+        mDosTime = toDosTime( pTimeMillis );
+    }
+
+    public int getEntryCount() {
+        return mEntries.size();
+    }
+
+    /**
+     * @return the total (uncompressed) size of the entries written so far.
+     */
+    public long getTotalSize() {
+        return mTotalSize;
+    }
+
+    /**
+     * @return the number of bytes written (to the ZipOutput) so far.
+     */
+    public long getPosition() {
+        return mOutput.getPosition();
+    }
+
+    /**
+     * Deflate the data from the InputStream directly into the Zip.
+     */
+    public CompressionResult addDeflated( String pName, InputStream pInputStream, EntryDeflater pDeflater )
+            throws IOException {
+        return addDeflated( pName, pInputStream, pDeflater, false );
+    }
+
+    /**
+     * Deflate the data from the InputStream directly into the Zip.
+     *
+     * @param pZip64 true if the data is known to be large (see isZip64Size), so the Local Header is marked as Zip64 (for the readers that
+     *               need that to know that the Data Descriptor has 64-bit sizes).
+     */
+    public CompressionResult addDeflated( String pName, final InputStream pInputStream, final EntryDeflater pDeflater, boolean pZip64 )
+            throws IOException {
+        return addDeflated( pName, new DeflatedData() {
+            @Override
+            public CompressionResult writeDeflatedTo( GatheringOutputStream pOutputStream )
+                    throws IOException {
+                return pDeflater.deflate( pInputStream, pOutputStream );
+            }
+        }, pZip64 );
+    }
+
+    /**
+     * Deflate the (memory mapped) data directly into the Zip.
+     *
+     * @param pZip64 see addDeflated( String, InputStream, EntryDeflater, boolean )
+     */
+    public CompressionResult addDeflated( String pName, final MappedFile pMappedFile, final EntryDeflater pDeflater, boolean pZip64 )
+            throws IOException {
+        return addDeflated( pName, new DeflatedData() {
+            @Override
+            public CompressionResult writeDeflatedTo( GatheringOutputStream pOutputStream )
+                    throws IOException {
+                return pDeflater.deflate( pMappedFile, pOutputStream );
+            }
+        }, pZip64 );
+    }
+
+    /**
+     * Write an entry that was already deflated.
+     */
+    public CompressionResult addDeflated( DeflatedEntry pDeflated )
+            throws IOException {
+        return addDeflated( pDeflated.getName(), pDeflated );
+    }
+
+    public CompressionResult addDeflated( String pName, DeflatedData pData )
+            throws IOException {
+        return addDeflated( pName, pData, false );
+    }
+
+    /**
+     * @param pZip64 see addDeflated( String, InputStream, EntryDeflater, boolean )
+     */
+    public CompressionResult addDeflated( String pName, DeflatedData pData, boolean pZip64 )
+            throws IOException {
+        Entry zEntry = startDeflated( pName, pZip64 );
+        CompressionResult zResult = pData.writeDeflatedTo( mOutput );
+        finishDeflated( zEntry, zResult );
+        return zResult;
+    }
+
+    /**
+     * Copy an entry's compressed bytes (Stored or Deflated) as is from another Zip (see ZipCentralDirectory), starting at pDataOffset.
+     */
+    public void addCopied( String pName, RawZipEntry pRawEntry, FileChannel pSource, long pDataOffset )
+            throws IOException {
+        if ( !pRawEntry.isCopyable() ) {
+            throw new IllegalArgumentException( "Not a copyable entry: " + pRawEntry );
+        }
+        Entry zEntry = new Entry( pName, mOutput.getPosition(), FLAG_UTF_8, pRawEntry.getMethod() );
+        zEntry.mCRC = pRawEntry.getCRC();
+        zEntry.mSize = pRawEntry.getSize();
+        zEntry.mCompressedSize = pRawEntry.getCompressedSize();
+        writeLocalHeader( zEntry );
+        mOutput.transferFrom( pSource, pDataOffset, zEntry.mCompressedSize );
+        added( zEntry );
+    }
+
+    /**
+     * Store (no compression) the pSize bytes of data from the InputStream directly into the Zip, patching the CRC-32 (computed as the
+     * data is written) into the Local Header afterwards.
+     */
+    public CompressionResult addStored( String pName, InputStream pInputStream, long pSize )
+            throws IOException {
+        Entry zEntry = new Entry( pName, mOutput.getPosition(), FLAG_UTF_8, ZipEntry.STORED );
+        zEntry.mSize = zEntry.mCompressedSize = pSize;
+        writeLocalHeader( zEntry );
+        CRC32 zCRC = new CRC32();
+        byte[] zBuffer = new byte[EntryDeflater.BUFFER_SIZE];
+        for ( long zRemaining = pSize; zRemaining > 0; ) {
+            int zRead = pInputStream.read( zBuffer, 0, (int) Math.min( zBuffer.length, zRemaining ) );
+            if ( zRead == -1 ) {
+                throw new EOFException( "Unexpected End-Of-File (" + zRemaining + " bytes short) while Storing: " + pName );
+            }
+            zCRC.update( zBuffer, 0, zRead );
+            mOutput.write( zBuffer, 0, zRead );
+            zRemaining -= zRead;
+        }
+        if ( pInputStream.read() != -1 ) {
+            throw new IOException( "More than the expected " + pSize + " bytes while Storing: " + pName );
+        }
+        mOutput.patchInt( zEntry.mOffset + LOCAL_HEADER_CRC_OFFSET, (int) (zEntry.mCRC = zCRC.getValue()) );
+        added( zEntry );
+        return new CompressionResult( zEntry.mCRC, pSize, pSize );
+    }
+
+    public CompressionResult addStored( StoredEntry pStored )
+            throws IOException {
+        CompressionResult zResult = pStored.getResult();
+        Entry zEntry = new Entry( pStored.getName(), mOutput.getPosition(), FLAG_UTF_8, ZipEntry.STORED );
+        zEntry.mCRC = zResult.getCRC();
+        zEntry.mSize = zEntry.mCompressedSize = zResult.getSize();
+        writeLocalHeader( zEntry );
+        pStored.writeTo( mOutput );
+        added( zEntry );
+        return zResult;
+    }
+
+    /**
+     * @return true if an entry of pSize (uncompressed) bytes needs the Zip64 format.
+     */
+    public static boolean isZip64Size( long pSize ) {
+        return (pSize >= ZIP64_MAGIC);
+    }
+
+    private Entry startDeflated( String pName, boolean pZip64 )
+            throws IOException {
+        Entry zEntry = new Entry( pName, mOutput.getPosition(), FLAG_DATA_DESCRIPTOR | FLAG_UTF_8, ZipEntry.DEFLATED );
+        zEntry.mZip64 = pZip64;
+        writeLocalHeader( zEntry );
+        return zEntry;
+    }
+
+    private void finishDeflated( Entry pEntry, CompressionResult pResult )
+            throws IOException {
+        pEntry.mCRC = pResult.getCRC();
+        pEntry.mSize = pResult.getSize();
+        pEntry.mCompressedSize = pResult.getCompressedSize();
+        writeDataDescriptor( pEntry );
+        added( pEntry );
+    }
+
+    private void added( Entry pEntry ) {
+        mEntries.add( pEntry );
+        mTotalSize += pEntry.mSize;
+    }
+
+    /**
+     * With a Data Descriptor the CRC & sizes are 0 (unless Zip64, in which case the sizes are 0xFFFFFFFF and the Zip64 extra's are 0).
+     */
+    private void writeLocalHeader( Entry pEntry )
+            throws IOException {
+        boolean zDataDescriptor = pEntry.hasDataDescriptor();
+        boolean zZip64 = pEntry.isZip64Sized();
+        mScratch.clear();
+        mScratch.putInt( LOCAL_HEADER_SIG );
+        mScratch.putShort( (short) (zZip64 ? VERSION_ZIP64 : pEntry.getVersion()) );
+        mScratch.putShort( (short) pEntry.mFlags );
+        mScratch.putShort( (short) pEntry.mMethod );
+        mScratch.putInt( mDosTime );
+        mScratch.putInt( zDataDescriptor ? 0 : (int) pEntry.mCRC ); // CRC - in Data Descriptor
+        if ( zZip64 ) {
+            mScratch.putInt( (int) ZIP64_MAGIC );
+            mScratch.putInt( (int) ZIP64_MAGIC );
+        } else {
+            mScratch.putInt( zDataDescriptor ? 0 : (int) pEntry.mCompressedSize ); // Compressed Size - in Data Descriptor
+            mScratch.putInt( zDataDescriptor ? 0 : (int) pEntry.mSize ); // Size - in Data Descriptor
+        }
+        mScratch.putShort( (short) pEntry.mName.length );
+        mScratch.putShort( (short) (zZip64 ? 20 : 0) ); // Extra Length
+        mScratch.put( pEntry.mName );
+        if ( zZip64 ) {
+            mScratch.putShort( (short) ZIP64_EXTRA_ID );
+            mScratch.putShort( (short) 16 );
+            mScratch.putLong( zDataDescriptor ? 0 : pEntry.mSize );
+            mScratch.putLong( zDataDescriptor ? 0 : pEntry.mCompressedSize );
+        }
+        flushScratch();
+    }
+
+    private void writeDataDescriptor( Entry pEntry )
+            throws IOException {
+        mScratch.clear();
+        mScratch.putInt( DATA_DESCRIPTOR_SIG );
+        mScratch.putInt( (int) pEntry.mCRC );
+        if ( pEntry.isZip64Sized() ) {
+            mScratch.putLong( pEntry.mCompressedSize );
+            mScratch.putLong( pEntry.mSize );
+        } else {
+            mScratch.putInt( (int) pEntry.mCompressedSize );
+            mScratch.putInt( (int) pEntry.mSize );
+        }
+        flushScratch();
+    }
+
+    private void writeCentralHeader( Entry pEntry )
+            throws IOException {
+        boolean zZip64Size = (pEntry.mSize >= ZIP64_MAGIC);
+        boolean zZip64CompressedSize = (pEntry.mCompressedSize >= ZIP64_MAGIC);
+        boolean zZip64Offset = (pEntry.mOffset >= ZIP64_MAGIC);
+        int zExtraLength = (zZip64Size ? 8 : 0) + (zZip64CompressedSize ? 8 : 0) + (zZip64Offset ? 8 : 0);
+        if ( zExtraLength != 0 ) {
+            zExtraLength += 4; // Header ID & Data Size
+        }
+        int zVersion = (zExtraLength != 0) ? VERSION_ZIP64 : pEntry.getVersion();
+
+        mScratch.clear();
+        mScratch.putInt( CENTRAL_HEADER_SIG );
+        mScratch.putShort( (short) zVersion ); // Made By
+        mScratch.putShort( (short) zVersion ); // Needed
+        mScratch.putShort( (short) pEntry.mFlags );
+        mScratch.putShort( (short) pEntry.mMethod );
+        mScratch.putInt( mDosTime );
+        mScratch.putInt( (int) pEntry.mCRC );
+        mScratch.putInt( (int) (zZip64CompressedSize ? ZIP64_MAGIC : pEntry.mCompressedSize) );
+        mScratch.putInt( (int) (zZip64Size ? ZIP64_MAGIC : pEntry.mSize) );
+        mScratch.putShort( (short) pEntry.mName.length );
+        mScratch.putShort( (short) zExtraLength );
+        mScratch.putShort( (short) 0 ); // Comment Length
+        mScratch.putShort( (short) 0 ); // Disk Number Start
+        mScratch.putShort( (short) 0 ); // Internal Attributes
+        mScratch.putInt( 0 ); // External Attributes
+        mScratch.putInt( (int) (zZip64Offset ? ZIP64_MAGIC : pEntry.mOffset) );
+        mScratch.put( pEntry.mName );
+        if ( zExtraLength != 0 ) {
+            mScratch.putShort( (short) ZIP64_EXTRA_ID );
+            mScratch.putShort( (short) (zExtraLength - 4) );
+            if ( zZip64Size ) {
+                mScratch.putLong( pEntry.mSize );
+            }
+            if ( zZip64CompressedSize ) {
+                mScratch.putLong( pEntry.mCompressedSize );
+            }
+            if ( zZip64Offset ) {
+                mScratch.putLong( pEntry.mOffset );
+            }
+        }
+        flushScratch();
+    }
+
+    private void writeEnd( long pCentralOffset, long pCentralLength )
+            throws IOException {
+        int zCount = mEntries.size();
+        mScratch.clear();
+        if ( (zCount >= ZIP64_MAGIC_COUNT) || (pCentralOffset >= ZIP64_MAGIC) || (pCentralLength >= ZIP64_MAGIC) ) {
+            long zZip64EndOffset = mOutput.getPosition();
+            mScratch.putInt( ZIP64_END_SIG );
+            mScratch.putLong( 44 ); // Size of the rest of this record
+            mScratch.putShort( (short) VERSION_ZIP64 ); // Made By
+            mScratch.putShort( (short) VERSION_ZIP64 ); // Needed
+            mScratch.putInt( 0 ); // This Disk
+            mScratch.putInt( 0 ); // Central Directory Disk
+            mScratch.putLong( zCount ); // on this Disk
+            mScratch.putLong( zCount ); // Total
+            mScratch.putLong( pCentralLength );
+            mScratch.putLong( pCentralOffset );
+
+            mScratch.putInt( ZIP64_LOCATOR_SIG );
+            mScratch.putInt( 0 ); // Zip64 End Disk
+            mScratch.putLong( zZip64EndOffset );
+            mScratch.putInt( 1 ); // Total Disks
+        }
+        mScratch.putInt( END_SIG );
+        mScratch.putShort( (short) 0 ); // This Disk
+        mScratch.putShort( (short) 0 ); // Central Directory Disk
+        mScratch.putShort( (short) Math.min( zCount, ZIP64_MAGIC_COUNT ) ); // on this Disk
+        mScratch.putShort( (short) Math.min( zCount, ZIP64_MAGIC_COUNT ) ); // Total
+        mScratch.putInt( (int) Math.min( pCentralLength, ZIP64_MAGIC ) );
+        mScratch.putInt( (int) Math.min( pCentralOffset, ZIP64_MAGIC ) );
+        mScratch.putShort( (short) 0 ); // Comment Length
+        flushScratch();
+    }
+
+    private void flushScratch()
+            throws IOException {
+        mOutput.write( mScratch.array(), 0, mScratch.position() );
+    }
+
+    @Override
+    public void close()
+            throws IOException {
+        long zCentralOffset = mOutput.getPosition();
+        for ( Entry zEntry : mEntries ) {
+            writeCentralHeader( zEntry );
+        }
+        writeEnd( zCentralOffset, mOutput.getPosition() - zCentralOffset );
+        mOutput.close();
+    }
+
+    private static int toDosTime( long pTimeMillis ) {
+        Calendar zCalendar = Calendar.getInstance();
+        zCalendar.setTimeInMillis( pTimeMillis );
+        int zYear = zCalendar.get( Calendar.YEAR );
+        if ( zYear < 1980 ) {
+            return (1 << 21) | (1 << 16); // 1980-01-01 00:00:00
+        }
+        return ((zYear - 1980) << 25)
+               | ((zCalendar.get( Calendar.MONTH ) + 1) << 21)
+               | (zCalendar.get( Calendar.DAY_OF_MONTH ) << 16)
+               | (zCalendar.get( Calendar.HOUR_OF_DAY ) << 11)
+               | (zCalendar.get( Calendar.MINUTE ) << 5)
+               | (zCalendar.get( Calendar.SECOND ) >> 1);
+    }
+
+    private static class Entry {
+        private final byte[] mName;
+        private final long mOffset;
+        private final int mFlags;
+        private final int mMethod;
+        private boolean mZip64;
+        private long mCRC;
+        private long mSize;
+        private long mCompressedSize;
+
+        private Entry( String pName, long pOffset, int pFlags, int pMethod ) {
+            if ( (mName = pName.getBytes( UTF_8 )).length > MAX_NAME_LENGTH ) {
+                throw new IllegalArgumentException( "Entry Name too long (" + mName.length + " bytes): " + pName );
+            }
+            mOffset = pOffset;
+            mFlags = pFlags;
+            mMethod = pMethod;
+        }
+
+        private boolean hasDataDescriptor() {
+            return (mFlags & FLAG_DATA_DESCRIPTOR) != 0;
+        }
+
+        private int getVersion() {
+            return (mMethod == ZipEntry.STORED) ? VERSION_STORED : VERSION_DEFLATED;
+        }
+
+        private boolean isZip64Sized() {
+            return mZip64 || (mSize >= ZIP64_MAGIC) || (mCompressedSize >= ZIP64_MAGIC);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.litesoft.server.file;
+
+import org.litesoft.commonfoundation.base.*;
+import org.litesoft.commonfoundation.exceptions.*;
+import org.litesoft.server.util.*;
+
+import java.io.*;
+
+/**
+ * A RelativeFile whose contents are buffered (see BufferedBytes), so it can be opened any number of times until disposed (i.e. once
+ * written), which reclaims the buffer.
+ */
+public class BufferedRelativeFile extends SizedRelativeFile implements Disposable {
+    private final BufferedBytes mBytes;
+
+    public BufferedRelativeFile( String pRelativeFilePath, BufferedBytes pBytes ) {
+        super( pRelativeFilePath, pBytes.getLength() );
+        mBytes = pBytes;
+    }
+
+    @Override
+    public InputStream open()
+            throws FileSystemException {
+        return mBytes.open();
+    }
+
+    @Override
+    public void dispose() {
+        mBytes.dispose();
+    }
+}
@@ -0,0 +1,139 @@
+package org.litesoft.server.file;
+
+import org.litesoft.commonfoundation.base.*;
+import org.litesoft.commonfoundation.exceptions.*;
+import org.litesoft.commonfoundation.typeutils.*;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * The files (recursively) of a directory as LocalRelativeFile(s), so their sizes (and local Files) are available.
+ * <p/>
+ * The directories are listed (and their entries' attributes read, once each) concurrently on a ForkJoinPool of ScanThreads, which
+ * matters for the huge trees and the network file systems where the walk itself is slow; the scanning starts on construction, and
+ * runs ahead of the iterating (which only waits for a directory that has not been scanned yet).
+ * <p/>
+ * Like the RecursiveRelativeFileIterator, each directory's files come before its sub-directories', but (regardless of the scanning order,
+ * or the file system's listing order) the files and the sub-directories are each sorted by name, so the order is deterministic.
+ * <p/>
+ * Each LocalRelativeFile has the size & last modified time read when scanned, so they need not be read again.
+ */
+public class DirRelativeFileIterator extends RelativeFileIterator {
+    public static final int DEFAULT_SCAN_THREADS = 8;
+
+    private static final LocalRelativeFile[] NO_FILES = new LocalRelativeFile[0];
+
+    private final ForkJoinPool mPool;
+    private final Deque<DirScan> mPending = Lists.newLinkedList(); // Depth first, so a stack
+    private LocalRelativeFile[] mFiles = NO_FILES;
+    private int mNext;
+
+    public DirRelativeFileIterator( File pBaseDir, int pScanThreads ) {
+        File zBaseDir = DirectoryUtils.assertExists( "BaseDir", Confirm.isNotNull( "BaseDir", pBaseDir ) );
+        mPool = new ForkJoinPool( pScanThreads );
+        DirScan zRoot = new DirScan( zBaseDir, "" );
+        mPool.execute( zRoot );
+        mPending.push( zRoot );
+    }
+
+    public DirRelativeFileIterator( File pBaseDir ) {
+        this( pBaseDir, DEFAULT_SCAN_THREADS );
+    }
+
+    @Override
+    public boolean hasNext() {
+        while ( mNext == mFiles.length ) {
+            if ( mPending.isEmpty() ) {
+                return false;
+            }
+            DirScan zScan = mPending.pop();
+            zScan.join(); // Rethrows any scanning failure
+            mFiles = zScan.mFiles;
+            mNext = 0;
+            for ( int i = zScan.mSubDirs.length; --i >= 0; ) {
+                mPending.push( zScan.mSubDirs[i] );
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public RelativeFile next() {
+        if ( !hasNext() ) {
+            return super.next();
+        }
+        LocalRelativeFile zFile = mFiles[mNext];
+        mFiles[mNext++] = null; // Only the ones not yet iterated are kept
+        return zFile;
+    }
+
+    @Override
+    public void dispose() {
+        mPool.shutdownNow();
+        mPending.clear();
+        mFiles = NO_FILES;
+        mNext = 0;
+    }
+
+    /**
+     * Lists a directory, reads its entries' attributes, and forks the scans of its sub-directories (which are joined by the iterating).
+     */
+    private static class DirScan extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final File mDir;
+        private final String mRelativePrefix;
+        private LocalRelativeFile[] mFiles;
+        private DirScan[] mSubDirs;
+
+        private DirScan( File pDir, String pRelativePrefix ) {
+            mDir = pDir;
+            mRelativePrefix = pRelativePrefix;
+        }
+
+        @Override
+        protected void compute() {
+            String[] zNames = ConstrainTo.notNull( mDir.list() );
+            Arrays.sort( zNames );
+            List<LocalRelativeFile> zFiles = Lists.newArrayList();
+            List<DirScan> zSubDirs = Lists.newArrayList();
+            for ( String zName : zNames ) {
+                File zFile = new File( mDir, zName );
+                BasicFileAttributes zAttributes = attributesOf( zFile );
+                if ( zAttributes == null ) {
+                    continue; // Gone since listed
+                }
+                String zRelativePath = Paths.append( mRelativePrefix, zName );
+                if ( zAttributes.isRegularFile() ) {
+                    zFiles.add( new LocalRelativeFile( zRelativePath, zFile, zAttributes.size(), zAttributes.lastModifiedTime().toMillis() ) );
+                } else if ( zAttributes.isDirectory() ) {
+                    DirScan zSubDir = new DirScan( zFile, zRelativePath );
+                    zSubDir.fork();
+                    zSubDirs.add( zSubDir );
+                }
+            }
+            mFiles = zFiles.toArray( new LocalRelativeFile[zFiles.size()] );
+            mSubDirs = zSubDirs.toArray( new DirScan[zSubDirs.size()] );
+        }
+
+        /**
+         * @return null if pFile no longer exists (Symbolic Links are followed, like File.isFile & File.isDirectory do).
+         */
+        private static BasicFileAttributes attributesOf( File pFile ) {
+            try {
+                return Files.readAttributes( pFile.toPath(), BasicFileAttributes.class );
+            }
+            catch ( NoSuchFileException e ) {
+                return null;
+            }
+            catch ( IOException e ) {
+                throw new FileSystemException( "Unable to read the attributes of: " + pFile, e );
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.litesoft.server.file;
+
+import jdk.jfr.*;
+
+/**
+ * Java Flight Recorder event: a TAR entry buffered (see TarGZRelativeFileIterator & SpillManager), in memory or spilled.
+ */
+@Name("org.litesoft.EntryBuffered")
+@Label("Entry Buffered")
+@Category({"PackageVersionedZip", "Source"})
+@StackTrace(false)
+public class EntryBufferedEvent extends Event {
+    @Label("Name")
+    String name;
+
+    @Label("Size")
+    @DataAmount
+    long size;
+
+    @Label("Spilled")
+    boolean spilled;
+
+    public void commit( String pName, long pSize, boolean pSpilled ) {
+        end();
+        if ( shouldCommit() ) {
+            name = pName;
+            size = pSize;
+            spilled = pSpilled;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.litesoft.server.file;
+
+import org.litesoft.commonfoundation.exceptions.*;
+
+import java.io.*;
+
+/**
+ * A RelativeFile that is a local file (BaseDir + RelativeFilePath), w/ its size & last modified time as of when it was found.
+ */
+public class LocalRelativeFile extends SizedRelativeFile {
+    private final File mFile;
+    private final long mLastModified;
+
+    public LocalRelativeFile( File pBaseDir, String pRelativeFilePath ) {
+        this( pRelativeFilePath, new File( pBaseDir, pRelativeFilePath ) );
+    }
+
+    private LocalRelativeFile( String pRelativeFilePath, File pFile ) {
+        this( pRelativeFilePath, pFile, pFile.length(), pFile.lastModified() );
+    }
+
+    /**
+     * For when the attributes are already known (e.g. from a directory scan), so they are not read again.
+     */
+    public LocalRelativeFile( String pRelativeFilePath, File pFile, long pSize, long pLastModified ) {
+        super( pRelativeFilePath, pSize );
+        mFile = pFile;
+        mLastModified = pLastModified;
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * @return the last modified time (millis since the epoch) as of when found.
+     */
+    public long getLastModified() {
+        return mLastModified;
+    }
+
+    @Override
+    public InputStream open()
+            throws FileSystemException {
+        try {
+            return new FileInputStream( mFile );
+        }
+        catch ( FileNotFoundException e ) {
+            throw new FileSystemException( e );
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.litesoft.server.file;
+
+import org.litesoft.server.util.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A (read only) memory mapping of a whole local file, in REGION_SIZE regions (a single mapping is limited to 2GB), so its bytes can be
+ * handed to a Deflater & CRC32 (as ByteBuffers) w/o being copied onto the heap first.
+ * <p/>
+ * The size is that of the file when mapped.  As with any mapping, the file should not be truncated while the mapping is in use, and
+ * the mapping is only released when it is garbage collected (the file itself is closed once mapped).
+ * <p/>
+ * Thread Safe (each slice & InputStream is independent).
+ */
+public class MappedFile {
+    public static final int REGION_SIZE = 1024 * 1024 * 1024; // 1GB - a multiple of EntryDeflater.BUFFER_SIZE & ChunkedDeflate.CHUNK_SIZE
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate( 0 );
+
+    private final File mFile;
+    private final long mSize;
+    private final ByteBuffer[] mRegions;
+
+    public MappedFile( File pFile )
+            throws IOException {
+        mFile = pFile;
+        FileChannel zChannel = FileChannel.open( pFile.toPath(), StandardOpenOption.READ );
+        try {
+            mSize = zChannel.size();
+            mRegions = new ByteBuffer[(int) ((mSize + REGION_SIZE - 1) / REGION_SIZE)];
+            for ( int i = 0; i < mRegions.length; i++ ) {
+                long zOffset = (long) i * REGION_SIZE;
+                mRegions[i] = zChannel.map( FileChannel.MapMode.READ_ONLY, zOffset, Math.min( REGION_SIZE, mSize - zOffset ) );
+            }
+        }
+        finally {
+            Closeables.dispose( zChannel );
+        }
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    public long getSize() {
+        return mSize;
+    }
+
+    /**
+     * @param pLength must not reach across a REGION_SIZE boundary (which is never the case for a pLength that divides the REGION_SIZE,
+     *                at an pOffset that is a multiple of it).
+     *
+     * @return the pLength bytes at pOffset (the ByteBuffer's position is 0 and its limit pLength).
+     */
+    public ByteBuffer slice( long pOffset, int pLength ) {
+        if ( (pOffset < 0) || (pLength < 0) || (pOffset + pLength > mSize) ) {
+            throw new IndexOutOfBoundsException( "Slice (" + pOffset + ", " + pLength + ") outside of the " + mSize + " bytes of: " + mFile );
+        }
+        if ( pLength == 0 ) {
+            return EMPTY.duplicate();
+        }
+        int zRegion = (int) (pOffset / REGION_SIZE);
+        int zOffset = (int) (pOffset % REGION_SIZE);
+        if ( zOffset + pLength > REGION_SIZE ) {
+            throw new IllegalArgumentException( "Slice (" + pOffset + ", " + pLength + ") reaches across a Region boundary of: " + mFile );
+        }
+        ByteBuffer zSlice = mRegions[zRegion].duplicate();
+        zSlice.position( zOffset ).limit( zOffset + pLength );
+        return zSlice.slice();
+    }
+
+    /**
+     * @return an InputStream over all the bytes (e.g. to sample them, or Store them).
+     */
+    public InputStream open() {
+        return new ByteBuffersInputStream( mRegions );
+    }
+}
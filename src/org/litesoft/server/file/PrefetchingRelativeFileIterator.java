@@ -0,0 +1,201 @@
+package org.litesoft.server.file;
+
+import org.litesoft.commonfoundation.base.*;
+import org.litesoft.commonfoundation.exceptions.*;
+import org.litesoft.commonfoundation.typeutils.*;
+import org.litesoft.server.util.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Reads ahead the contents of the next (up to Depth) files of another RelativeFileIterator (e.g. a DirRelativeFileIterator), concurrently
+ * (on up to MAX_THREADS), into pooled memory (see SlabPool) within a Memory Budget, so the latency of opening & reading each (small) file
+ * (e.g. on a network file system) is not on the critical path.
+ * <p/>
+ * Files of an unknown size, larger than MAX_FILE_BYTES, or that do not fit in the (remaining) Memory Budget when read ahead, are
+ * passed thru as is (read when opened).
+ * <p/>
+ * The prefetched files are Disposable: the memory is reclaimed when disposed (i.e. once written), and any not iterated are disposed with
+ * this iterator.  The time & bytes of the reading are added to the PhaseMetrics (as PREFETCH_PHASE).
+ */
+public class PrefetchingRelativeFileIterator extends RelativeFileIterator {
+    public static final int MAX_THREADS = 16;
+    public static final long MAX_FILE_BYTES = 1024L * 1024 * 4; // 4MB
+
+    public static final String PREFETCH_PHASE = "prefetch";
+
+    private final RelativeFileIterator mSource;
+    private final int mDepth;
+    private final long mMemoryBudget;
+    private final SlabPool mSlabPool;
+    private final ExecutorService mExecutor;
+    private final PhaseMetrics.Phase mPhase;
+    private final Deque<RelativeFile> mAhead = Lists.newLinkedList();
+    private long mInMemory;
+
+    /**
+     * @param pDepth        the number of files to read ahead
+     * @param pMemoryBudget the memory for the files read ahead (but not yet disposed)
+     */
+    public PrefetchingRelativeFileIterator( RelativeFileIterator pSource, int pDepth, long pMemoryBudget, PhaseMetrics pMetrics ) {
+        mSource = pSource;
+        mDepth = pDepth;
+        mMemoryBudget = pMemoryBudget;
+        mSlabPool = new SlabPool( (int) Math.min( SpillManager.MAX_POOLED_SLABS, pMemoryBudget / SlabPool.DEFAULT_SLAB_SIZE ) );
+        mExecutor = Executors.newFixedThreadPool( Math.max( 1, Math.min( pDepth, MAX_THREADS ) ), new PrefetchThreadFactory() );
+        mPhase = pMetrics.phase( PREFETCH_PHASE );
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !mAhead.isEmpty() || mSource.hasNext();
+    }
+
+    @Override
+    public RelativeFile next() {
+        if ( !hasNext() ) {
+            return super.next();
+        }
+        readAhead();
+        return mAhead.removeFirst();
+    }
+
+    /**
+     * Fill the read ahead window, stopping early (w/o waiting) when the Memory Budget is used up.
+     */
+    private void readAhead() {
+        while ( (mAhead.size() <= mDepth) && mSource.hasNext() ) {
+            RelativeFile zFile = mSource.next();
+            long zSize = (zFile instanceof SizedRelativeFile) ? ((SizedRelativeFile) zFile).getSize() : -1;
+            if ( (zSize == -1) || (zSize > MAX_FILE_BYTES) || (zFile instanceof StreamedRelativeFile) ) {
+                mAhead.add( zFile );
+                continue;
+            }
+            long zCharge = inMemoryCharge( zSize );
+            if ( !reserveMemory( zCharge ) ) {
+                mAhead.add( zFile );
+                return;
+            }
+            mAhead.add( new PrefetchedRelativeFile( zFile, zSize, zCharge ) );
+        }
+    }
+
+    private long inMemoryCharge( long pSize ) {
+        long zSlabSize = mSlabPool.getSlabSize();
+        return Math.max( 1, (pSize + zSlabSize) / zSlabSize ) * zSlabSize; // Reading to End-Of-File may need an extra (empty) slab
+    }
+
+    private synchronized boolean reserveMemory( long pBytes ) {
+        if ( mInMemory + pBytes > mMemoryBudget ) {
+            return false;
+        }
+        mInMemory += pBytes;
+        return true;
+    }
+
+    private synchronized void releaseMemory( long pBytes ) {
+        mInMemory -= pBytes;
+    }
+
+    @Override
+    public void dispose() {
+        for ( RelativeFile zFile; null != (zFile = mAhead.poll()); ) {
+            if ( zFile instanceof Disposable ) {
+                ((Disposable) zFile).dispose();
+            }
+        }
+        mExecutor.shutdownNow();
+        mSource.dispose();
+    }
+
+    /**
+     * A file being (or already) read into memory, which open waits for.
+     */
+    private class PrefetchedRelativeFile extends SizedRelativeFile implements Disposable {
+        private final Future<SlabbedBytes> mBytes;
+        private final long mCharged;
+        private boolean mDisposed;
+
+        private PrefetchedRelativeFile( final RelativeFile pFile, long pSize, long pCharged ) {
+            super( pFile.getRelativeFilePath(), pSize );
+            mCharged = pCharged;
+            mBytes = mExecutor.submit( new Callable<SlabbedBytes>() {
+                @Override
+                public SlabbedBytes call()
+                        throws IOException {
+                    long zStarted = System.nanoTime();
+                    InputStream zInputStream = pFile.open();
+                    try {
+                        SlabbedBytes zBytes = SlabbedBytes.readFrom( zInputStream, mSlabPool );
+                        mPhase.record( System.nanoTime() - zStarted, zBytes.getLength(), zBytes.getLength() );
+                        return zBytes;
+                    }
+                    finally {
+                        Closeables.dispose( zInputStream );
+                    }
+                }
+            } );
+        }
+
+        @Override
+        public InputStream open()
+                throws FileSystemException {
+            return await().open();
+        }
+
+        private SlabbedBytes await() {
+            try {
+                return mBytes.get();
+            }
+            catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new FileSystemException( "Interrupted while Prefetching: " + getRelativeFilePath(), e );
+            }
+            catch ( ExecutionException e ) {
+                Throwable zCause = e.getCause();
+                if ( zCause instanceof RuntimeException ) {
+                    throw (RuntimeException) zCause;
+                }
+                throw new FileSystemException( zCause );
+            }
+        }
+
+        /**
+         * If still being read, the reading is finished first (as the slabs are only known once read).
+         */
+        @Override
+        public synchronized void dispose() {
+            if ( mDisposed ) {
+                return;
+            }
+            mDisposed = true;
+            try {
+                if ( !mBytes.cancel( false ) ) {
+                    await().dispose();
+                }
+            }
+            catch ( RuntimeException e ) {
+                // Failed to read, so nothing to dispose
+            }
+            finally {
+                releaseMemory( mCharged );
+            }
+        }
+    }
+
+    /**
+     * Daemon threads (so a failure on the main thread does not leave the JVM running).
+     */
+    private static class PrefetchThreadFactory implements ThreadFactory {
+        private int mThreadNumber;
+
+        @Override
+        public synchronized Thread newThread( Runnable pRunnable ) {
+            Thread zThread = new Thread( pRunnable, "Prefetch-" + (++mThreadNumber) );
+            zThread.setDaemon( true );
+            return zThread;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.litesoft.server.file;
+
+import java.util.zip.*;
+
+/**
+ * An entry as described by a Zip file's Central Directory (see ZipCentralDirectory), with enough information to copy its
+ * compressed bytes as is.
+ */
+public class RawZipEntry {
+    private static final int FLAG_ENCRYPTED = 0x0001;
+
+    private final String mName;
+    private final int mFlags;
+    private final int mMethod;
+    private final long mCRC;
+    private final long mSize;
+    private final long mCompressedSize;
+    private final long mLocalHeaderOffset;
+
+    public RawZipEntry( String pName, int pFlags, int pMethod, long pCRC, long pSize, long pCompressedSize, long pLocalHeaderOffset ) {
+        mName = pName;
+        mFlags = pFlags;
+        mMethod = pMethod;
+        mCRC = pCRC;
+        mSize = pSize;
+        mCompressedSize = pCompressedSize;
+        mLocalHeaderOffset = pLocalHeaderOffset;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public int getFlags() {
+        return mFlags;
+    }
+
+    public int getMethod() {
+        return mMethod;
+    }
+
+    public long getCRC() {
+        return mCRC;
+    }
+
+    public long getSize() {
+        return mSize;
+    }
+
+    public long getCompressedSize() {
+        return mCompressedSize;
+    }
+
+    public long getLocalHeaderOffset() {
+        return mLocalHeaderOffset;
+    }
+
+    public boolean isDirectory() {
+        return mName.endsWith( "/" );
+    }
+
+    /**
+     * @return true if the compressed bytes can be copied into another Zip as is (Stored or Deflated, and not encrypted).
+     */
+    public boolean isCopyable() {
+        return ((mFlags & FLAG_ENCRYPTED) == 0) && ((mMethod == ZipEntry.STORED) || (mMethod == ZipEntry.DEFLATED));
+    }
+
+    @Override
+    public String toString() {
+        return mName + " (method=" + mMethod + ", crc=" + Long.toHexString( mCRC ) + ", size=" + mSize + ", compressed=" + mCompressedSize + ")";
+    }
+}
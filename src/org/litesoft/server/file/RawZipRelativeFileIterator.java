@@ -0,0 +1,104 @@
+package org.litesoft.server.file;
+
+import org.litesoft.commonfoundation.exceptions.*;
+import org.litesoft.server.util.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Like the ZipRelativeFileIterator (same entries, same order), but the RelativeFile(s) are RawZipRelativeFile(s), which also
+ * provide access to the entry's compressed bytes (so they can be copied as is, instead of being inflated and deflated again).
+ * <p/>
+ * As a Progress.Source, the fraction consumed is that of the entries (in the Central Directory).
+ */
+public class RawZipRelativeFileIterator extends RelativeFileIterator implements Progress.Source {
+    private ZipCentralDirectory mDirectory;
+    private Iterator<RawZipEntry> mEntries;
+    private RawZipEntry mEntry;
+    private final int mTotal;
+    private volatile int mConsumed;
+
+    public RawZipRelativeFileIterator( File pZipFile )
+            throws IOException {
+        List<RawZipEntry> zEntries = (mDirectory = new ZipCentralDirectory( pZipFile )).getEntries();
+        mTotal = zEntries.size();
+        mEntries = zEntries.iterator();
+        mEntry = nextFile();
+    }
+
+    @Override
+    public double getFractionConsumed() {
+        return (mTotal == 0) ? 1 : (double) mConsumed / mTotal;
+    }
+
+    @Override
+    public void setProgress( Progress pProgress ) {
+        // No notes
+    }
+
+    private RawZipEntry nextFile() {
+        if ( mEntries != null ) {
+            while ( mEntries.hasNext() ) {
+                mConsumed++; // Only the iterating thread updates it
+                RawZipEntry zEntry = mEntries.next();
+                if ( !zEntry.isDirectory() ) {
+                    return zEntry;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return (mEntry != null);
+    }
+
+    @Override
+    public RelativeFile next() {
+        if ( !hasNext() ) {
+            return super.next();
+        }
+        RelativeFile zRelativeFile = new RawZipRelativeFile( mDirectory, mEntry );
+        mEntry = nextFile();
+        return zRelativeFile;
+    }
+
+    @Override
+    public void dispose() {
+        Closeables.dispose( mDirectory );
+        mDirectory = null;
+        mEntries = null;
+    }
+
+    public static class RawZipRelativeFile extends SizedRelativeFile {
+        private final ZipCentralDirectory mDirectory;
+        private final RawZipEntry mEntry;
+
+        private RawZipRelativeFile( ZipCentralDirectory pDirectory, RawZipEntry pEntry ) {
+            super( pEntry.getName(), pEntry.getSize() );
+            mDirectory = pDirectory;
+            mEntry = pEntry;
+        }
+
+        public ZipCentralDirectory getDirectory() {
+            return mDirectory;
+        }
+
+        public RawZipEntry getEntry() {
+            return mEntry;
+        }
+
+        @Override
+        public InputStream open()
+                throws FileSystemException {
+            try {
+                return mDirectory.open( mEntry );
+            }
+            catch ( IOException e ) {
+                throw new FileSystemException( e );
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package org.litesoft.server.file;
+
+/**
+ * A RelativeFile whose size (number of bytes the InputStream from open() will return) is known up front.
+ */
+public abstract class SizedRelativeFile extends RelativeFile {
+    private final long mSize;
+
+    protected SizedRelativeFile( String pRelativeFilePath, long pSize ) {
+        super( pRelativeFilePath );
+        mSize = pSize;
+    }
+
+    public long getSize() {
+        return mSize;
+    }
+
+    /**
+     * @return -1 if not known
+     */
+    public static long sizeOf( RelativeFile pFile ) {
+        return (pFile instanceof SizedRelativeFile) ? ((SizedRelativeFile) pFile).getSize() : -1;
+    }
+}
@@ -0,0 +1,33 @@
+package org.litesoft.server.file;
+
+import org.litesoft.commonfoundation.exceptions.*;
+import org.litesoft.server.util.*;
+
+import java.io.*;
+
+/**
+ * A SizedRelativeFile whose contents are NOT buffered, but streamed directly from the source (e.g. a TAR archive), so open() may only be
+ * called once, and the InputStream must be read (on the iterating thread) before the iterator's next hasNext() / next().
+ */
+public abstract class StreamedRelativeFile extends SizedRelativeFile {
+    protected StreamedRelativeFile( String pRelativeFilePath, long pSize ) {
+        super( pRelativeFilePath, pSize );
+    }
+
+    /**
+     * Read the contents into slabs from pPool (instead of opening this), for when they need to be read more than once.
+     */
+    public BufferedRelativeFile buffer( SlabPool pPool )
+            throws FileSystemException {
+        InputStream zInputStream = open();
+        try {
+            return new BufferedRelativeFile( getRelativeFilePath(), SlabbedBytes.readFrom( zInputStream, pPool ) );
+        }
+        catch ( IOException e ) {
+            throw new FileSystemException( e );
+        }
+        finally {
+            Closeables.dispose( zInputStream );
+        }
+    }
+}
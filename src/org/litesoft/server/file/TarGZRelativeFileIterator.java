@@ -1,40 +1,114 @@
 package org.litesoft.server.file;
 
 import org.litesoft.commonfoundation.exceptions.*;
-import org.litesoft.commonfoundation.typeutils.*;
 import org.litesoft.server.util.*;
 
 import com.ice.tar.*;
 
 import java.io.*;
-import java.util.*;
 import java.util.zip.*;
 
 /**
  * Convert the TAR entries into a RelativeFileIterator.
+ * <p/>
+ * The inflating is done on its own thread (see PipelinedInputStream), so it overlaps the TAR parsing and the consumer's work.
+ * <p/>
+ * Entries are buffered by a SpillManager (in memory within its budget, else in its spill file) until written (disposed).
+ * <p/>
+ * Entries of at least StreamFromBytes are not buffered, but are StreamedRelativeFile(s) that read directly
+ * from the TAR (so they must be consumed before moving on to the next entry); with a StreamFromBytes of 0 the TAR is processed in a
+ * single pass with nothing buffered.
+ * <p/>
+ * The time & bytes of the inflating (GUNZIP_PHASE), TAR header parsing (TAR_HEADERS_PHASE, which includes skipping any unread entry
+ * contents and waiting on the inflating), and buffering (BUFFER_PHASE, or SPILL_PHASE if spilled) are added to the PhaseMetrics.
+ * The headers parsed and the entries buffered are also Java Flight Recorder events (see TarHeaderEvent & EntryBufferedEvent).
+ * <p/>
+ * As a Progress.Source, the fraction consumed is that of the ".gz" file (read ahead by the inflating, see PipelinedInputStream), and the
+ * TAR reader's notes (see TarInputStream.Reporter) go to the Progress.
  *
  * TODO: Will need to process again for SymLinks!
  */
-public class TarGZRelativeFileIterator extends RelativeFileIterator {
-    public static final int MAX_MEMORY_FILE_SIZE = 1024 * 1024 * 1; // 1 MB
-
+public class TarGZRelativeFileIterator extends RelativeFileIterator implements Progress.Source {
+    public static final int INFLATER_INPUT_SIZE = 1024 * 64; // 64K
+
+    public static final String GUNZIP_PHASE = "gunzip";
+    public static final String TAR_HEADERS_PHASE = "tarHeaders";
+    public static final String BUFFER_PHASE = "buffer";
+    public static final String SPILL_PHASE = "spill";
+
+    private final long mStreamFromBytes;
+    private final SpillManager mSpillManager;
+    private final PhaseMetrics mMetrics;
+    private final CountingInputStream mConsumed;
+    private final long mTarGZLength;
     private TarInputStream mTarInputStream;
     private TarEntry mTarEntry;
+    private boolean mPositioned;
+    private StreamedTarRelativeFile mStreamed;
+
+    /**
+     * @param pStreamFromBytes Entries of at least this size are streamed (see StreamedRelativeFile) - 0 means all, Long.MAX_VALUE none.
+     * @param pSpillManager    Buffers the other entries (disposed with this iterator).
+     */
+    public TarGZRelativeFileIterator( File pTarGZFile, long pStreamFromBytes, SpillManager pSpillManager, PhaseMetrics pMetrics )
+            throws IOException {
+        mStreamFromBytes = pStreamFromBytes;
+        mSpillManager = pSpillManager;
+        mMetrics = pMetrics;
+        PhaseMetrics.Phase zGunzip = pMetrics.phase( GUNZIP_PHASE );
+        zGunzip.add( 0, mTarGZLength = pTarGZFile.length(), 0 );
+        mConsumed = new CountingInputStream( new FileInputStream( pTarGZFile ) );
+        mTarInputStream = new TarInputStream( new PipelinedInputStream(
+                new MeteredInputStream( new GZIPInputStream( mConsumed, INFLATER_INPUT_SIZE ), zGunzip ),
+                "Inflater-" + pTarGZFile.getName() ) );
+    }
+
+    public TarGZRelativeFileIterator( File pTarGZFile, long pStreamFromBytes, SpillManager pSpillManager )
+            throws IOException {
+        this( pTarGZFile, pStreamFromBytes, pSpillManager, new PhaseMetrics() );
+    }
 
     public TarGZRelativeFileIterator( File pTarGZFile )
             throws IOException {
-        mTarInputStream = new TarInputStream( new GZIPInputStream( new FileInputStream( pTarGZFile ) ) );
-        mTarEntry = nextFile();
+        this( pTarGZFile, Long.MAX_VALUE, new SpillManager() );
+    }
+
+    @Override
+    public double getFractionConsumed() {
+        return (mTarGZLength == 0) ? 1 : Math.min( 1, (double) mConsumed.getCount() / mTarGZLength );
+    }
+
+    @Override
+    public void setProgress( final Progress pProgress ) {
+        mTarInputStream.setReporter( new TarInputStream.Reporter() {
+            @Override
+            public void report( String pMessage ) {
+                pProgress.note( pMessage );
+            }
+        } );
     }
 
     private TarEntry nextFile() {
+        if ( mStreamed != null ) {
+            mStreamed.mCurrent = false; // getNextEntry skips any of its contents not read
+            mStreamed = null;
+        }
+        PhaseMetrics.Phase zTarHeaders = mMetrics.phase( TAR_HEADERS_PHASE );
         try {
-            for ( TarEntry zTarEntry; null != (zTarEntry = mTarInputStream.getNextEntry()); ) {
+            for ( TarEntry zTarEntry; ; ) {
+                TarHeaderEvent zEvent = new TarHeaderEvent();
+                zEvent.begin();
+                long zStarted = System.nanoTime();
+                zTarEntry = mTarInputStream.getNextEntry();
+                zTarHeaders.record( System.nanoTime() - zStarted, (zTarEntry == null) ? 0 : TarHeader.HEADER_LENGTH, 0 );
+                if ( zTarEntry == null ) {
+                    return null;
+                }
+                zEvent.commit( zTarEntry.getName(), zTarEntry.getSize(), zTarEntry.isDirectory() );
                 if ( !zTarEntry.isDirectory() ) {
                     return zTarEntry;
                 }
             }
-            return null;
         }
         catch ( IOException e ) {
             throw new FileSystemException( e );
@@ -43,6 +117,10 @@ public class TarGZRelativeFileIterator extends RelativeFileIterator {
 
     @Override
     public boolean hasNext() {
+        if ( !mPositioned ) {
+            mTarEntry = nextFile();
+            mPositioned = true;
+        }
         return (mTarEntry != null);
     }
 
@@ -51,13 +129,21 @@ public class TarGZRelativeFileIterator extends RelativeFileIterator {
         if ( !hasNext() ) {
             return super.next();
         }
+        mPositioned = false;
+        if ( mTarEntry.getSize() >= mStreamFromBytes ) {
+            return mStreamed = new StreamedTarRelativeFile( mTarEntry.getName(), mTarEntry.getSize() );
+        }
         try {
-            int zAvailable = mTarInputStream.available();
-            RelativeFile zRelativeFile = (zAvailable <= MAX_MEMORY_FILE_SIZE) ?
-                                         new MemoryTarRelativeFile( mTarEntry.getName() ) :
-                                         new TempFileTarRelativeFile( mTarEntry.getName() );
-            mTarEntry = nextFile();
-            return zRelativeFile;
+            EntryBufferedEvent zEvent = new EntryBufferedEvent();
+            zEvent.begin();
+            long zSpilled = mSpillManager.getSpilled();
+            long zStarted = System.nanoTime();
+            BufferedBytes zBytes = mSpillManager.buffer( mTarInputStream, mTarEntry.getSize() );
+            long zNanos = System.nanoTime() - zStarted;
+            boolean zWasSpilled = (mSpillManager.getSpilled() != zSpilled);
+            mMetrics.phase( zWasSpilled ? SPILL_PHASE : BUFFER_PHASE ).record( zNanos, zBytes.getLength(), zBytes.getLength() );
+            zEvent.commit( mTarEntry.getName(), zBytes.getLength(), zWasSpilled );
+            return new BufferedRelativeFile( mTarEntry.getName(), zBytes ); // Buffered by the SpillManager
         }
         catch ( IOException e ) {
             throw new FileSystemException( e );
@@ -68,49 +154,62 @@ public class TarGZRelativeFileIterator extends RelativeFileIterator {
     public void dispose() {
         Closeables.dispose( mTarInputStream );
         mTarInputStream = null;
+        mSpillManager.dispose();
     }
 
-    private class TempFileTarRelativeFile extends RelativeFile {
-        private File mTempFile;
+    private class StreamedTarRelativeFile extends StreamedRelativeFile {
+        private boolean mCurrent = true;
+        private boolean mOpened;
 
-        private TempFileTarRelativeFile( String pRelativeFilePath )
-                throws IOException {
-            super( pRelativeFilePath );
-            mTempFile = File.createTempFile( "temp-" + pRelativeFilePath.replace( '/', '_' ), ".tmp" );
-            FileOutputStream zOutputStream = new FileOutputStream( mTempFile );
-            mTarInputStream.copyEntryContents( zOutputStream );
-            zOutputStream.close();
+        private StreamedTarRelativeFile( String pRelativeFilePath, long pSize ) {
+            super( pRelativeFilePath, pSize );
         }
 
         @Override
         public InputStream open()
                 throws FileSystemException {
-            try {
-                return new FileInputStream( mTempFile );
-            }
-            catch ( IOException e ) {
-                throw new FileSystemException( e );
+            if ( mOpened || !mCurrent ) {
+                throw new FileSystemException( "Streamed TAR entry " + (mOpened ? "already opened" : "no longer current") + ": " + getRelativeFilePath() );
             }
-        }
-    }
+            mOpened = true;
+            return new InputStream() {
+                @Override
+                public int read()
+                        throws IOException {
+                    return current().read();
+                }
 
-    private class MemoryTarRelativeFile extends RelativeFile {
+                @Override
+                public int read( byte[] pBytes, int pOffset, int pLength )
+                        throws IOException {
+                    return current().read( pBytes, pOffset, pLength );
+                }
 
-        private List<IOBlock> mBlocks = Lists.newLinkedList();
+                @Override
+                public long skip( long pCount )
+                        throws IOException {
+                    return current().skip( pCount );
+                }
 
-        public MemoryTarRelativeFile( String pRelativeFilePath )
-                throws IOException {
-            super( pRelativeFilePath );
-            for ( IOBlock zBlock; null != (zBlock = IOBlock.from( mTarInputStream )); ) {
-                mBlocks.add( zBlock );
-            }
+                @Override
+                public int available()
+                        throws IOException {
+                    return current().available();
+                }
+
+                @Override
+                public void close() {
+                    // The TarInputStream is closed by dispose()
+                }
+            };
         }
 
-        @Override
-        public InputStream open()
-                throws FileSystemException {
-            return new BlockInputStream( mBlocks );
+        private TarInputStream current()
+                throws IOException {
+            if ( !mCurrent ) {
+                throw new IOException( "Streamed TAR entry no longer current: " + getRelativeFilePath() );
+            }
+            return mTarInputStream;
         }
     }
 }
-
@@ -0,0 +1,33 @@
+package org.litesoft.server.file;
+
+import jdk.jfr.*;
+
+/**
+ * Java Flight Recorder event: a TAR header parsed (see TarGZRelativeFileIterator); the duration includes skipping any unread contents of
+ * the previous entry and waiting on the inflating.
+ */
+@Name("org.litesoft.TarHeader")
+@Label("TAR Header Parsed")
+@Category({"PackageVersionedZip", "Source"})
+@StackTrace(false)
+public class TarHeaderEvent extends Event {
+    @Label("Name")
+    String name;
+
+    @Label("Size")
+    @DataAmount
+    long size;
+
+    @Label("Directory")
+    boolean directory;
+
+    public void commit( String pName, long pSize, boolean pDirectory ) {
+        end();
+        if ( shouldCommit() ) {
+            name = pName;
+            size = pSize;
+            directory = pDirectory;
+            commit();
+        }
+    }
+}
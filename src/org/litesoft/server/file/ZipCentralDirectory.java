@@ -0,0 +1,254 @@
+package org.litesoft.server.file;
+
+import org.litesoft.commonfoundation.typeutils.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Reads a Zip file's Central Directory (including the Zip64 variants) into RawZipEntry(s), and provides (positional, and therefore
+ * thread safe) access to each entry's compressed bytes.
+ */
+public class ZipCentralDirectory implements Closeable {
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    private static final int LOCAL_HEADER_SIG = 0x04034b50;
+    private static final int LOCAL_HEADER_LENGTH = 30;
+    private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+    private static final int CENTRAL_HEADER_LENGTH = 46;
+    private static final int ZIP64_END_SIG = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+    private static final int ZIP64_LOCATOR_LENGTH = 20;
+    private static final int END_SIG = 0x06054b50;
+    private static final int END_LENGTH = 22;
+    private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+
+    private final File mFile;
+    private final FileChannel mChannel;
+    private final List<RawZipEntry> mEntries;
+
+    public ZipCentralDirectory( File pZipFile )
+            throws IOException {
+        mChannel = new RandomAccessFile( mFile = pZipFile, "r" ).getChannel();
+        try {
+            mEntries = readCentralDirectory();
+        }
+        catch ( IOException e ) {
+            mChannel.close();
+            throw e;
+        }
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    public FileChannel getChannel() {
+        return mChannel;
+    }
+
+    public List<RawZipEntry> getEntries() {
+        return mEntries;
+    }
+
+    /**
+     * @return the offset (in the Zip file) of the entry's compressed bytes (just past its Local Header).
+     */
+    public long getDataOffset( RawZipEntry pEntry )
+            throws IOException {
+        ByteBuffer zHeader = read( pEntry.getLocalHeaderOffset(), LOCAL_HEADER_LENGTH );
+        if ( zHeader.getInt( 0 ) != LOCAL_HEADER_SIG ) {
+            throw new ZipException( "Bad Local Header for: " + pEntry.getName() + " in: " + mFile );
+        }
+        return pEntry.getLocalHeaderOffset() + LOCAL_HEADER_LENGTH + u16( zHeader, 26 ) + u16( zHeader, 28 );
+    }
+
+    /**
+     * @return the entry's compressed bytes (as is).
+     */
+    public InputStream openRaw( RawZipEntry pEntry )
+            throws IOException {
+        return new ChannelRegionInputStream( mChannel, getDataOffset( pEntry ), pEntry.getCompressedSize() );
+    }
+
+    /**
+     * @return the entry's uncompressed bytes.
+     */
+    public InputStream open( RawZipEntry pEntry )
+            throws IOException {
+        InputStream zRaw = openRaw( pEntry );
+        if ( pEntry.getMethod() == ZipEntry.STORED ) {
+            return zRaw;
+        }
+        if ( pEntry.getMethod() != ZipEntry.DEFLATED ) {
+            zRaw.close();
+            throw new ZipException( "Unsupported compression method (" + pEntry.getMethod() + ") for: " + pEntry.getName() + " in: " + mFile );
+        }
+        final Inflater zInflater = new Inflater( true );
+        return new InflaterInputStream( zRaw, zInflater, 1024 * 64 ) {
+            @Override
+            public void close()
+                    throws IOException {
+                try {
+                    super.close();
+                }
+                finally {
+                    zInflater.end();
+                }
+            }
+        };
+    }
+
+    @Override
+    public void close()
+            throws IOException {
+        mChannel.close();
+    }
+
+    private List<RawZipEntry> readCentralDirectory()
+            throws IOException {
+        long zFileLength = mChannel.size();
+        int zTailLength = (int) Math.min( zFileLength, END_LENGTH + MAX_COMMENT_LENGTH );
+        long zTailOffset = zFileLength - zTailLength;
+        ByteBuffer zTail = read( zTailOffset, zTailLength );
+        int zEndAt = zTailLength - END_LENGTH;
+        while ( (zEndAt >= 0) && (zTail.getInt( zEndAt ) != END_SIG) ) {
+            zEndAt--;
+        }
+        if ( zEndAt < 0 ) {
+            throw new ZipException( "No End of Central Directory record (not a Zip?): " + mFile );
+        }
+        long zCount = u16( zTail, zEndAt + 10 );
+        long zCentralLength = u32( zTail, zEndAt + 12 );
+        long zCentralOffset = u32( zTail, zEndAt + 16 );
+        long zLocatorOffset = zTailOffset + zEndAt - ZIP64_LOCATOR_LENGTH;
+        if ( zLocatorOffset >= 0 ) {
+            ByteBuffer zLocator = read( zLocatorOffset, ZIP64_LOCATOR_LENGTH );
+            if ( zLocator.getInt( 0 ) == ZIP64_LOCATOR_SIG ) {
+                ByteBuffer zZip64End = read( zLocator.getLong( 8 ), 56 );
+                if ( zZip64End.getInt( 0 ) != ZIP64_END_SIG ) {
+                    throw new ZipException( "Bad Zip64 End of Central Directory record: " + mFile );
+                }
+                zCount = zZip64End.getLong( 32 );
+                zCentralLength = zZip64End.getLong( 40 );
+                zCentralOffset = zZip64End.getLong( 48 );
+            }
+        }
+        ByteBuffer zCentral = mChannel.map( FileChannel.MapMode.READ_ONLY, zCentralOffset, zCentralLength ).order( ByteOrder.LITTLE_ENDIAN );
+        List<RawZipEntry> zEntries = Lists.newArrayList( (int) Math.min( zCount, Integer.MAX_VALUE ) );
+        for ( int zAt = 0; zEntries.size() < zCount; ) {
+            if ( zCentral.getInt( zAt ) != CENTRAL_HEADER_SIG ) {
+                throw new ZipException( "Bad Central Directory header (entry " + zEntries.size() + "): " + mFile );
+            }
+            int zNameLength = u16( zCentral, zAt + 28 );
+            int zExtraLength = u16( zCentral, zAt + 30 );
+            int zCommentLength = u16( zCentral, zAt + 32 );
+            long zCompressedSize = u32( zCentral, zAt + 20 );
+            long zSize = u32( zCentral, zAt + 24 );
+            long zOffset = u32( zCentral, zAt + 42 );
+            byte[] zName = new byte[zNameLength];
+            zCentral.position( zAt + CENTRAL_HEADER_LENGTH );
+            zCentral.get( zName );
+            if ( (zSize == ZIP64_MAGIC) || (zCompressedSize == ZIP64_MAGIC) || (zOffset == ZIP64_MAGIC) ) {
+                for ( int zExtraAt = zAt + CENTRAL_HEADER_LENGTH + zNameLength, zExtraEnd = zExtraAt + zExtraLength;
+                      zExtraAt + 4 <= zExtraEnd; zExtraAt += 4 + u16( zCentral, zExtraAt + 2 ) ) {
+                    if ( u16( zCentral, zExtraAt ) == ZIP64_EXTRA_ID ) {
+                        int zValueAt = zExtraAt + 4;
+                        if ( zSize == ZIP64_MAGIC ) {
+                            zSize = zCentral.getLong( zValueAt );
+                            zValueAt += 8;
+                        }
+                        if ( zCompressedSize == ZIP64_MAGIC ) {
+                            zCompressedSize = zCentral.getLong( zValueAt );
+                            zValueAt += 8;
+                        }
+                        if ( zOffset == ZIP64_MAGIC ) {
+                            zOffset = zCentral.getLong( zValueAt );
+                        }
+                        break;
+                    }
+                }
+            }
+            zEntries.add( new RawZipEntry( new String( zName, UTF_8 ), u16( zCentral, zAt + 8 ), u16( zCentral, zAt + 10 ),
+                                           u32( zCentral, zAt + 16 ), zSize, zCompressedSize, zOffset ) );
+            zAt += CENTRAL_HEADER_LENGTH + zNameLength + zExtraLength + zCommentLength;
+        }
+        return zEntries;
+    }
+
+    private ByteBuffer read( long pOffset, int pLength )
+            throws IOException {
+        ByteBuffer zBuffer = ByteBuffer.allocate( pLength ).order( ByteOrder.LITTLE_ENDIAN );
+        while ( zBuffer.hasRemaining() ) {
+            if ( -1 == mChannel.read( zBuffer, pOffset + zBuffer.position() ) ) {
+                throw new EOFException( "Unexpected End-Of-File (at " + (pOffset + zBuffer.position()) + "): " + mFile );
+            }
+        }
+        return zBuffer;
+    }
+
+    private static int u16( ByteBuffer pBuffer, int pAt ) {
+        return pBuffer.getShort( pAt ) & 0xFFFF;
+    }
+
+    private static long u32( ByteBuffer pBuffer, int pAt ) {
+        return pBuffer.getInt( pAt ) & ZIP64_MAGIC;
+    }
+
+    /**
+     * Reads a region of a FileChannel w/ positional reads (so any number of them can be reading the same channel concurrently).
+     */
+    private static class ChannelRegionInputStream extends InputStream {
+        private final FileChannel mChannel;
+        private long mPosition;
+        private long mRemaining;
+
+        private ChannelRegionInputStream( FileChannel pChannel, long pPosition, long pLength ) {
+            mChannel = pChannel;
+            mPosition = pPosition;
+            mRemaining = pLength;
+        }
+
+        @Override
+        public int read()
+                throws IOException {
+            byte[] zByte = new byte[1];
+            return (-1 == read( zByte, 0, 1 )) ? -1 : (zByte[0] & 0xFF);
+        }
+
+        @Override
+        public int read( byte[] pBytes, int pOffset, int pLength )
+                throws IOException {
+            if ( mRemaining <= 0 ) {
+                return -1;
+            }
+            int zRead = mChannel.read( ByteBuffer.wrap( pBytes, pOffset, (int) Math.min( pLength, mRemaining ) ), mPosition );
+            if ( zRead == -1 ) {
+                throw new EOFException( "Unexpected End-Of-File in Zip entry data" );
+            }
+            mPosition += zRead;
+            mRemaining -= zRead;
+            return zRead;
+        }
+
+        @Override
+        public long skip( long pCount ) {
+            long zSkipped = Math.max( 0, Math.min( pCount, mRemaining ) );
+            mPosition += zSkipped;
+            mRemaining -= zSkipped;
+            return zSkipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min( mRemaining, Integer.MAX_VALUE );
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package org.litesoft.server.util;
+
+import org.litesoft.commonfoundation.base.*;
+
+import java.io.*;
+
+/**
+ * Bytes buffered somewhere (memory or a spill file, see SpillManager), which can be read (open) any number of times until disposed, at
+ * which point the space is reclaimed.
+ */
+public interface BufferedBytes extends Disposable {
+    long getLength();
+
+    InputStream open();
+}
@@ -0,0 +1,62 @@
+package org.litesoft.server.util;
+
+import java.io.*;
+import java.nio.*;
+
+/**
+ * An InputStream over the remaining bytes of a sequence of ByteBuffers, each of which is duplicated (when reached), so the ByteBuffers'
+ * positions are not changed and any number of these can be reading the same ByteBuffers at once.
+ */
+public class ByteBuffersInputStream extends InputStream {
+    private final ByteBuffer[] mBuffers;
+    private int mIndex = -1;
+    private ByteBuffer mCurrent;
+
+    public ByteBuffersInputStream( ByteBuffer... pBuffers ) {
+        mBuffers = pBuffers;
+    }
+
+    @Override
+    public int read() {
+        return currentAvailable() ? (mCurrent.get() & 0xFF) : -1;
+    }
+
+    @Override
+    public int read( byte[] pBytes, int pOffset, int pLength ) {
+        if ( pLength == 0 ) {
+            return 0;
+        }
+        if ( !currentAvailable() ) {
+            return -1;
+        }
+        int zLength = Math.min( pLength, mCurrent.remaining() );
+        mCurrent.get( pBytes, pOffset, zLength );
+        return zLength;
+    }
+
+    @Override
+    public long skip( long pCount ) {
+        long zSkipped = 0;
+        while ( (zSkipped < pCount) && currentAvailable() ) {
+            int zLength = (int) Math.min( pCount - zSkipped, mCurrent.remaining() );
+            mCurrent.position( mCurrent.position() + zLength );
+            zSkipped += zLength;
+        }
+        return zSkipped;
+    }
+
+    @Override
+    public int available() {
+        return (mCurrent == null) ? 0 : mCurrent.remaining();
+    }
+
+    private boolean currentAvailable() {
+        while ( (mCurrent == null) || !mCurrent.hasRemaining() ) {
+            if ( ++mIndex >= mBuffers.length ) {
+                return false;
+            }
+            mCurrent = mBuffers[mIndex].duplicate();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,46 @@
+package org.litesoft.server.util;
+
+import java.io.*;
+
+/**
+ * Counts the bytes read (or skipped), which can be checked (see getCount) from another thread.
+ */
+public class CountingInputStream extends FilterInputStream {
+    private volatile long mCount;
+
+    public CountingInputStream( InputStream pInputStream ) {
+        super( pInputStream );
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    @Override
+    public int read()
+            throws IOException {
+        int zByte = super.read();
+        if ( zByte != -1 ) {
+            mCount++; // Only the reading thread updates it
+        }
+        return zByte;
+    }
+
+    @Override
+    public int read( byte[] pBytes, int pOffset, int pLength )
+            throws IOException {
+        int zRead = super.read( pBytes, pOffset, pLength );
+        if ( zRead > 0 ) {
+            mCount += zRead;
+        }
+        return zRead;
+    }
+
+    @Override
+    public long skip( long pCount )
+            throws IOException {
+        long zSkipped = super.skip( pCount );
+        mCount += zSkipped;
+        return zSkipped;
+    }
+}
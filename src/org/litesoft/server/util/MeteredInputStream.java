@@ -0,0 +1,42 @@
+package org.litesoft.server.util;
+
+import java.io.*;
+
+/**
+ * Adds the time spent reading (from the wrapped InputStream) and the bytes read (as "out" bytes) to a Phase (see PhaseMetrics).
+ */
+public class MeteredInputStream extends FilterInputStream {
+    private final PhaseMetrics.Phase mPhase;
+
+    public MeteredInputStream( InputStream pInputStream, PhaseMetrics.Phase pPhase ) {
+        super( pInputStream );
+        mPhase = pPhase;
+    }
+
+    @Override
+    public int read()
+            throws IOException {
+        long zStarted = System.nanoTime();
+        int zByte = super.read();
+        mPhase.add( System.nanoTime() - zStarted, 0, (zByte == -1) ? 0 : 1 );
+        return zByte;
+    }
+
+    @Override
+    public int read( byte[] pBytes, int pOffset, int pLength )
+            throws IOException {
+        long zStarted = System.nanoTime();
+        int zRead = super.read( pBytes, pOffset, pLength );
+        mPhase.add( System.nanoTime() - zStarted, 0, Math.max( 0, zRead ) );
+        return zRead;
+    }
+
+    @Override
+    public long skip( long pCount )
+            throws IOException {
+        long zStarted = System.nanoTime();
+        long zSkipped = super.skip( pCount );
+        mPhase.add( System.nanoTime() - zStarted, 0, zSkipped );
+        return zSkipped;
+    }
+}
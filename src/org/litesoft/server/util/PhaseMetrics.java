@@ -0,0 +1,79 @@
+package org.litesoft.server.util;
+
+import org.litesoft.commonfoundation.typeutils.*;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * The time, bytes (in & out), and count of items (e.g. entries) per named Phase (e.g. "gunzip"), kept in the order the Phases are first
+ * used.
+ * <p/>
+ * The times are the sums of the time spent in the Phase on all threads, so with concurrency a Phase's time can exceed the elapsed time.
+ * <p/>
+ * Thread Safe.
+ */
+public class PhaseMetrics {
+    private final Map<String, Phase> mPhases = Maps.newLinkedHashMap();
+
+    public synchronized Phase phase( String pName ) {
+        Phase zPhase = mPhases.get( pName );
+        if ( zPhase == null ) {
+            mPhases.put( pName, zPhase = new Phase( pName ) );
+        }
+        return zPhase;
+    }
+
+    public synchronized List<Phase> getPhases() {
+        return Lists.newArrayList( mPhases.values() );
+    }
+
+    public static class Phase {
+        private final String mName;
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mNanos = new AtomicLong();
+        private final AtomicLong mBytesIn = new AtomicLong();
+        private final AtomicLong mBytesOut = new AtomicLong();
+
+        private Phase( String pName ) {
+            mName = pName;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public long getCount() {
+            return mCount.get();
+        }
+
+        public long getNanos() {
+            return mNanos.get();
+        }
+
+        public long getBytesIn() {
+            return mBytesIn.get();
+        }
+
+        public long getBytesOut() {
+            return mBytesOut.get();
+        }
+
+        /**
+         * Record an item (e.g. entry) processed by this Phase.
+         */
+        public void record( long pNanos, long pBytesIn, long pBytesOut ) {
+            mCount.incrementAndGet();
+            add( pNanos, pBytesIn, pBytesOut );
+        }
+
+        /**
+         * Add to this Phase w/o counting an item (e.g. for a stream read in many pieces).
+         */
+        public void add( long pNanos, long pBytesIn, long pBytesOut ) {
+            mNanos.addAndGet( pNanos );
+            mBytesIn.addAndGet( pBytesIn );
+            mBytesOut.addAndGet( pBytesOut );
+        }
+    }
+}
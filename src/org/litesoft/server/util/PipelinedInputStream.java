@@ -0,0 +1,199 @@
+package org.litesoft.server.util;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+/**
+ * An InputStream that reads its source on its own (daemon) thread, into a bounded ring of large buffers, so that the work of producing
+ * the bytes (e.g. inflating a GZIPInputStream) overlaps with the work of consuming them.
+ * <p/>
+ * At most BufferCount buffers are ever allocated (they are recycled), so a slow consumer simply blocks the reading thread.
+ * <p/>
+ * Any Exception thrown by the source is rethrown (as an IOException) to the consumer when it reaches that point in the stream.
+ * <p/>
+ * Not Thread Safe - a single consumer is assumed.
+ */
+public class PipelinedInputStream extends InputStream {
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 256; // 256K
+    public static final int DEFAULT_BUFFER_COUNT = 8;
+
+    private final InputStream mSource;
+    private final BlockingQueue<Buffer> mEmpty;
+    private final BlockingQueue<Buffer> mFilled;
+    private final Thread mReader;
+    private Buffer mCurrent;
+    private int mOffset;
+    private volatile boolean mClosed;
+
+    public PipelinedInputStream( InputStream pSource, String pThreadName, int pBufferSize, int pBufferCount ) {
+        mSource = pSource;
+        mEmpty = new ArrayBlockingQueue<Buffer>( pBufferCount );
+        mFilled = new ArrayBlockingQueue<Buffer>( pBufferCount + 1 ); // + 1 for the End-Of-File / failure marker
+        for ( int i = 0; i < pBufferCount; i++ ) {
+            mEmpty.add( new Buffer( pBufferSize ) );
+        }
+        mReader = new Thread( new Runnable() {
+            @Override
+            public void run() {
+                readSource();
+            }
+        }, pThreadName );
+        mReader.setDaemon( true );
+        mReader.start();
+    }
+
+    public PipelinedInputStream( InputStream pSource, String pThreadName ) {
+        this( pSource, pThreadName, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFER_COUNT );
+    }
+
+    private void readSource() {
+        try {
+            while ( !mClosed ) {
+                Buffer zBuffer = mEmpty.take();
+                if ( zBuffer.fill( mSource ) == 0 ) {
+                    mFilled.put( Buffer.END_OF_FILE );
+                    return;
+                }
+                mFilled.put( zBuffer );
+            }
+        }
+        catch ( InterruptedException e ) {
+            // Closed
+        }
+        catch ( Throwable e ) {
+            mFilled.offer( Buffer.failed( e ) );
+        }
+    }
+
+    @Override
+    public int read()
+            throws IOException {
+        if ( !currentAvailable() ) {
+            return -1;
+        }
+        return mCurrent.mBytes[mOffset++] & 0xFF;
+    }
+
+    @Override
+    public int read( byte[] pBytes, int pOffset, int pLength )
+            throws IOException {
+        if ( pLength == 0 ) {
+            return 0;
+        }
+        if ( !currentAvailable() ) {
+            return -1;
+        }
+        int zLength = Math.min( pLength, mCurrent.mLength - mOffset );
+        System.arraycopy( mCurrent.mBytes, mOffset, pBytes, pOffset, zLength );
+        mOffset += zLength;
+        return zLength;
+    }
+
+    @Override
+    public long skip( long pCount )
+            throws IOException {
+        long zSkipped = 0;
+        while ( (zSkipped < pCount) && currentAvailable() ) {
+            int zLength = (int) Math.min( pCount - zSkipped, mCurrent.mLength - mOffset );
+            mOffset += zLength;
+            zSkipped += zLength;
+        }
+        return zSkipped;
+    }
+
+    @Override
+    public int available()
+            throws IOException {
+        return ((mCurrent == null) || (mCurrent == Buffer.END_OF_FILE)) ? 0 : (mCurrent.mLength - mOffset);
+    }
+
+    /**
+     * @return false if End-Of-File
+     */
+    private boolean currentAvailable()
+            throws IOException {
+        if ( mClosed ) {
+            throw new IOException( "Stream closed" );
+        }
+        while ( (mCurrent == null) || (mOffset == mCurrent.mLength) ) {
+            if ( mCurrent == Buffer.END_OF_FILE ) {
+                return false;
+            }
+            if ( mCurrent != null ) {
+                mEmpty.add( mCurrent );
+            }
+            mCurrent = takeFilled();
+            mOffset = 0;
+        }
+        return true;
+    }
+
+    private Buffer takeFilled()
+            throws IOException {
+        Buffer zBuffer;
+        try {
+            zBuffer = mFilled.take();
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while waiting for: " + mReader.getName() );
+        }
+        if ( zBuffer.mFailure != null ) {
+            mFilled.offer( zBuffer ); // Any subsequent reads fail the same way
+            if ( zBuffer.mFailure instanceof IOException ) {
+                throw (IOException) zBuffer.mFailure;
+            }
+            throw new IOException( "Failure on: " + mReader.getName(), zBuffer.mFailure );
+        }
+        return zBuffer;
+    }
+
+    @Override
+    public void close()
+            throws IOException {
+        if ( mClosed ) {
+            return;
+        }
+        mClosed = true;
+        mReader.interrupt();
+        try {
+            mReader.join();
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+        mSource.close();
+    }
+
+    private static class Buffer {
+        private static final Buffer END_OF_FILE = new Buffer( 0 );
+
+        private final byte[] mBytes;
+        private int mLength;
+        private Throwable mFailure;
+
+        private Buffer( int pSize ) {
+            mBytes = new byte[pSize];
+        }
+
+        private static Buffer failed( Throwable pFailure ) {
+            Buffer zBuffer = new Buffer( 0 );
+            zBuffer.mFailure = pFailure;
+            return zBuffer;
+        }
+
+        /**
+         * @return the number of bytes read, which will be less than the size only at End-Of-File.
+         */
+        private int fill( InputStream pSource )
+                throws IOException {
+            mLength = 0;
+            for ( int zRead; mLength < mBytes.length; mLength += zRead ) {
+                if ( -1 == (zRead = pSource.read( mBytes, mLength, mBytes.length - mLength )) ) {
+                    break;
+                }
+            }
+            return mLength;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package org.litesoft.server.util;
+
+import org.litesoft.commonfoundation.indent.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * Progress reporting that stays off the hot path, so a slow console (e.g. a CI log pipe) does not hold up the work: the entries are
+ * counted w/o locks (see entry), and a daemon thread prints (every Interval) a summary of the files & MB so far, their rates, and, if
+ * the Source can tell (see Source), the percent of it consumed & an ETA.
+ * <p/>
+ * In Verbose mode the name of each entry is also listed (by the same thread, so also asynchronously); notes (e.g. from the TAR reader)
+ * are always listed.
+ * <p/>
+ * Thread Safe.
+ */
+public class Progress implements Closeable {
+    public static final int DEFAULT_INTERVAL_SECONDS = 10;
+
+    private static final long DRAIN_NANOS = 100L * 1000000; // 100ms
+    private static final double MB = 1024.0 * 1024;
+
+    /**
+     * A Source (e.g. a RelativeFileIterator) that can tell how much of it has been consumed.
+     */
+    public interface Source {
+        /**
+         * @return the fraction (0.0 to 1.0) of the Source consumed so far, -1 if not known.
+         */
+        double getFractionConsumed();
+
+        /**
+         * Route any notes (e.g. about unusual entries) to pProgress (see Progress.note).
+         */
+        void setProgress( Progress pProgress );
+    }
+
+    private final IndentableWriter mConsole;
+    private final long mIntervalNanos;
+    private final boolean mVerbose;
+    private final long mStartedNanos = System.nanoTime();
+    private final AtomicLong mEntries = new AtomicLong();
+    private final AtomicLong mBytes = new AtomicLong();
+    private final Queue<String> mLines = new ConcurrentLinkedQueue<String>();
+    private final Thread mThread;
+    private volatile Source mSource;
+    private volatile boolean mClosed;
+
+    /**
+     * @param pIntervalSeconds 0 means no summaries (only the final one, on close)
+     * @param pVerbose         true to list each entry's name
+     */
+    public Progress( IndentableWriter pConsole, int pIntervalSeconds, boolean pVerbose ) {
+        mConsole = pConsole;
+        mIntervalNanos = pIntervalSeconds * 1000000000L;
+        mVerbose = pVerbose;
+        mThread = new Thread( new Runnable() {
+            @Override
+            public void run() {
+                report();
+            }
+        }, "Progress" );
+        mThread.setDaemon( true );
+        mThread.start();
+    }
+
+    /**
+     * If pSourceFiles is a Source, the summaries include how much of it has been consumed, and its notes are listed.
+     */
+    public void watch( Object pSourceFiles ) {
+        if ( pSourceFiles instanceof Source ) {
+            (mSource = (Source) pSourceFiles).setProgress( this );
+        }
+    }
+
+    /**
+     * An entry done (the hot path).
+     *
+     * @param pSize the entry's (uncompressed) size
+     */
+    public void entry( String pName, long pSize ) {
+        mEntries.incrementAndGet();
+        mBytes.addAndGet( pSize );
+        if ( mVerbose ) {
+            mLines.add( pName );
+        }
+    }
+
+    /**
+     * A message to list (regardless of Verbose mode).
+     */
+    public void note( String pMessage ) {
+        mLines.add( pMessage );
+    }
+
+    public long getEntries() {
+        return mEntries.get();
+    }
+
+    public long getBytes() {
+        return mBytes.get();
+    }
+
+    private void report() {
+        long zNextSummary = mStartedNanos + mIntervalNanos;
+        while ( !mClosed ) {
+            LockSupport.parkNanos( DRAIN_NANOS );
+            drain();
+            if ( (mIntervalNanos != 0) && (System.nanoTime() - zNextSummary >= 0) ) {
+                mConsole.printLn( summary( false ) );
+                zNextSummary += mIntervalNanos;
+            }
+        }
+    }
+
+    private void drain() {
+        for ( String zLine; null != (zLine = mLines.poll()); ) {
+            mConsole.printLn( zLine );
+        }
+    }
+
+    private String summary( boolean pFinal ) {
+        long zNanos = Math.max( 1, System.nanoTime() - mStartedNanos );
+        double zSeconds = zNanos / 1e9;
+        long zEntries = mEntries.get();
+        double zMB = mBytes.get() / MB;
+        StringBuilder sb = new StringBuilder( pFinal ? "Done: " : "Progress: " );
+        sb.append( zEntries ).append( " files (" ).append( format( zEntries / zSeconds ) ).append( " files/s), " );
+        sb.append( format( zMB ) ).append( " MB (" ).append( format( zMB / zSeconds ) ).append( " MB/s)" );
+        if ( pFinal ) {
+            return sb.append( " in " ).append( format( zSeconds ) ).append( " secs" ).toString();
+        }
+        Source zSource = mSource;
+        double zFraction = (zSource == null) ? -1 : zSource.getFractionConsumed();
+        if ( zFraction >= 0 ) {
+            sb.append( ", " ).append( format( zFraction * 100 ) ).append( "% of the Source" );
+            if ( zFraction > 0 ) {
+                long zRemainingSeconds = (long) (zSeconds * (1 - zFraction) / zFraction);
+                sb.append( ", ETA " ).append( String.format( Locale.US, "%d:%02d", zRemainingSeconds / 60, zRemainingSeconds % 60 ) );
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String format( double pValue ) {
+        return String.format( Locale.US, "%.1f", pValue );
+    }
+
+    /**
+     * Stop the reporting thread, list anything still queued, and print the final summary.
+     */
+    @Override
+    public void close() {
+        if ( mClosed ) {
+            return;
+        }
+        mClosed = true;
+        LockSupport.unpark( mThread );
+        try {
+            mThread.join();
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+        mConsole.printLn( summary( true ) );
+    }
+}
@@ -0,0 +1,65 @@
+package org.litesoft.server.util;
+
+import java.nio.*;
+import java.util.*;
+
+/**
+ * A pool of fixed size "slabs" (ByteBuffers - on the heap, or optionally off-heap "direct") for buffering data in memory (see SlabbedBytes),
+ * which are returned to the pool (instead of becoming garbage) once the data is no longer needed, so the heap stays flat no matter how many
+ * entries are buffered over time.
+ * <p/>
+ * At most MaxPooled free slabs are kept; any released beyond that are left to the GC.
+ * <p/>
+ * Thread Safe - slabs are typically acquired on one thread and released on another.
+ */
+public class SlabPool {
+    public static final int DEFAULT_SLAB_SIZE = 1024 * 64; // 64K
+
+    private final int mSlabSize;
+    private final int mMaxPooled;
+    private final boolean mDirect;
+    private final Deque<ByteBuffer> mFree = new ArrayDeque<ByteBuffer>();
+    private long mAllocated;
+
+    public SlabPool( int pSlabSize, int pMaxPooled, boolean pDirect ) {
+        mSlabSize = pSlabSize;
+        mMaxPooled = pMaxPooled;
+        mDirect = pDirect;
+    }
+
+    public SlabPool( int pMaxPooled ) {
+        this( DEFAULT_SLAB_SIZE, pMaxPooled, false );
+    }
+
+    public int getSlabSize() {
+        return mSlabSize;
+    }
+
+    /**
+     * @return the number of slabs ever allocated (a measure of the peak memory used).
+     */
+    public synchronized long getAllocated() {
+        return mAllocated;
+    }
+
+    /**
+     * @return a cleared slab.
+     */
+    public ByteBuffer acquire() {
+        synchronized ( this ) {
+            ByteBuffer zSlab = mFree.pollLast(); // Most recently released is most likely still in the CPU cache
+            if ( zSlab != null ) {
+                zSlab.clear();
+                return zSlab;
+            }
+            mAllocated++;
+        }
+        return mDirect ? ByteBuffer.allocateDirect( mSlabSize ) : ByteBuffer.allocate( mSlabSize );
+    }
+
+    public synchronized void release( ByteBuffer pSlab ) {
+        if ( mFree.size() < mMaxPooled ) {
+            mFree.addLast( pSlab );
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.litesoft.server.util;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+/**
+ * Bytes buffered in memory in (pooled) slabs (see SlabPool), which can be read (open) any number of times until disposed, at which point
+ * the slabs are returned to the pool.
+ */
+public class SlabbedBytes implements BufferedBytes {
+    private final SlabPool mPool;
+    private ByteBuffer[] mSlabs;
+    private final long mLength;
+
+    private SlabbedBytes( SlabPool pPool, ByteBuffer[] pSlabs, long pLength ) {
+        mPool = pPool;
+        mSlabs = pSlabs;
+        mLength = pLength;
+    }
+
+    /**
+     * Read the InputStream (to End-Of-File) into slabs from the pool.
+     */
+    public static SlabbedBytes readFrom( InputStream pInputStream, SlabPool pPool )
+            throws IOException {
+        return readFrom( pInputStream, -1, pPool );
+    }
+
+    /**
+     * Read exactly pSize bytes (or to End-Of-File if pSize is negative) from the InputStream into slabs from the pool.
+     * <p/>
+     * With a known size, no (empty) slab is acquired just to find the End-Of-File.
+     */
+    public static SlabbedBytes readFrom( InputStream pInputStream, long pSize, SlabPool pPool )
+            throws IOException {
+        ByteBuffer[] zSlabs = new ByteBuffer[4];
+        int zCount = 0;
+        long zLength = 0;
+        byte[] zTransfer = null;
+        try {
+            for ( ByteBuffer zSlab = null; (pSize < 0) || (zLength < pSize); ) {
+                if ( (zSlab == null) || !zSlab.hasRemaining() ) {
+                    if ( zCount == zSlabs.length ) {
+                        zSlabs = Arrays.copyOf( zSlabs, zCount * 2 );
+                    }
+                    zSlabs[zCount++] = zSlab = pPool.acquire();
+                }
+                int zWant = (pSize < 0) ? zSlab.remaining() : (int) Math.min( zSlab.remaining(), pSize - zLength );
+                int zRead;
+                if ( zSlab.hasArray() ) {
+                    zRead = pInputStream.read( zSlab.array(), zSlab.arrayOffset() + zSlab.position(), zWant );
+                    if ( zRead > 0 ) {
+                        zSlab.position( zSlab.position() + zRead );
+                    }
+                } else {
+                    if ( zTransfer == null ) {
+                        zTransfer = new byte[Math.min( pPool.getSlabSize(), IOBlock.BLOCK_SIZE )];
+                    }
+                    if ( 0 < (zRead = pInputStream.read( zTransfer, 0, Math.min( zTransfer.length, zWant ) )) ) {
+                        zSlab.put( zTransfer, 0, zRead );
+                    }
+                }
+                if ( zRead == -1 ) {
+                    if ( pSize < 0 ) {
+                        break;
+                    }
+                    throw new EOFException( "Expected " + pSize + " bytes, but only got: " + zLength );
+                }
+                zLength += zRead;
+            }
+        }
+        catch ( IOException e ) {
+            release( pPool, zSlabs, zCount );
+            throw e;
+        }
+        for ( int i = 0; i < zCount; i++ ) {
+            zSlabs[i].flip();
+        }
+        return new SlabbedBytes( pPool, Arrays.copyOf( zSlabs, zCount ), zLength );
+    }
+
+    @Override
+    public long getLength() {
+        return mLength;
+    }
+
+    @Override
+    public InputStream open() {
+        ByteBuffer[] zSlabs = mSlabs;
+        if ( zSlabs == null ) {
+            throw new IllegalStateException( "Already disposed" );
+        }
+        return new ByteBuffersInputStream( zSlabs );
+    }
+
+    /**
+     * Return the slabs to the pool (after which it can no longer be opened).
+     */
+    @Override
+    public void dispose() {
+        ByteBuffer[] zSlabs;
+        synchronized ( this ) {
+            zSlabs = mSlabs;
+            mSlabs = null;
+        }
+        if ( zSlabs != null ) {
+            release( mPool, zSlabs, zSlabs.length );
+        }
+    }
+
+    private static void release( SlabPool pPool, ByteBuffer[] pSlabs, int pCount ) {
+        for ( int i = 0; i < pCount; i++ ) {
+            pPool.release( pSlabs[i] );
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package org.litesoft.server.util;
+
+import org.litesoft.commonfoundation.base.*;
+import org.litesoft.commonfoundation.exceptions.*;
+import org.litesoft.server.file.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+/**
+ * Buffers data (of a known size) in memory (pooled slabs, see SlabPool) while the total in memory stays within the Memory Budget, and
+ * otherwise "spills" it to a single spill file (created, on first need, in the Spill Directory), which is memory-mapped for reading.
+ * <p/>
+ * The space (memory or spill file region) is reclaimed when the BufferedBytes are disposed, and the spill file's regions are reused
+ * (first fit), so the spill file only grows to the peak of the spilled (but not yet disposed) data.  The spill file is deleted on dispose.
+ * <p/>
+ * Thread Safe - data is typically buffered on one thread, and read & disposed on others.
+ */
+public class SpillManager implements Disposable {
+    public static final long DEFAULT_MEMORY_BUDGET = 1024L * 1024 * 64; // 64MB
+    public static final int MAX_POOLED_SLABS = 1024; // 64MB of 64K slabs
+
+    private static final long MAX_MAP_SIZE = 1024L * 1024 * 1024; // 1GB per mapping
+
+    private final long mMemoryBudget;
+    private final File mSpillDir;
+    private final SlabPool mSlabPool;
+    private final TreeMap<Long, Long> mSpilledRegions = new TreeMap<Long, Long>(); // Offset -> Length
+    private long mInMemory;
+    private long mSpilled;
+    private File mSpillFile;
+    private FileChannel mSpillChannel;
+
+    /**
+     * @param pSpillDir null means the default temporary-file directory.
+     */
+    public SpillManager( long pMemoryBudget, File pSpillDir ) {
+        mMemoryBudget = pMemoryBudget;
+        mSpillDir = pSpillDir;
+        mSlabPool = new SlabPool( (int) Math.min( MAX_POOLED_SLABS, pMemoryBudget / SlabPool.DEFAULT_SLAB_SIZE ) );
+    }
+
+    public SpillManager() {
+        this( DEFAULT_MEMORY_BUDGET, null );
+    }
+
+    public synchronized long getInMemory() {
+        return mInMemory;
+    }
+
+    /**
+     * @return the total bytes spilled so far (even if since disposed).
+     */
+    public synchronized long getSpilled() {
+        return mSpilled;
+    }
+
+    /**
+     * @return the size of the spill file (0 if nothing has been spilled).
+     */
+    public synchronized long getSpillFileSize() {
+        return (mSpillChannel == null) ? 0 : spillFileSize();
+    }
+
+    private long spillFileSize() {
+        try {
+            return mSpillChannel.size();
+        }
+        catch ( IOException e ) {
+            return 0;
+        }
+    }
+
+    /**
+     * Buffer pSize bytes (which MUST be exactly what is left in the InputStream).
+     */
+    public BufferedBytes buffer( InputStream pInputStream, long pSize )
+            throws IOException {
+        long zMemory = inMemoryCharge( pSize );
+        if ( reserveMemory( zMemory ) ) {
+            try {
+                return new InMemory( SlabbedBytes.readFrom( pInputStream, pSize, mSlabPool ), zMemory );
+            }
+            catch ( IOException e ) {
+                releaseMemory( zMemory );
+                throw e;
+            }
+        }
+        return spill( pInputStream, pSize );
+    }
+
+    private long inMemoryCharge( long pSize ) {
+        long zSlabSize = mSlabPool.getSlabSize();
+        return ((pSize + zSlabSize - 1) / zSlabSize) * zSlabSize; // The known size is read, so no extra (empty) slab for End-Of-File
+    }
+
+    private synchronized boolean reserveMemory( long pBytes ) {
+        if ( mInMemory + pBytes > mMemoryBudget ) {
+            return false;
+        }
+        mInMemory += pBytes;
+        return true;
+    }
+
+    private synchronized void releaseMemory( long pBytes ) {
+        mInMemory -= pBytes;
+    }
+
+    /**
+     * Only the region allocation (and the spill file creation) is done under the lock, as positional writes (to the allocated region)
+     * are Thread Safe.
+     */
+    private BufferedBytes spill( InputStream pInputStream, long pSize )
+            throws IOException {
+        if ( pSize == 0 ) {
+            return new Spilled( -1, 0 ); // Nothing to write (or map)
+        }
+        FileChannel zChannel;
+        long zOffset;
+        synchronized ( this ) {
+            zChannel = spillChannel();
+            zOffset = allocate( pSize );
+        }
+        try {
+            byte[] zTransfer = new byte[(int) Math.min( IOBlock.BLOCK_SIZE, pSize )];
+            for ( long zWritten = 0; zWritten < pSize; ) {
+                int zRead = pInputStream.read( zTransfer, 0, (int) Math.min( zTransfer.length, pSize - zWritten ) );
+                if ( zRead == -1 ) {
+                    throw new EOFException( "Expected " + pSize + " bytes, but only got: " + zWritten );
+                }
+                for ( ByteBuffer zBuffer = ByteBuffer.wrap( zTransfer, 0, zRead ); zBuffer.hasRemaining(); ) {
+                    zChannel.write( zBuffer, zOffset + zWritten + zBuffer.position() );
+                }
+                zWritten += zRead;
+            }
+        }
+        catch ( IOException e ) {
+            free( zOffset );
+            throw e;
+        }
+        addSpilled( pSize );
+        return new Spilled( zOffset, pSize );
+    }
+
+    private synchronized void addSpilled( long pBytes ) {
+        mSpilled += pBytes;
+    }
+
+    private FileChannel spillChannel()
+            throws IOException {
+        if ( mSpillChannel == null ) {
+            if ( mSpillDir != null ) {
+                FileUtils.insure( mSpillDir );
+            }
+            mSpillFile = File.createTempFile( "spill-", ".tmp", mSpillDir );
+            mSpillFile.deleteOnExit();
+            mSpillChannel = new RandomAccessFile( mSpillFile, "rw" ).getChannel();
+        }
+        return mSpillChannel;
+    }
+
+    /**
+     * First fit.
+     */
+    private long allocate( long pSize ) {
+        long zAt = 0;
+        for ( Map.Entry<Long, Long> zRegion : mSpilledRegions.entrySet() ) {
+            if ( (zRegion.getKey() - zAt) >= pSize ) {
+                break;
+            }
+            zAt = zRegion.getKey() + zRegion.getValue();
+        }
+        mSpilledRegions.put( zAt, pSize );
+        return zAt;
+    }
+
+    private synchronized void free( long pOffset ) {
+        mSpilledRegions.remove( pOffset );
+    }
+
+    private synchronized ByteBuffer[] map( long pOffset, long pLength )
+            throws IOException {
+        if ( mSpillChannel == null ) {
+            throw new IOException( "Spill file already disposed" );
+        }
+        ByteBuffer[] zMaps = new ByteBuffer[(int) ((pLength + MAX_MAP_SIZE - 1) / MAX_MAP_SIZE)];
+        for ( int i = 0; i < zMaps.length; i++ ) {
+            long zFrom = i * MAX_MAP_SIZE;
+            zMaps[i] = mSpillChannel.map( FileChannel.MapMode.READ_ONLY, pOffset + zFrom, Math.min( MAX_MAP_SIZE, pLength - zFrom ) );
+        }
+        return zMaps;
+    }
+
+    /**
+     * Delete the spill file (if it can't be deleted now, it is deleted on exit, so this never throws and masks an earlier problem).
+     */
+    @Override
+    public synchronized void dispose() {
+        mSpilledRegions.clear();
+        if ( mSpillChannel != null ) {
+            Closeables.dispose( mSpillChannel );
+            mSpillChannel = null;
+            mSpillFile.delete(); // Registered w/ deleteOnExit
+        }
+    }
+
+    private class InMemory implements BufferedBytes {
+        private final SlabbedBytes mBytes;
+        private final long mCharged;
+        private boolean mDisposed;
+
+        private InMemory( SlabbedBytes pBytes, long pCharged ) {
+            mBytes = pBytes;
+            mCharged = pCharged;
+        }
+
+        @Override
+        public long getLength() {
+            return mBytes.getLength();
+        }
+
+        @Override
+        public InputStream open() {
+            return mBytes.open();
+        }
+
+        @Override
+        public synchronized void dispose() {
+            if ( !mDisposed ) {
+                mDisposed = true;
+                mBytes.dispose();
+                releaseMemory( mCharged );
+            }
+        }
+    }
+
+    private class Spilled implements BufferedBytes {
+        private final long mOffset;
+        private final long mLength;
+        private boolean mDisposed;
+
+        private Spilled( long pOffset, long pLength ) {
+            mOffset = pOffset;
+            mLength = pLength;
+        }
+
+        @Override
+        public long getLength() {
+            return mLength;
+        }
+
+        @Override
+        public synchronized InputStream open() {
+            if ( mDisposed ) {
+                throw new IllegalStateException( "Already disposed" );
+            }
+            if ( mLength == 0 ) {
+                return new ByteBuffersInputStream();
+            }
+            try {
+                return new ByteBuffersInputStream( map( mOffset, mLength ) );
+            }
+            catch ( IOException e ) {
+                throw new FileSystemException( e );
+            }
+        }
+
+        @Override
+        public synchronized void dispose() {
+            if ( !mDisposed ) {
+                mDisposed = true;
+                if ( mLength != 0 ) {
+                    free( mOffset );
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.ice.tar;
+
+import org.junit.*;
+import org.litesoft.packageversionedzip.*;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * The (lazily decoded) GNU extensions: long names (a "././@LongLink" entry holding the name of the next entry), and base-256 (binary)
+ * sizes.
+ */
+public class TarInputStreamTest {
+    private static final long SIZE_8GB = 1024L * 1024 * 1024 * 8;
+
+    private static final String LONG_NAME = "top/a-rather-long-directory-name/another-rather-long-directory-name/" +
+                                            "and-one-more-for-good-measure/and-then-the-file.txt";
+
+    @Test
+    public void longNames()
+            throws IOException {
+        assertTrue( LONG_NAME.length() > TarHeader._name.getLength() );
+        ByteArrayOutputStream zTar = new ByteArrayOutputStream();
+        byte[] zData1 = data( 1000, 1 );
+        byte[] zData2 = data( TestData.TAR_RECORD_SIZE, 2 );
+        TestData.addTarEntry( zTar, LONG_NAME, zData1 );
+        TestData.addTarEntry( zTar, "top/short.txt", zData2 );
+        TestData.addTarEntry( zTar, LONG_NAME + ".2", new byte[0] );
+
+        TarInputStream zInputStream = new TarInputStream( new ByteArrayInputStream( TestData.endTar( zTar ) ) );
+        try {
+            assertEntry( zInputStream, LONG_NAME, zData1 );
+            assertEntry( zInputStream, "top/short.txt", zData2 );
+            assertEntry( zInputStream, LONG_NAME + ".2", new byte[0] );
+            assertNull( zInputStream.getNextEntry() );
+        }
+        finally {
+            zInputStream.close();
+        }
+    }
+
+    @Test
+    public void base256Sizes()
+            throws IOException {
+        ByteArrayOutputStream zTar = new ByteArrayOutputStream();
+        byte[] zData1 = data( 1234, 1 );
+        byte[] zData2 = data( 100, 2 );
+        TestData.addTarEntry( zTar, base256Size( TestData.tarHeader( "top/binary-size.bin", 0, '0' ), zData1.length ), zData1 );
+        TestData.addTarEntry( zTar, "top/octal-size.bin", zData2 );
+
+        TarInputStream zInputStream = new TarInputStream( new ByteArrayInputStream( TestData.endTar( zTar ) ) );
+        try {
+            assertEntry( zInputStream, "top/binary-size.bin", zData1 );
+            assertEntry( zInputStream, "top/octal-size.bin", zData2 );
+            assertNull( zInputStream.getNextEntry() );
+        }
+        finally {
+            zInputStream.close();
+        }
+    }
+
+    @Test
+    public void base256SizeOf8GBOrMore()
+            throws IOException {
+        for ( long zSize : new long[]{SIZE_8GB, SIZE_8GB * 3 + 12345, Long.MAX_VALUE} ) {
+            TarEntry zEntry = new TarEntry( base256Size( TestData.tarHeader( "top/huge.bin", 0, '0' ), zSize ) );
+            assertEquals( zSize, zEntry.getSize() );
+        }
+    }
+
+    @Test
+    public void base256SizeEntryHeaderInAStream()
+            throws IOException {
+        ByteArrayOutputStream zTar = new ByteArrayOutputStream();
+        zTar.write( base256Size( TestData.tarHeader( "top/huge.bin", 0, '0' ), SIZE_8GB + 1 ) );
+        zTar.write( new byte[TestData.TAR_BLOCK_SIZE - TestData.TAR_RECORD_SIZE] ); // Only the header (the data would be 8GB)
+
+        TarInputStream zInputStream = new TarInputStream( new ByteArrayInputStream( zTar.toByteArray() ) );
+        try {
+            TarEntry zEntry = zInputStream.getNextEntry();
+            assertEquals( "top/huge.bin", zEntry.getName() );
+            assertEquals( SIZE_8GB + 1, zEntry.getSize() );
+            assertEquals( SIZE_8GB + 1, zInputStream.getEntrySize() );
+            assertEquals( SIZE_8GB + 1, zInputStream.getEntryRemaining() );
+            assertEquals( Integer.MAX_VALUE, zInputStream.available() );
+        }
+        finally {
+            zInputStream.close();
+        }
+    }
+
+    private static void assertEntry( TarInputStream pInputStream, String pName, byte[] pData )
+            throws IOException {
+        TarEntry zEntry = pInputStream.getNextEntry();
+        assertNotNull( "Expected: " + pName, zEntry );
+        assertEquals( pName, zEntry.getName() );
+        assertEquals( pName, pData.length, zEntry.getSize() );
+        ByteArrayOutputStream zData = new ByteArrayOutputStream();
+        pInputStream.copyEntryContents( zData );
+        assertArrayEquals( pName, pData, zData.toByteArray() );
+    }
+
+    private static byte[] data( int pSize, long pSeed ) {
+        byte[] zBytes = new byte[pSize];
+        new Random( pSeed ).nextBytes( zBytes );
+        return zBytes;
+    }
+
+    /**
+     * @return pHeader w/ its size replaced by pSize in base-256 (as GNU tar writes sizes of 8GB or more), and its checksum updated.
+     */
+    private static byte[] base256Size( byte[] pHeader, long pSize ) {
+        int zOffset = TarHeader._size.getOffset();
+        int zLength = TarHeader._size.getLength();
+        Arrays.fill( pHeader, zOffset, zOffset + zLength, (byte) 0 );
+        for ( int i = zOffset + zLength - 1; i > zOffset; i-- ) {
+            pHeader[i] = (byte) pSize;
+            pSize >>>= 8;
+        }
+        pHeader[zOffset] = (byte) 0x80;
+        return TestData.tarCheckSum( pHeader );
+    }
+}
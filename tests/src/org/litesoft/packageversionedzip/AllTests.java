@@ -0,0 +1,16 @@
+package org.litesoft.packageversionedzip;
+
+import com.ice.tar.*;
+import org.junit.runner.*;
+import org.junit.runners.*;
+
+/**
+ * All the tests, e.g. "java -jar PackageVersionedZipTests.jar".
+ */
+@RunWith(Suite.class)
+@Suite.SuiteClasses({ZipWriterTest.class, ZipFileCreatorTest.class, CRC32sTest.class, TarInputStreamTest.class, DeflateCacheTest.class, CompressionPolicyTest.class})
+public class AllTests {
+    public static void main( String[] args ) {
+        JUnitCore.main( AllTests.class.getName() );
+    }
+}
@@ -0,0 +1,43 @@
+package org.litesoft.packageversionedzip;
+
+import org.junit.*;
+
+import java.util.zip.*;
+
+import static org.junit.Assert.*;
+
+public class CRC32sTest {
+    private static final byte[] DATA = TestData.incompressible( 1024 * 70, 1 );
+
+    @Test
+    public void combineMatchesTheCRCOfTheConcatenatedData() {
+        long zExpected = crc( 0, DATA.length );
+        for ( int zSplit : new int[]{1, 2, 7, 1000, 1024 * 32, 1024 * 64 + 3, DATA.length - 1} ) {
+            long zCombined = CRC32s.combine( crc( 0, zSplit ), crc( zSplit, DATA.length ), DATA.length - zSplit );
+            assertEquals( "Split at " + zSplit, zExpected, zCombined );
+        }
+    }
+
+    @Test
+    public void combineOfManyBlocks() {
+        long zCRC = 0;
+        for ( int zFrom = 0; zFrom < DATA.length; zFrom += 4099 ) {
+            int zTo = Math.min( DATA.length, zFrom + 4099 );
+            zCRC = CRC32s.combine( zCRC, crc( zFrom, zTo ), zTo - zFrom );
+        }
+        assertEquals( crc( 0, DATA.length ), zCRC );
+    }
+
+    @Test
+    public void combineWithEmptyBlocks() {
+        long zCRC = crc( 0, 100 );
+        assertEquals( zCRC, CRC32s.combine( zCRC, crc( 100, 100 ), 0 ) );
+        assertEquals( zCRC, CRC32s.combine( crc( 0, 0 ), zCRC, 100 ) );
+    }
+
+    private static long crc( int pFrom, int pTo ) {
+        CRC32 zCRC = new CRC32();
+        zCRC.update( DATA, pFrom, pTo - pFrom );
+        return zCRC.getValue();
+    }
+}
@@ -0,0 +1,51 @@
+package org.litesoft.packageversionedzip;
+
+import org.junit.*;
+
+import java.io.*;
+import java.util.zip.*;
+
+import static org.junit.Assert.*;
+
+public class CompressionPolicyTest {
+    private static final byte[] TEXT = TestData.compressible( 1024 * 20, 1 );
+    private static final byte[] RANDOM = TestData.incompressible( 1024 * 20, 2 );
+
+    @Test
+    public void deflateNeverSamples()
+            throws IOException {
+        InputStream zInputStream = new ByteArrayInputStream( RANDOM );
+        CompressionPolicy.Choice zChoice = CompressionPolicy.DEFLATE.choose( "random.png", zInputStream );
+        assertEquals( Deflater.DEFAULT_COMPRESSION, zChoice.getLevel() );
+        assertSame( zInputStream, zChoice.getInputStream() );
+    }
+
+    @Test
+    public void autoStoresCompressedExtensionsWithoutSampling()
+            throws IOException {
+        InputStream zInputStream = new ByteArrayInputStream( TEXT );
+        CompressionPolicy.Choice zChoice = CompressionPolicy.AUTO.choose( "dir/Some.JAR", zInputStream );
+        assertEquals( CompressionPolicy.STORED, zChoice.getLevel() );
+        assertSame( zInputStream, zChoice.getInputStream() );
+    }
+
+    @Test
+    public void autoSamplesTheOthers()
+            throws IOException {
+        assertChoice( CompressionPolicy.STORED, "random.bin", RANDOM );
+        assertChoice( Deflater.DEFAULT_COMPRESSION, "text.txt", TEXT );
+        assertChoice( Deflater.DEFAULT_COMPRESSION, "empty.txt", new byte[0] );
+        byte[] zTooSmall = TestData.incompressible( CompressionPolicy.MIN_SAMPLE_SIZE - 1, 3 );
+        assertChoice( Deflater.DEFAULT_COMPRESSION, "too-small.bin", zTooSmall );
+    }
+
+    /**
+     * Also checks that the sampled data is still read in full.
+     */
+    private static void assertChoice( int pExpectedLevel, String pName, byte[] pData )
+            throws IOException {
+        CompressionPolicy.Choice zChoice = CompressionPolicy.AUTO.choose( pName, new ByteArrayInputStream( pData ) );
+        assertEquals( pName, pExpectedLevel, zChoice.getLevel() );
+        assertArrayEquals( pName, pData, TestData.read( zChoice.getInputStream() ) );
+    }
+}
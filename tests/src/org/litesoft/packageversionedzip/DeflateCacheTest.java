@@ -0,0 +1,225 @@
+package org.litesoft.packageversionedzip;
+
+import org.junit.*;
+import org.litesoft.commonfoundation.exceptions.*;
+import org.litesoft.server.file.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import static org.junit.Assert.*;
+
+public class DeflateCacheTest {
+    private static final int LEVEL = Deflater.DEFAULT_COMPRESSION;
+    private static final long HOUR_MILLIS = 60L * 60 * 1000;
+
+    private File mDir;
+    private EntryDeflater mDeflater;
+
+    @Before
+    public void setUp()
+            throws IOException {
+        mDir = TestData.newTempDir();
+        mDeflater = new EntryDeflater( LEVEL );
+    }
+
+    @After
+    public void tearDown() {
+        mDeflater.dispose();
+        TestData.delete( mDir );
+    }
+
+    @Test
+    public void missThenHit()
+            throws IOException {
+        byte[] zData = TestData.compressible( 1024 * 100, 1 );
+        DeflateCache zCache = new DeflateCache( mDir, Long.MAX_VALUE );
+        String zKey = zCache.keyFor( file( "a.txt", zData ) );
+        assertNull( zCache.get( zKey, LEVEL ) );
+
+        DeflatedEntry zDeflated = deflate( zData );
+        zCache.put( zKey, LEVEL, zDeflated );
+        assertEquals( 1, zCache.getStored() );
+
+        DeflateCache.Cached zCached = zCache.get( zKey, LEVEL );
+        assertNotNull( zCached );
+        assertEquals( 1, zCache.getHits() );
+        assertEquals( zDeflated.getResult().getCRC(), zCached.getResult().getCRC() );
+        assertEquals( zData.length, zCached.getResult().getSize() );
+        assertEquals( zDeflated.getResult().getCompressedSize(), zCached.getResult().getCompressedSize() );
+
+        Bytes zWritten = new Bytes();
+        CompressionResult zResult = zCached.writeDeflatedTo( zWritten );
+        assertEquals( zCached.getResult().getCompressedSize(), zWritten.size() );
+        assertEquals( zCached.getResult().getCRC(), zResult.getCRC() );
+        assertArrayEquals( zData, inflate( zWritten.toByteArray() ) );
+        zCache.close();
+    }
+
+    @Test
+    public void keyedByContentAndLevel()
+            throws IOException {
+        byte[] zData = TestData.compressible( 1024 * 10, 1 );
+        DeflateCache zCache = new DeflateCache( mDir, Long.MAX_VALUE );
+        String zKey = zCache.keyFor( file( "a.txt", zData ) );
+        assertEquals( zKey, zCache.keyFor( file( "other/name.txt", zData ) ) );
+        assertFalse( zKey.equals( zCache.keyFor( file( "a.txt", TestData.compressible( 1024 * 10, 2 ) ) ) ) );
+
+        zCache.put( zKey, LEVEL, deflate( zData ) );
+        assertNull( zCache.get( zKey, Deflater.BEST_SPEED ) );
+        zCache.get( zKey, LEVEL ).dispose();
+        zCache.close();
+    }
+
+    @Test
+    public void truncatedEntryIsAMiss()
+            throws IOException {
+        byte[] zData = TestData.compressible( 1024 * 10, 1 );
+        DeflateCache zCache = new DeflateCache( mDir, Long.MAX_VALUE );
+        String zKey = zCache.keyFor( file( "a.txt", zData ) );
+        zCache.put( zKey, LEVEL, deflate( zData ) );
+        File zEntry = entries().get( 0 );
+        RandomAccessFile zFile = new RandomAccessFile( zEntry, "rw" );
+        try {
+            zFile.setLength( zEntry.length() - 1 );
+        }
+        finally {
+            zFile.close();
+        }
+        assertNull( zCache.get( zKey, LEVEL ) );
+        assertEquals( 0, zCache.getHits() );
+        zCache.close();
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedWhenOverTheCap()
+            throws IOException {
+        DeflateCache zCache = new DeflateCache( mDir, Long.MAX_VALUE );
+        String[] zKeys = putEntries( zCache, 3 );
+        long zEntryBytes = entries().get( 0 ).length();
+        zCache.close();
+
+        zCache = new DeflateCache( mDir, zEntryBytes * 7 / 2 ); // Room for 3 (and a half)
+        age( zKeys );
+        zCache.get( zKeys[0], LEVEL ).dispose(); // Now the most recently used
+        putEntries( zCache, 1, 3 ); // Over the cap, so evicts (down to 90% of the cap) the least recently used: 1
+
+        assertEquals( 3, entries().size() );
+        assertNotNull( "Recently used", cached( zCache, zKeys[0] ) );
+        assertNull( "Least recently used", cached( zCache, zKeys[1] ) );
+        assertNotNull( cached( zCache, zKeys[2] ) );
+        zCache.close();
+    }
+
+    @Test
+    public void evictsWhenOpened()
+            throws IOException {
+        DeflateCache zCache = new DeflateCache( mDir, Long.MAX_VALUE );
+        String[] zKeys = putEntries( zCache, 4 );
+        long zEntryBytes = entries().get( 0 ).length();
+        zCache.close();
+        age( zKeys );
+
+        zCache = new DeflateCache( mDir, zEntryBytes * 5 / 2 ); // Room for 2 (and a half)
+        assertEquals( 2, entries().size() );
+        assertNull( cached( zCache, zKeys[0] ) );
+        assertNull( cached( zCache, zKeys[1] ) );
+        assertNotNull( cached( zCache, zKeys[2] ) );
+        assertNotNull( cached( zCache, zKeys[3] ) );
+        zCache.close();
+    }
+
+    private String[] putEntries( DeflateCache pCache, int pCount )
+            throws IOException {
+        return putEntries( pCache, pCount, 0 );
+    }
+
+    /**
+     * Entries of the same (incompressible) size, so the same cache file size.
+     */
+    private String[] putEntries( DeflateCache pCache, int pCount, int pFirstSeed )
+            throws IOException {
+        String[] zKeys = new String[pCount];
+        for ( int i = 0; i < pCount; i++ ) {
+            byte[] zData = TestData.incompressible( 1024 * 10, pFirstSeed + i );
+            pCache.put( zKeys[i] = pCache.keyFor( file( "e" + i, zData ) ), LEVEL, deflate( zData ) );
+        }
+        return zKeys;
+    }
+
+    /**
+     * Make the entries' last use (an hour apart) older than now, in pKeys order (the first is the oldest).
+     */
+    private void age( String[] pKeys ) {
+        long zNow = System.currentTimeMillis();
+        for ( File zEntry : entries() ) {
+            for ( int i = 0; i < pKeys.length; i++ ) {
+                if ( zEntry.getName().startsWith( pKeys[i] ) ) {
+                    assertTrue( zEntry.setLastModified( zNow - (pKeys.length - i) * HOUR_MILLIS ) );
+                }
+            }
+        }
+    }
+
+    private static DeflateCache.Cached cached( DeflateCache pCache, String pKey )
+            throws IOException {
+        DeflateCache.Cached zCached = pCache.get( pKey, LEVEL );
+        if ( zCached != null ) {
+            zCached.dispose();
+        }
+        return zCached;
+    }
+
+    private List<File> entries() {
+        List<File> zEntries = new ArrayList<File>();
+        for ( File zSubDir : mDir.listFiles() ) {
+            for ( File zEntry : zSubDir.listFiles() ) {
+                zEntries.add( zEntry );
+            }
+        }
+        return zEntries;
+    }
+
+    private DeflatedEntry deflate( byte[] pData )
+            throws IOException {
+        return new DeflatedEntry( "entry" ).deflate( new ByteArrayInputStream( pData ), mDeflater );
+    }
+
+    private static byte[] inflate( byte[] pDeflated )
+            throws IOException {
+        return TestData.read( new InflaterInputStream( new ByteArrayInputStream( pDeflated ), new Inflater( true ) ) );
+    }
+
+    private static RelativeFile file( String pPath, final byte[] pData ) {
+        return new SizedRelativeFile( pPath, pData.length ) {
+            @Override
+            public InputStream open()
+                    throws FileSystemException {
+                return new ByteArrayInputStream( pData );
+            }
+        };
+    }
+
+    private static class Bytes extends GatheringOutputStream {
+        private final ByteArrayOutputStream mBytes = new ByteArrayOutputStream();
+
+        @Override
+        public void write( int pByte ) {
+            mBytes.write( pByte );
+        }
+
+        @Override
+        public void write( byte[] pBytes, int pOffset, int pLength ) {
+            mBytes.write( pBytes, pOffset, pLength );
+        }
+
+        public int size() {
+            return mBytes.size();
+        }
+
+        public byte[] toByteArray() {
+            return mBytes.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package org.litesoft.packageversionedzip;
+
+import com.ice.tar.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Deterministic (seeded) data, (GNU) tar archives, & temporary directories for the tests.
+ */
+public class TestData {
+    public static final int TAR_RECORD_SIZE = TarHeader.HEADER_LENGTH;
+    public static final int TAR_BLOCK_SIZE = TAR_RECORD_SIZE * 20; // The tar default
+
+    /**
+     * @return pSize bytes of text like (deflatable) data.
+     */
+    public static byte[] compressible( int pSize, long pSeed ) {
+        Random zRandom = new Random( pSeed );
+        byte[] zBytes = new byte[pSize];
+        for ( int i = 0; i < pSize; i++ ) {
+            zBytes[i] = (byte) ((zRandom.nextInt( 8 ) == 0) ? ' ' : 'a' + zRandom.nextInt( 6 ));
+        }
+        return zBytes;
+    }
+
+    /**
+     * @return pSize bytes of random (not deflatable) data.
+     */
+    public static byte[] incompressible( int pSize, long pSeed ) {
+        byte[] zBytes = new byte[pSize];
+        new Random( pSeed ).nextBytes( zBytes );
+        return zBytes;
+    }
+
+    public static File newTempDir()
+            throws IOException {
+        File zDir = File.createTempFile( "pvz-test-", "" );
+        if ( !zDir.delete() || !zDir.mkdir() ) {
+            throw new IOException( "Unable to create: " + zDir );
+        }
+        return zDir;
+    }
+
+    public static void delete( File pFile ) {
+        File[] zFiles = pFile.listFiles();
+        if ( zFiles != null ) {
+            for ( File zFile : zFiles ) {
+                delete( zFile );
+            }
+        }
+        pFile.delete();
+    }
+
+    public static void write( File pFile, byte[] pData )
+            throws IOException {
+        if ( !pFile.getParentFile().isDirectory() && !pFile.getParentFile().mkdirs() ) {
+            throw new IOException( "Unable to create: " + pFile.getParentFile() );
+        }
+        OutputStream zOutputStream = new FileOutputStream( pFile );
+        try {
+            zOutputStream.write( pData );
+        }
+        finally {
+            zOutputStream.close();
+        }
+    }
+
+    public static byte[] read( InputStream pInputStream )
+            throws IOException {
+        try {
+            ByteArrayOutputStream zBytes = new ByteArrayOutputStream();
+            byte[] zBuffer = new byte[1024 * 8];
+            for ( int zRead; -1 != (zRead = pInputStream.read( zBuffer )); ) {
+                zBytes.write( zBuffer, 0, zRead );
+            }
+            return zBytes.toByteArray();
+        }
+        finally {
+            pInputStream.close();
+        }
+    }
+
+    /**
+     * Add a file entry to the tar being built in pTar, preceded by a GNU LongName entry if pName is too long for the header.
+     */
+    public static void addTarEntry( ByteArrayOutputStream pTar, String pName, byte[] pData )
+            throws IOException {
+        byte[] zName = pName.getBytes( "UTF-8" );
+        if ( zName.length >= TarHeader._name.getLength() ) {
+            byte[] zLongName = (pName + "\0").getBytes( "UTF-8" );
+            addTarEntry( pTar, tarHeader( "././@LongLink", zLongName.length, 'L' ), zLongName );
+            pName = pName.substring( 0, TarHeader._name.getLength() - 1 );
+        }
+        addTarEntry( pTar, tarHeader( pName, pData.length, '0' ), pData );
+    }
+
+    public static void addTarEntry( ByteArrayOutputStream pTar, byte[] pHeader, byte[] pData )
+            throws IOException {
+        pTar.write( pHeader );
+        pTar.write( pData );
+        pad( pTar, TAR_RECORD_SIZE );
+    }
+
+    /**
+     * @return the tar built in pTar, w/ the End-Of-Archive records added (padded to a whole block).
+     */
+    public static byte[] endTar( ByteArrayOutputStream pTar ) {
+        pTar.write( new byte[TAR_RECORD_SIZE * 2], 0, TAR_RECORD_SIZE * 2 );
+        pad( pTar, TAR_BLOCK_SIZE );
+        return pTar.toByteArray();
+    }
+
+    private static void pad( ByteArrayOutputStream pTar, int pMultiple ) {
+        int zPad = (pMultiple - (pTar.size() % pMultiple)) % pMultiple;
+        pTar.write( new byte[zPad], 0, zPad );
+    }
+
+    /**
+     * @return a GNU tar header (w/ its checksum).
+     */
+    public static byte[] tarHeader( String pName, long pSize, char pTypeFlag ) {
+        byte[] zHeader = new byte[TAR_RECORD_SIZE];
+        TarHeader.getNameBytes( new StringBuffer( pName ), zHeader, TarHeader._name.getOffset(), TarHeader._name.getLength() );
+        TarHeader.getOctalBytes( 0644, zHeader, TarHeader._mode.getOffset(), TarHeader._mode.getLength() );
+        TarHeader.getOctalBytes( 1000, zHeader, TarHeader._uid.getOffset(), TarHeader._uid.getLength() );
+        TarHeader.getOctalBytes( 1000, zHeader, TarHeader._gid.getOffset(), TarHeader._gid.getLength() );
+        TarHeader.getLongOctalBytes( pSize, zHeader, TarHeader._size.getOffset(), TarHeader._size.getLength() );
+        TarHeader.getLongOctalBytes( 1406332800L, zHeader, TarHeader._mtime.getOffset(), TarHeader._mtime.getLength() );
+        zHeader[TarHeader._typeflag.getOffset()] = (byte) pTypeFlag;
+        TarHeader.getNameBytes( new StringBuffer( "ustar  " ), zHeader, TarHeader._magic.getOffset(), 8 ); // GNU Magic & Version
+        TarHeader.getNameBytes( new StringBuffer( "tester" ), zHeader, TarHeader._uname.getOffset(), TarHeader._uname.getLength() );
+        TarHeader.getNameBytes( new StringBuffer( "tester" ), zHeader, TarHeader._gname.getOffset(), TarHeader._gname.getLength() );
+        return tarCheckSum( zHeader );
+    }
+
+    /**
+     * @return pHeader, w/ its checksum (re)computed.
+     */
+    public static byte[] tarCheckSum( byte[] pHeader ) {
+        long zCheckSum = 0;
+        for ( int i = 0; i < TAR_RECORD_SIZE; i++ ) {
+            boolean zInCheckSum = (TarHeader._chksum.getOffset() <= i) && (i < TarHeader._chksum.end());
+            zCheckSum += zInCheckSum ? ' ' : (pHeader[i] & 0xFF);
+        }
+        TarHeader.getCheckSumOctalBytes( zCheckSum, pHeader, TarHeader._chksum.getOffset(), TarHeader._chksum.getLength() );
+        return pHeader;
+    }
+}
@@ -0,0 +1,178 @@
+package org.litesoft.packageversionedzip;
+
+import org.junit.*;
+import org.litesoft.server.util.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.zip.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * The Zip is the same (byte for byte, except for the entries' DOS date & time) regardless of the number of Threads, for each type of
+ * Source: a Dir (w/ memory mapped and chunked files), a Zip (copied entries), and a ".gz" (buffered, spilled, and streamed entries).
+ */
+public class ZipFileCreatorTest {
+    private static final int THREADS = 4;
+    private static final int LARGE_FILE_MB = 1;
+    private static final String TAR_TOP = "top/";
+
+    private File mDir;
+    private Map<String, byte[]> mFiles;
+
+    @Before
+    public void setUp()
+            throws IOException {
+        mDir = TestData.newTempDir();
+        mFiles = files();
+    }
+
+    @After
+    public void tearDown() {
+        TestData.delete( mDir );
+    }
+
+    @Test
+    public void dirSource()
+            throws IOException {
+        File zSource = new File( mDir, "src" );
+        for ( Map.Entry<String, byte[]> zFile : mFiles.entrySet() ) {
+            TestData.write( new File( zSource, zFile.getKey() ), zFile.getValue() );
+        }
+        assertSameForAnyThreads( zSource, "" );
+    }
+
+    @Test
+    public void zipSource()
+            throws IOException {
+        File zSource = new File( mDir, "src.zip" );
+        ZipOutputStream zZip = new ZipOutputStream( new BufferedOutputStream( new FileOutputStream( zSource ) ) );
+        try {
+            int zIndex = 0;
+            for ( Map.Entry<String, byte[]> zFile : mFiles.entrySet() ) {
+                ZipEntry zEntry = new ZipEntry( zFile.getKey() );
+                if ( (zIndex++ % 3) == 0 ) { // Some Stored
+                    zEntry.setMethod( ZipEntry.STORED );
+                    zEntry.setSize( zFile.getValue().length );
+                    zEntry.setCrc( crc( zFile.getValue() ) );
+                }
+                zZip.putNextEntry( zEntry );
+                zZip.write( zFile.getValue() );
+                zZip.closeEntry();
+            }
+        }
+        finally {
+            zZip.close();
+        }
+        assertSameForAnyThreads( zSource, "" );
+    }
+
+    @Test
+    public void gzSource()
+            throws IOException {
+        ByteArrayOutputStream zTar = new ByteArrayOutputStream();
+        for ( Map.Entry<String, byte[]> zFile : mFiles.entrySet() ) {
+            TestData.addTarEntry( zTar, TAR_TOP + zFile.getKey(), zFile.getValue() );
+        }
+        File zSource = new File( mDir, "tst-1-x.gz" );
+        OutputStream zOutputStream = new GZIPOutputStream( new FileOutputStream( zSource ) );
+        try {
+            zOutputStream.write( TestData.endTar( zTar ) );
+        }
+        finally {
+            zOutputStream.close();
+        }
+        assertSameForAnyThreads( zSource, TAR_TOP );
+    }
+
+    private void assertSameForAnyThreads( File pSource, String pPrefix )
+            throws IOException {
+        File zZip = packageWith( pSource, 1 );
+        assertContents( zZip, pPrefix );
+        byte[] zExpected = withoutTimes( read( zZip ) );
+        for ( int zThreads = 2; zThreads <= THREADS; zThreads++ ) {
+            assertArrayEquals( "Threads=" + zThreads, zExpected, withoutTimes( read( packageWith( pSource, zThreads ) ) ) );
+        }
+    }
+
+    /**
+     * A small BufferMB (for a ".gz", so entries are spilled) and LargeFileMB (so the larger files are chunked).
+     */
+    private File packageWith( File pSource, int pThreads ) {
+        File zLocalVerDir = new File( mDir, "ver-" + pThreads );
+        String[] zArgs = {"Source=" + pSource.getPath(), "Target=tst", "Version=1", "LocalVerDir=" + zLocalVerDir.getPath(),
+                          "Threads=" + pThreads, "LargeFileMB=" + LARGE_FILE_MB, "BufferMB=1", "SpillDir=" + new File( mDir, "spill" ).getPath()};
+        new PackageVersionedZip( new Parameters( new ArgsToMap( zArgs ) ) ).run();
+        return new File( zLocalVerDir, "tst/1.zip" );
+    }
+
+    private void assertContents( File pZip, String pPrefix )
+            throws IOException {
+        ZipFile zZipFile = new ZipFile( pZip );
+        try {
+            assertEquals( mFiles.size() + 1, zZipFile.size() ); // + the version file
+            for ( Map.Entry<String, byte[]> zFile : mFiles.entrySet() ) {
+                ZipEntry zEntry = zZipFile.getEntry( pPrefix + zFile.getKey() );
+                assertNotNull( zFile.getKey(), zEntry );
+                assertArrayEquals( zFile.getKey(), zFile.getValue(), TestData.read( zZipFile.getInputStream( zEntry ) ) );
+            }
+        }
+        finally {
+            zZipFile.close();
+        }
+    }
+
+    /**
+     * Small text & random files, an empty one, one w/ a long (over 100 bytes) path, and large ones (chunked, and memory mapped when local).
+     */
+    private static Map<String, byte[]> files() {
+        Map<String, byte[]> zFiles = new LinkedHashMap<String, byte[]>();
+        Random zRandom = new Random( 1 );
+        for ( int i = 0; i < 40; i++ ) {
+            int zSize = zRandom.nextInt( 1024 * 32 );
+            zFiles.put( "small/f" + i + (((i & 1) == 0) ? ".txt" : ".bin"),
+                        ((i & 1) == 0) ? TestData.compressible( zSize, i ) : TestData.incompressible( zSize, i ) );
+        }
+        zFiles.put( "small/empty.txt", new byte[0] );
+        zFiles.put( "deep/a-rather-long-directory-name/another-rather-long-directory-name/and-one-more-for-good-measure/file.txt",
+                    TestData.compressible( 1024 * 10, 100 ) );
+        zFiles.put( "large/chunked.txt", TestData.compressible( 1024 * 1024 * 3 + 123, 101 ) );
+        byte[] zMixed = new byte[(int) ZipFileCreator.MIN_MAPPED_BYTES + 1024 * 1024];
+        System.arraycopy( TestData.compressible( zMixed.length / 2, 102 ), 0, zMixed, 0, zMixed.length / 2 );
+        System.arraycopy( TestData.incompressible( zMixed.length / 2, 103 ), 0, zMixed, zMixed.length / 2, zMixed.length / 2 );
+        zFiles.put( "large/mapped.dat", zMixed );
+        return zFiles;
+    }
+
+    /**
+     * @return pZip w/ the DOS date & time (of when it was written) of each Local & Central Directory header zeroed.
+     */
+    private static byte[] withoutTimes( byte[] pZip ) {
+        ByteBuffer zZip = ByteBuffer.wrap( pZip ).order( ByteOrder.LITTLE_ENDIAN );
+        int zEnd = pZip.length - 22; // No Zip64 or comment
+        assertEquals( 0x06054b50, zZip.getInt( zEnd ) );
+        int zCount = zZip.getShort( zEnd + 10 ) & 0xFFFF;
+        int zCentral = zZip.getInt( zEnd + 16 );
+        for ( int i = 0; i < zCount; i++ ) {
+            assertEquals( 0x02014b50, zZip.getInt( zCentral ) );
+            zZip.putInt( zCentral + 12, 0 );
+            zZip.putInt( zZip.getInt( zCentral + 42 ) + 10, 0 );
+            zCentral += 46 + (zZip.getShort( zCentral + 28 ) & 0xFFFF) + (zZip.getShort( zCentral + 30 ) & 0xFFFF) +
+                        (zZip.getShort( zCentral + 32 ) & 0xFFFF);
+        }
+        return pZip;
+    }
+
+    private static byte[] read( File pFile )
+            throws IOException {
+        return TestData.read( new FileInputStream( pFile ) );
+    }
+
+    private static long crc( byte[] pData ) {
+        CRC32 zCRC = new CRC32();
+        zCRC.update( pData );
+        return zCRC.getValue();
+    }
+}
@@ -0,0 +1,287 @@
+package org.litesoft.packageversionedzip;
+
+import org.junit.*;
+import org.litesoft.server.file.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Zips written by ZipWriter, read back by java.util.zip (both the Central Directory, w/ ZipFile, and the Local Headers & Data
+ * Descriptors, w/ ZipInputStream).
+ */
+public class ZipWriterTest {
+    private static final byte[] TEXT = TestData.compressible( 1024 * 200, 1 );
+    private static final byte[] RANDOM = TestData.incompressible( 1024 * 70, 2 );
+    private static final byte[] EMPTY = new byte[0];
+
+    private File mDir;
+    private EntryDeflater mDeflater;
+
+    @Before
+    public void setUp()
+            throws IOException {
+        mDir = TestData.newTempDir();
+        mDeflater = new EntryDeflater();
+    }
+
+    @After
+    public void tearDown() {
+        mDeflater.dispose();
+        TestData.delete( mDir );
+    }
+
+    @Test
+    public void deflatedEntries()
+            throws IOException {
+        File zZip = new File( mDir, "test.zip" );
+        ZipWriter zWriter = new ZipWriter( new ZipOutput( zZip ), System.currentTimeMillis() );
+        zWriter.addDeflated( "text.txt", new ByteArrayInputStream( TEXT ), mDeflater );
+        zWriter.addDeflated( new DeflatedEntry( "in-memory.txt" ).deflate( new ByteArrayInputStream( TEXT ), mDeflater ) );
+        zWriter.addDeflated( "random.bin", new ByteArrayInputStream( RANDOM ), mDeflater );
+        zWriter.addDeflated( "empty.txt", new ByteArrayInputStream( EMPTY ), mDeflater );
+        zWriter.addDeflated( "\u00fcnicode-\u6587.txt", new ByteArrayInputStream( TEXT ), mDeflater );
+        zWriter.close();
+
+        assertEquals( 5, zWriter.getEntryCount() );
+        assertEquals( RANDOM.length + TEXT.length * 3L, zWriter.getTotalSize() );
+        assertEquals( zZip.length(), zWriter.getPosition() );
+
+        Map<String, byte[]> zExpected = new LinkedHashMap<String, byte[]>();
+        zExpected.put( "text.txt", TEXT );
+        zExpected.put( "in-memory.txt", TEXT );
+        zExpected.put( "random.bin", RANDOM );
+        zExpected.put( "empty.txt", EMPTY );
+        zExpected.put( "\u00fcnicode-\u6587.txt", TEXT );
+        assertZip( zZip, zExpected );
+
+        ZipFile zZipFile = new ZipFile( zZip );
+        try {
+            assertEquals( ZipEntry.DEFLATED, zZipFile.getEntry( "text.txt" ).getMethod() );
+            assertTrue( zZipFile.getEntry( "text.txt" ).getCompressedSize() < TEXT.length );
+        }
+        finally {
+            zZipFile.close();
+        }
+    }
+
+    @Test
+    public void storedEntries()
+            throws IOException {
+        File zZip = new File( mDir, "test.zip" );
+        ZipWriter zWriter = new ZipWriter( new ZipOutput( zZip ), System.currentTimeMillis() );
+        zWriter.addStored( "random.bin", new ByteArrayInputStream( RANDOM ), RANDOM.length );
+        zWriter.addStored( new StoredEntry( "in-memory.txt" ).store( new ByteArrayInputStream( TEXT ) ) );
+        zWriter.addStored( "empty.txt", new ByteArrayInputStream( EMPTY ), 0 );
+        zWriter.addDeflated( "deflated.txt", new ByteArrayInputStream( TEXT ), mDeflater );
+        zWriter.close();
+
+        assertEquals( 4, zWriter.getEntryCount() );
+        assertEquals( RANDOM.length + TEXT.length * 2L, zWriter.getTotalSize() );
+
+        Map<String, byte[]> zExpected = new LinkedHashMap<String, byte[]>();
+        zExpected.put( "random.bin", RANDOM );
+        zExpected.put( "in-memory.txt", TEXT );
+        zExpected.put( "empty.txt", EMPTY );
+        zExpected.put( "deflated.txt", TEXT );
+        assertZip( zZip, zExpected );
+
+        ZipFile zZipFile = new ZipFile( zZip );
+        try {
+            assertEquals( ZipEntry.STORED, zZipFile.getEntry( "random.bin" ).getMethod() );
+            assertEquals( RANDOM.length, zZipFile.getEntry( "random.bin" ).getCompressedSize() );
+            assertEquals( ZipEntry.STORED, zZipFile.getEntry( "in-memory.txt" ).getMethod() );
+            assertEquals( ZipEntry.DEFLATED, zZipFile.getEntry( "deflated.txt" ).getMethod() );
+        }
+        finally {
+            zZipFile.close();
+        }
+    }
+
+    /**
+     * Only read back w/ ZipFile, as ZipInputStream expects a Zip64 (8 byte sizes) Data Descriptor only for an entry that is actually over
+     * 4GB (even when its Local Header is Zip64).
+     */
+    @Test
+    public void zip64FlaggedEntries()
+            throws IOException {
+        File zZip = new File( mDir, "test.zip" );
+        ZipWriter zWriter = new ZipWriter( new ZipOutput( zZip ), System.currentTimeMillis() );
+        zWriter.addDeflated( "zip64-flagged.txt", new ByteArrayInputStream( TEXT ), mDeflater, true );
+        zWriter.addDeflated( "text.txt", new ByteArrayInputStream( TEXT ), mDeflater );
+        zWriter.addDeflated( "zip64-flagged-empty.txt", new ByteArrayInputStream( EMPTY ), mDeflater, true );
+        zWriter.close();
+
+        byte[] zLocalHeader = new byte[30];
+        DataInputStream zInputStream = new DataInputStream( new FileInputStream( zZip ) );
+        try {
+            zInputStream.readFully( zLocalHeader );
+        }
+        finally {
+            zInputStream.close();
+        }
+        assertEquals( 45, zLocalHeader[4] ); // Version Needed
+        assertEquals( 20, zLocalHeader[28] ); // Extra Length (the Zip64 extra)
+
+        Map<String, byte[]> zExpected = new LinkedHashMap<String, byte[]>();
+        zExpected.put( "zip64-flagged.txt", TEXT );
+        zExpected.put( "text.txt", TEXT );
+        zExpected.put( "zip64-flagged-empty.txt", EMPTY );
+        assertZipFile( zZip, zExpected );
+    }
+
+    @Test
+    public void zip64Sizes() {
+        assertFalse( ZipWriter.isZip64Size( 0xFFFFFFFEL ) );
+        assertTrue( ZipWriter.isZip64Size( 0xFFFFFFFFL ) );
+        assertTrue( ZipWriter.isZip64Size( 1024L * 1024 * 1024 * 8 ) );
+    }
+
+    @Test
+    public void deflatedTheSameAsZipOutputStream()
+            throws IOException {
+        File zZip = new File( mDir, "test.zip" );
+        ZipWriter zWriter = new ZipWriter( new ZipOutput( zZip ), System.currentTimeMillis() );
+        zWriter.addDeflated( "text.txt", new ByteArrayInputStream( TEXT ), mDeflater );
+        zWriter.close();
+
+        ByteArrayOutputStream zExpected = new ByteArrayOutputStream();
+        Deflater zDeflater = new Deflater( Deflater.DEFAULT_COMPRESSION, true );
+        DeflaterOutputStream zDeflating = new DeflaterOutputStream( zExpected, zDeflater );
+        zDeflating.write( TEXT );
+        zDeflating.close();
+        zDeflater.end();
+
+        ZipCentralDirectory zDirectory = new ZipCentralDirectory( zZip );
+        try {
+            RawZipEntry zEntry = zDirectory.getEntries().get( 0 );
+            assertArrayEquals( zExpected.toByteArray(), TestData.read( zDirectory.openRaw( zEntry ) ) );
+        }
+        finally {
+            zDirectory.close();
+        }
+    }
+
+    @Test
+    public void copiedEntries()
+            throws IOException {
+        File zSource = new File( mDir, "source.zip" );
+        ZipOutputStream zSourceZip = new ZipOutputStream( new FileOutputStream( zSource ) );
+        try {
+            ZipEntry zStored = new ZipEntry( "random.bin" );
+            zStored.setMethod( ZipEntry.STORED );
+            zStored.setSize( RANDOM.length );
+            zStored.setCrc( crc( RANDOM ) );
+            zSourceZip.putNextEntry( zStored );
+            zSourceZip.write( RANDOM );
+            zSourceZip.putNextEntry( new ZipEntry( "text.txt" ) );
+            zSourceZip.write( TEXT );
+            zSourceZip.putNextEntry( new ZipEntry( "empty.txt" ) );
+        }
+        finally {
+            zSourceZip.close();
+        }
+
+        File zZip = new File( mDir, "copied.zip" );
+        ZipWriter zWriter = new ZipWriter( new ZipOutput( zZip ), System.currentTimeMillis() );
+        zWriter.addDeflated( "first.txt", new ByteArrayInputStream( TEXT ), mDeflater );
+        ZipCentralDirectory zDirectory = new ZipCentralDirectory( zSource );
+        try {
+            for ( RawZipEntry zEntry : zDirectory.getEntries() ) {
+                assertTrue( zEntry.isCopyable() );
+                zWriter.addCopied( "copied/" + zEntry.getName(), zEntry, zDirectory.getChannel(), zDirectory.getDataOffset( zEntry ) );
+            }
+        }
+        finally {
+            zDirectory.close();
+        }
+        zWriter.close();
+
+        Map<String, byte[]> zExpected = new LinkedHashMap<String, byte[]>();
+        zExpected.put( "first.txt", TEXT );
+        zExpected.put( "copied/random.bin", RANDOM );
+        zExpected.put( "copied/text.txt", TEXT );
+        zExpected.put( "copied/empty.txt", EMPTY );
+        assertZip( zZip, zExpected );
+    }
+
+    /**
+     * A buffer smaller than most writes (so they are gathered, see ZipOutput.write( ByteBuffer... )), and over an existing (longer) file.
+     */
+    @Test
+    public void smallOutputBuffer()
+            throws IOException {
+        File zZip = new File( mDir, "test.zip" );
+        TestData.write( zZip, TestData.incompressible( 1024 * 1024, 3 ) );
+        ZipOutput.Settings zSettings = new ZipOutput.Settings( 1024, ZipOutput.Fsync.Periodic );
+        ZipWriter zWriter = new ZipWriter( new ZipOutput( zZip, zSettings ), System.currentTimeMillis() );
+        zWriter.addStored( "random.bin", new ByteArrayInputStream( RANDOM ), RANDOM.length );
+        zWriter.addDeflated( new DeflatedEntry( "in-memory.txt" ).deflate( new ByteArrayInputStream( TEXT ), mDeflater ) );
+        zWriter.addDeflated( "text.txt", new ByteArrayInputStream( TEXT ), mDeflater );
+        zWriter.close();
+
+        assertEquals( zWriter.getPosition(), zZip.length() );
+        Map<String, byte[]> zExpected = new LinkedHashMap<String, byte[]>();
+        zExpected.put( "random.bin", RANDOM );
+        zExpected.put( "in-memory.txt", TEXT );
+        zExpected.put( "text.txt", TEXT );
+        assertZip( zZip, zExpected );
+    }
+
+    private static void assertZip( File pZip, Map<String, byte[]> pExpected )
+            throws IOException {
+        assertZipFile( pZip, pExpected );
+        assertZipInputStream( pZip, pExpected );
+    }
+
+    private static void assertZipFile( File pZip, Map<String, byte[]> pExpected )
+            throws IOException {
+        ZipFile zZipFile = new ZipFile( pZip );
+        try {
+            List<String> zNames = new ArrayList<String>();
+            for ( Enumeration<? extends ZipEntry> zEntries = zZipFile.entries(); zEntries.hasMoreElements(); ) {
+                ZipEntry zEntry = zEntries.nextElement();
+                zNames.add( zEntry.getName() );
+                byte[] zData = pExpected.get( zEntry.getName() );
+                assertNotNull( "Unexpected: " + zEntry.getName(), zData );
+                assertEquals( zEntry.getName(), zData.length, zEntry.getSize() );
+                assertEquals( zEntry.getName(), crc( zData ), zEntry.getCrc() );
+                assertArrayEquals( zEntry.getName(), zData, TestData.read( zZipFile.getInputStream( zEntry ) ) );
+            }
+            assertEquals( new ArrayList<String>( pExpected.keySet() ), zNames );
+        }
+        finally {
+            zZipFile.close();
+        }
+    }
+
+    private static void assertZipInputStream( File pZip, Map<String, byte[]> pExpected )
+            throws IOException {
+        ZipInputStream zZipInputStream = new ZipInputStream( new BufferedInputStream( new FileInputStream( pZip ) ) );
+        try {
+            List<String> zNames = new ArrayList<String>();
+            for ( ZipEntry zEntry; null != (zEntry = zZipInputStream.getNextEntry()); ) {
+                zNames.add( zEntry.getName() );
+                ByteArrayOutputStream zData = new ByteArrayOutputStream();
+                byte[] zBuffer = new byte[1024 * 8];
+                for ( int zRead; -1 != (zRead = zZipInputStream.read( zBuffer )); ) {
+                    zData.write( zBuffer, 0, zRead );
+                }
+                assertArrayEquals( zEntry.getName(), pExpected.get( zEntry.getName() ), zData.toByteArray() );
+            }
+            assertEquals( new ArrayList<String>( pExpected.keySet() ), zNames );
+        }
+        finally {
+            zZipInputStream.close();
+        }
+    }
+
+    private static long crc( byte[] pData ) {
+        CRC32 zCRC = new CRC32();
+        zCRC.update( pData );
+        return zCRC.getValue();
+    }
+}